@@ -0,0 +1,200 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.gerdiproject.harvest.soep.csv.ConceptMetadata;
+import de.gerdiproject.harvest.soep.csv.DatasetMetadata;
+import de.gerdiproject.harvest.soep.csv.VariableColumn;
+import de.gerdiproject.harvest.soep.store.VariableStore;
+import de.gerdiproject.harvest.utils.CsvRequester;
+import de.gerdiproject.harvest.utils.csv.CsvRow;
+import de.gerdiproject.harvest.utils.csv.MappedCsvParser;
+
+/**
+ * This benchmark measures the parsing of the three SOEP CSV files, and the
+ * join of variables and concepts. The rows are processed in the same way as by
+ * {@linkplain de.gerdiproject.harvest.etls.extractors.SoepExtractor}, using
+ * either opencsv or the {@linkplain MappedCsvParser}.
+ * <br>
+ * Allocation rates are reported when the benchmark is run with "-prof gc",
+ * which is the default of the "benchmark" Maven profile.
+ *
+ * @author Robin Weiss
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class CsvParsingBenchmark
+{
+    private static final long SEED = 42;
+    private static final String MAPPED_PARSER = "mapped";
+    private static final int CSV_HEADER_ROWS = 1;
+
+    @Param({"100000", "1000000"})
+    private int variableRows;
+
+    @Param({"opencsv", MAPPED_PARSER})
+    private String parser;
+
+    private final CsvRequester csvRequester = new CsvRequester();
+    private final MappedCsvParser mappedCsvParser = new MappedCsvParser();
+
+    private byte[] datasetsCsv;
+    private byte[] variablesCsv;
+    private byte[] conceptsCsv;
+
+    private VariableStore parsedVariables;
+    private Map<String, ConceptMetadata> parsedConcepts;
+
+
+    /**
+     * Generates the CSV files, and parses the variables and concepts
+     * that are required by the join.
+     *
+     * @throws IOException if the generated CSV files could not be parsed
+     */
+    @Setup
+    public void setup() throws IOException
+    {
+        final SoepCsvGenerator generator = new SoepCsvGenerator(SEED, variableRows);
+        datasetsCsv = generator.createDatasetsCsv();
+        variablesCsv = generator.createVariablesCsv();
+        conceptsCsv = generator.createConceptsCsv();
+
+        parsedVariables = parseVariables();
+        parsedConcepts = parseConcepts();
+    }
+
+
+    /**
+     * Parses the datasets CSV file.
+     *
+     * @return the metadata of all datasets, mapped by dataset name
+     *
+     * @throws IOException if the CSV file could not be parsed
+     */
+    @Benchmark
+    public Map<String, DatasetMetadata> parseDatasets() throws IOException
+    {
+        final Map<String, DatasetMetadata> datasets = new HashMap<>();
+
+        parse(datasetsCsv, (final CsvRow row) -> {
+            final DatasetMetadata dataset = new DatasetMetadata(row);
+            datasets.put(dataset.getDatasetName(), dataset);
+        });
+
+        return datasets;
+    }
+
+
+    /**
+     * Parses the variables CSV file, and groups the variables by dataset.
+     *
+     * @return a finished store of all variables
+     *
+     * @throws IOException if the CSV file could not be parsed
+     */
+    @Benchmark
+    public VariableStore parseVariables() throws IOException
+    {
+        final VariableStore variables = new VariableStore();
+
+        parse(variablesCsv, (final CsvRow row) ->
+              variables.add(
+                  row.get(VariableColumn.DATASET_NAME.getIndex()),
+                  row.get(VariableColumn.VARIABLE_NAME.getIndex()),
+                  row.get(VariableColumn.CONCEPT_NAME.getIndex()),
+                  row.get(VariableColumn.SOURCE.getIndex())));
+
+        variables.finish();
+        return variables;
+    }
+
+
+    /**
+     * Parses the concepts CSV file.
+     *
+     * @return the metadata of all concepts, mapped by concept name
+     *
+     * @throws IOException if the CSV file could not be parsed
+     */
+    @Benchmark
+    public Map<String, ConceptMetadata> parseConcepts() throws IOException
+    {
+        final Map<String, ConceptMetadata> concepts = new HashMap<>();
+
+        parse(conceptsCsv, (final CsvRow row) -> {
+            final ConceptMetadata concept = new ConceptMetadata(row);
+            concepts.put(concept.getConceptName(), concept);
+        });
+
+        return concepts;
+    }
+
+
+    /**
+     * Joins the concepts of all variables.
+     *
+     * @return the store with joined concepts
+     */
+    @Benchmark
+    public VariableStore joinConcepts()
+    {
+        parsedVariables.joinConcepts(parsedConcepts);
+        return parsedVariables;
+    }
+
+
+    /**
+     * Parses a CSV file with the parser of the current benchmark.
+     *
+     * @param csv the UTF-8 encoded CSV file
+     * @param rowConsumer a consumer function that accepts each row of the CSV file
+     *
+     * @throws IOException if the CSV file could not be parsed
+     */
+    private void parse(final byte[] csv, final Consumer<CsvRow> rowConsumer) throws IOException
+    {
+        if (MAPPED_PARSER.equals(parser))
+            mappedCsvParser.parse(ByteBuffer.wrap(csv), CSV_HEADER_ROWS, rowConsumer);
+        else
+            csvRequester.parseCsvStream(new ByteArrayInputStream(csv), rowConsumer);
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * This class generates synthetic SOEP CSV files of arbitrary size. The
+ * files have the same columns as the files of the SOEP repository, and
+ * their content only depends on the seed and the number of rows, so that
+ * benchmarks are repeatable.
+ *
+ * @author Robin Weiss
+ */
+public class SoepCsvGenerator
+{
+    private static final String STUDY_NAME = "soep-core";
+    private static final String DATASETS_HEADER = "study,name,period,analysis_unit,conceptual_dataset,label,description";
+    private static final String VARIABLES_HEADER = "study,dataset,name,concept,source,item_id,id";
+    private static final String CONCEPTS_HEADER = "name,topic,topic_name,label_de,label";
+
+    private static final String[] ANALYSIS_UNITS = {"p", "h", "hh", "kind", "biol"};
+    private static final String[] WORDS = {
+        "Personen", "Haushalt", "Einkommen", "Gesundheit", "Zufriedenheit", "Bildung", "Erwerbstätigkeit",
+        "household", "income", "health", "satisfaction", "education", "employment", "biography",
+        "wave", "panel", "migration", "\"quoted\"", "comma, separated", "Grundstück", "Überstunden"
+    };
+
+    // share of variables without a concept
+    private static final double VARIABLES_WITHOUT_CONCEPT = 0.1;
+
+    private static final int FIRST_YEAR = 1984;
+    private static final int YEAR_COUNT = 36;
+    private static final int MAX_LABEL_WORDS = 6;
+    private static final int MAX_DESCRIPTION_WORDS = 40;
+    private static final int INITIAL_BYTES_PER_ROW = 64;
+
+    private final long seed;
+    private final int datasetCount;
+    private final int variableCount;
+    private final int conceptCount;
+
+
+    /**
+     * Constructor that requires the size of the generated files.
+     *
+     * @param seed the seed of all random values
+     * @param datasetCount the number of rows of the datasets CSV file
+     * @param variableCount the number of rows of the variables CSV file
+     * @param conceptCount the number of rows of the concepts CSV file
+     */
+    public SoepCsvGenerator(final long seed, final int datasetCount, final int variableCount, final int conceptCount)
+    {
+        this.seed = seed;
+        this.datasetCount = datasetCount;
+        this.variableCount = variableCount;
+        this.conceptCount = conceptCount;
+    }
+
+
+    /**
+     * Constructor that derives the number of datasets and concepts from the
+     * number of variables, using the ratios of the SOEP repository.
+     *
+     * @param seed the seed of all random values
+     * @param variableCount the number of rows of the variables CSV file
+     */
+    public SoepCsvGenerator(final long seed, final int variableCount)
+    {
+        this(seed, variableCount / 500 + 1, variableCount, variableCount / 20 + 1);
+    }
+
+
+    /**
+     * Returns the name of a generated dataset.
+     *
+     * @param index the zero-based index of the dataset
+     *
+     * @return the name of the dataset
+     */
+    public static String getDatasetName(final int index)
+    {
+        return "d" + index + "p";
+    }
+
+
+    /**
+     * Returns the name of a generated concept.
+     *
+     * @param index the zero-based index of the concept
+     *
+     * @return the name of the concept
+     */
+    public static String getConceptName(final int index)
+    {
+        return "concept_" + index;
+    }
+
+
+    /**
+     * Generates the content of the datasets CSV file.
+     *
+     * @return the UTF-8 encoded datasets CSV file
+     */
+    public byte[] createDatasetsCsv()
+    {
+        final Random random = new Random(seed);
+        final StringBuilder csv = createCsv(DATASETS_HEADER, datasetCount);
+
+        for (int i = 0; i < datasetCount; i++) {
+            final String period = random.nextInt(YEAR_COUNT + 1) == 0
+                                  ? "long"
+                                  : String.valueOf(FIRST_YEAR + random.nextInt(YEAR_COUNT));
+
+            appendRow(csv,
+                      STUDY_NAME,
+                      getDatasetName(i),
+                      period,
+                      ANALYSIS_UNITS[random.nextInt(ANALYSIS_UNITS.length)],
+                      getDatasetName(random.nextInt(datasetCount)),
+                      createText(random, MAX_LABEL_WORDS),
+                      random.nextBoolean() ? createText(random, MAX_DESCRIPTION_WORDS) : "");
+        }
+
+        return toBytes(csv);
+    }
+
+
+    /**
+     * Generates the content of the variables CSV file. The variables of
+     * each dataset are mostly consecutive, but some are interleaved.
+     *
+     * @return the UTF-8 encoded variables CSV file
+     */
+    public byte[] createVariablesCsv()
+    {
+        final Random random = new Random(seed + 1);
+        final StringBuilder csv = createCsv(VARIABLES_HEADER, variableCount);
+        final int variablesPerDataset = Math.max(variableCount / datasetCount, 1);
+
+        for (int i = 0; i < variableCount; i++) {
+            final int datasetIndex = random.nextInt(10) == 0
+                                     ? random.nextInt(datasetCount)
+                                     : Math.min(i / variablesPerDataset, datasetCount - 1);
+            final String datasetName = getDatasetName(datasetIndex);
+            final String conceptName = random.nextDouble() < VARIABLES_WITHOUT_CONCEPT
+                                       ? ""
+                                       : getConceptName(random.nextInt(conceptCount));
+
+            appendRow(csv,
+                      STUDY_NAME,
+                      datasetName,
+                      datasetName + i,
+                      conceptName,
+                      "v" + random.nextInt(100_000),
+                      String.valueOf(random.nextInt(1_000_000)),
+                      String.valueOf(i));
+        }
+
+        return toBytes(csv);
+    }
+
+
+    /**
+     * Generates the content of the concepts CSV file.
+     *
+     * @return the UTF-8 encoded concepts CSV file
+     */
+    public byte[] createConceptsCsv()
+    {
+        final Random random = new Random(seed + 2);
+        final StringBuilder csv = createCsv(CONCEPTS_HEADER, conceptCount);
+
+        for (int i = 0; i < conceptCount; i++) {
+            final String topic = "topic_" + random.nextInt(Math.max(conceptCount / 50, 1));
+
+            appendRow(csv,
+                      getConceptName(i),
+                      topic,
+                      createText(random, 2),
+                      createText(random, MAX_LABEL_WORDS),
+                      createText(random, MAX_LABEL_WORDS));
+        }
+
+        return toBytes(csv);
+    }
+
+
+    /**
+     * Creates a CSV file that only consists of a header.
+     *
+     * @param header the header row
+     * @param rowCount the expected number of rows
+     *
+     * @return a builder of the CSV file
+     */
+    private static StringBuilder createCsv(final String header, final int rowCount)
+    {
+        final StringBuilder csv = new StringBuilder((rowCount + 1) * INITIAL_BYTES_PER_ROW);
+        csv.append(header).append('\n');
+        return csv;
+    }
+
+
+    /**
+     * Creates a random text of words.
+     *
+     * @param random the source of random values
+     * @param maxWordCount the maximum number of words
+     *
+     * @return a random text
+     */
+    private static String createText(final Random random, final int maxWordCount)
+    {
+        final StringBuilder text = new StringBuilder();
+        final int wordCount = 1 + random.nextInt(maxWordCount);
+
+        for (int i = 0; i < wordCount; i++) {
+            if (i > 0)
+                text.append(' ');
+
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+
+        return text.toString();
+    }
+
+
+    /**
+     * Appends a row to a CSV file, quoting fields that contain
+     * separators or quotes.
+     *
+     * @param csv the builder of the CSV file
+     * @param fields the fields of the row
+     */
+    private static void appendRow(final StringBuilder csv, final String... fields)
+    {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0)
+                csv.append(',');
+
+            final String field = fields[i];
+
+            if (field.indexOf(',') == -1 && field.indexOf('"') == -1)
+                csv.append(field);
+            else
+                csv.append('"').append(field.replace("\"", "\"\"")).append('"');
+        }
+
+        csv.append('\n');
+    }
+
+
+    /**
+     * Encodes a CSV file as UTF-8.
+     *
+     * @param csv the builder of the CSV file
+     *
+     * @return the UTF-8 encoded CSV file
+     */
+    private static byte[] toBytes(final StringBuilder csv)
+    {
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
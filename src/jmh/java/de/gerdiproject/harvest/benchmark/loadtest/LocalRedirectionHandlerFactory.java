@@ -0,0 +1,129 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.benchmark.loadtest;
+
+import java.io.IOException;
+import java.net.Proxy;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.net.URLStreamHandlerFactory;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * This factory redirects all HTTPS requests to GitHub to a local
+ * {@linkplain SyntheticGitHubServer}, without any changes to the harvester.
+ * Requests to other HTTPS hosts are refused, so the harvest cannot
+ * accidentally reach the internet.
+ * <br>
+ * Redirected URLs are sent via plain HTTP, and consist of the local server,
+ * followed by the original host and file, e.g.
+ * "http://127.0.0.1:8080/api.github.com/repos/paneldata/soep-core/commits".
+ *
+ * @author Robin Weiss
+ */
+public class LocalRedirectionHandlerFactory implements URLStreamHandlerFactory
+{
+    private static final String REDIRECTED_PROTOCOL = "https";
+    private static final String LOCAL_PROTOCOL = "http";
+    private static final Collection<String> REDIRECTED_HOSTS = Arrays.asList("api.github.com", "raw.githubusercontent.com");
+    private static final String REFUSED_HOST_ERROR = "The offline load test does not allow requests to %s";
+
+    private final String localHost;
+    private final int localPort;
+
+
+    /**
+     * Constructor that requires the address of the local server.
+     *
+     * @param localHost the host name of the local server
+     * @param localPort the port of the local server
+     */
+    public LocalRedirectionHandlerFactory(final String localHost, final int localPort)
+    {
+        this.localHost = localHost;
+        this.localPort = localPort;
+    }
+
+
+    /**
+     * Installs this factory for all URLs of the JVM. This can only
+     * be done once per JVM.
+     *
+     * @throws Error if a factory was already installed
+     */
+    public void install()
+    {
+        URL.setURLStreamHandlerFactory(this);
+    }
+
+
+    @Override
+    public URLStreamHandler createURLStreamHandler(final String protocol)
+    {
+        // all other protocols are handled by the default handlers
+        return REDIRECTED_PROTOCOL.equals(protocol) ? new RedirectingHandler() : null;
+    }
+
+
+    /**
+     * This handler opens connections to the local server instead of GitHub.
+     *
+     * @author Robin Weiss
+     */
+    private class RedirectingHandler extends URLStreamHandler
+    {
+        @Override
+        protected URLConnection openConnection(final URL url) throws IOException
+        {
+            return getLocalUrl(url).openConnection();
+        }
+
+
+        @Override
+        protected URLConnection openConnection(final URL url, final Proxy proxy) throws IOException
+        {
+            return getLocalUrl(url).openConnection(proxy);
+        }
+
+
+        @Override
+        protected int getDefaultPort()
+        {
+            return 443;
+        }
+
+
+        /**
+         * Maps a GitHub URL to the corresponding URL of the local server.
+         *
+         * @param url a GitHub URL
+         *
+         * @return a URL of the local server
+         *
+         * @throws IOException if the URL does not point to GitHub
+         */
+        private URL getLocalUrl(final URL url) throws IOException
+        {
+            if (!REDIRECTED_HOSTS.contains(url.getHost()))
+                throw new IOException(String.format(REFUSED_HOST_ERROR, url.getHost()));
+
+            return new URL(LOCAL_PROTOCOL, localHost, localPort, "/" + url.getHost() + url.getFile());
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.benchmark.loadtest;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.Gson;
+
+import de.gerdiproject.harvest.benchmark.SoepCsvGenerator;
+import de.gerdiproject.harvest.etls.SoepETL;
+import de.gerdiproject.harvest.etls.extractors.SoepExtractor;
+import de.gerdiproject.harvest.etls.extractors.SoepFileVO;
+import de.gerdiproject.harvest.etls.transformers.SoepTransformer;
+import de.gerdiproject.json.GsonUtils;
+import de.gerdiproject.json.datacite.DataCiteJson;
+
+/**
+ * This load test runs a complete harvest of the {@linkplain SoepETL} against a
+ * {@linkplain SyntheticGitHubServer}, and reports the wall time, the peak heap
+ * usage and the garbage collection time of the harvest. It requires neither
+ * network access nor a GitHub token.
+ * <br>
+ * Instead of being submitted to a search index, the harvested documents are
+ * serialized in the same way as by the loader, and then discarded.
+ * The load test is not run as part of the benchmarks, but can be started via its
+ * main method from the test classpath of the "benchmark" Maven profile.
+ * It accepts arguments in the form of "key=value", e.g. "datasets=1000 latencyMs=50".
+ *
+ * @author Robin Weiss
+ */
+public class SoepLoadTest
+{
+    private static final String MODULE_NAME = "SOEP";
+
+    private static final String DATASETS_ARG = "datasets";
+    private static final String VARIABLES_ARG = "variables";
+    private static final String CONCEPTS_ARG = "concepts";
+    private static final String LATENCY_ARG = "latencyMs";
+    private static final String BANDWIDTH_ARG = "bandwidthKiB";
+    private static final String SEED_ARG = "seed";
+    private static final String ARG_SEPARATOR = "=";
+
+    private static final int DATASETS_DEFAULT = 500;
+    private static final int VARIABLES_DEFAULT = 250_000;
+    private static final int CONCEPTS_DEFAULT = 12_500;
+    private static final int LATENCY_DEFAULT = 20;
+    private static final int BANDWIDTH_DEFAULT = 0;
+    private static final int SEED_DEFAULT = 42;
+    private static final int BYTES_PER_KIB = 1024;
+    private static final double BYTES_PER_MIB = 1024.0 * 1024.0;
+
+    private static final String INVALID_ARG_ERROR = "Invalid argument '%s', expected one of %s=<number>";
+    private static final String CORPUS_INFO = "Serving %d datasets, %d variables and %d concepts with a latency of %d ms and %s%n";
+    private static final String UNLIMITED_BANDWIDTH = "unlimited bandwidth";
+    private static final String LIMITED_BANDWIDTH = "a bandwidth of %d KiB/s";
+    private static final String RESULT_FORMAT = String.join("%n",
+                                                            "Documents:         %d",
+                                                            "Serialized chars:  %d",
+                                                            "Wall time:         %d ms",
+                                                            "Peak heap usage:   %.1f MiB",
+                                                            "GC time:           %d ms in %d collections",
+                                                            "Requests:          %d",
+                                                            "Transferred bytes: %.1f MiB",
+                                                            "%s%n");
+
+
+    /**
+     * Generates the synthetic corpus, runs the harvest, and prints the results.
+     *
+     * @param args settings in the form of "key=value"
+     *
+     * @throws IOException if the local server could not be started
+     * @throws InterruptedException if the thread was interrupted while stopping the server
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException
+    {
+        final Map<String, Integer> settings = parseSettings(args);
+        final int datasetCount = settings.get(DATASETS_ARG);
+        final int bandwidth = settings.get(BANDWIDTH_ARG);
+
+        final SoepCsvGenerator generator = new SoepCsvGenerator(
+            settings.get(SEED_ARG),
+            datasetCount,
+            settings.get(VARIABLES_ARG),
+            settings.get(CONCEPTS_ARG));
+        final SyntheticGitHubServer server = new SyntheticGitHubServer(
+            generator,
+            datasetCount,
+            settings.get(LATENCY_ARG),
+            (long) bandwidth * BYTES_PER_KIB);
+
+        System.out.printf(
+            CORPUS_INFO,
+            datasetCount,
+            settings.get(VARIABLES_ARG),
+            settings.get(CONCEPTS_ARG),
+            settings.get(LATENCY_ARG),
+            bandwidth == 0 ? UNLIMITED_BANDWIDTH : String.format(LIMITED_BANDWIDTH, bandwidth));
+
+        server.start();
+
+        try {
+            new LocalRedirectionHandlerFactory(server.getHost(), server.getPort()).install();
+            runHarvest(server);
+        } finally {
+            server.stop();
+        }
+    }
+
+
+    /**
+     * Runs a complete harvest and prints the measured resource usage.
+     *
+     * @param server the server that imitates GitHub
+     */
+    private static void runHarvest(final SyntheticGitHubServer server)
+    {
+        final List<MemoryPoolMXBean> memoryPools = ManagementFactory.getMemoryPoolMXBeans();
+        final List<GarbageCollectorMXBean> garbageCollectors = ManagementFactory.getGarbageCollectorMXBeans();
+        final Gson gson = GsonUtils.createGerdiDocumentGsonBuilder().create();
+        final CountingWriter output = new CountingWriter();
+
+        final SoepETL etl = new SoepETL();
+        etl.init(MODULE_NAME);
+
+        final SoepExtractor extractor = new SoepExtractor();
+        final SoepTransformer transformer = new SoepTransformer();
+
+        // the generation of the corpus must not count towards the harvest
+        System.gc();
+
+        for (final MemoryPoolMXBean pool : memoryPools)
+            pool.resetPeakUsage();
+
+        final long gcMillisBefore = getCollectionTime(garbageCollectors);
+        final long gcCountBefore = getCollectionCount(garbageCollectors);
+        final long startNanos = System.nanoTime();
+        int documentCount = 0;
+
+        try {
+            extractor.init(etl);
+            transformer.init(etl);
+
+            final Iterator<SoepFileVO> datasets = extractor.extract();
+            final Iterator<DataCiteJson> documents = transformer.transform(datasets);
+
+            while (documents.hasNext()) {
+                gson.toJson(documents.next(), DataCiteJson.class, output);
+                documentCount++;
+            }
+        } finally {
+            extractor.clear();
+            transformer.clear();
+        }
+
+        final long wallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+        System.out.printf(
+            RESULT_FORMAT,
+            documentCount,
+            output.getCharCount(),
+            wallMillis,
+            getPeakHeapUsage(memoryPools) / BYTES_PER_MIB,
+            getCollectionTime(garbageCollectors) - gcMillisBefore,
+            getCollectionCount(garbageCollectors) - gcCountBefore,
+            server.getRequestCount(),
+            server.getSentBytes() / BYTES_PER_MIB,
+            etl.getHarvestMetrics().getSummary());
+    }
+
+
+    /**
+     * Parses the command line arguments, using default values for all
+     * settings that are not specified.
+     *
+     * @param args settings in the form of "key=value"
+     *
+     * @throws IllegalArgumentException if an argument is unknown or not a number
+     *
+     * @return a map of setting keys to their values
+     */
+    private static Map<String, Integer> parseSettings(final String[] args)
+    {
+        final Map<String, Integer> settings = new HashMap<>();
+        settings.put(DATASETS_ARG, DATASETS_DEFAULT);
+        settings.put(VARIABLES_ARG, VARIABLES_DEFAULT);
+        settings.put(CONCEPTS_ARG, CONCEPTS_DEFAULT);
+        settings.put(LATENCY_ARG, LATENCY_DEFAULT);
+        settings.put(BANDWIDTH_ARG, BANDWIDTH_DEFAULT);
+        settings.put(SEED_ARG, SEED_DEFAULT);
+
+        for (final String arg : args) {
+            final String[] keyValue = arg.split(ARG_SEPARATOR, 2);
+
+            if (keyValue.length != 2 || !settings.containsKey(keyValue[0]))
+                throw new IllegalArgumentException(String.format(INVALID_ARG_ERROR, arg, settings.keySet()));
+
+            try {
+                settings.put(keyValue[0], Integer.parseInt(keyValue[1]));
+            } catch (final NumberFormatException e) {
+                throw new IllegalArgumentException(String.format(INVALID_ARG_ERROR, arg, settings.keySet()), e);
+            }
+        }
+
+        return settings;
+    }
+
+
+    /**
+     * Sums up the peak usages of all heap memory pools since their last reset.
+     *
+     * @param memoryPools all memory pools of the JVM
+     *
+     * @return the peak heap usage in bytes
+     */
+    private static long getPeakHeapUsage(final List<MemoryPoolMXBean> memoryPools)
+    {
+        long peakBytes = 0;
+
+        for (final MemoryPoolMXBean pool : memoryPools) {
+            if (pool.getType() == MemoryType.HEAP)
+                peakBytes += pool.getPeakUsage().getUsed();
+        }
+
+        return peakBytes;
+    }
+
+
+    /**
+     * Sums up the accumulated collection times of all garbage collectors.
+     *
+     * @param garbageCollectors all garbage collectors of the JVM
+     *
+     * @return the total garbage collection time in milliseconds
+     */
+    private static long getCollectionTime(final List<GarbageCollectorMXBean> garbageCollectors)
+    {
+        long collectionMillis = 0;
+
+        for (final GarbageCollectorMXBean collector : garbageCollectors)
+            collectionMillis += Math.max(collector.getCollectionTime(), 0);
+
+        return collectionMillis;
+    }
+
+
+    /**
+     * Sums up the numbers of collections of all garbage collectors.
+     *
+     * @param garbageCollectors all garbage collectors of the JVM
+     *
+     * @return the total number of garbage collections
+     */
+    private static long getCollectionCount(final List<GarbageCollectorMXBean> garbageCollectors)
+    {
+        long collectionCount = 0;
+
+        for (final GarbageCollectorMXBean collector : garbageCollectors)
+            collectionCount += Math.max(collector.getCollectionCount(), 0);
+
+        return collectionCount;
+    }
+
+
+    /**
+     * This {@linkplain Writer} discards all written characters,
+     * and only counts them.
+     *
+     * @author Robin Weiss
+     */
+    private static class CountingWriter extends Writer
+    {
+        private long charCount;
+
+
+        @Override
+        public void write(final char[] buffer, final int offset, final int length)
+        {
+            charCount += length;
+        }
+
+
+        @Override
+        public void flush()
+        {
+            // nothing is buffered
+        }
+
+
+        @Override
+        public void close()
+        {
+            // nothing must be released
+        }
+
+
+        /**
+         * Returns the number of written characters.
+         *
+         * @return the number of written characters
+         */
+        public long getCharCount()
+        {
+            return charCount;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.benchmark.loadtest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import de.gerdiproject.harvest.benchmark.SoepCsvGenerator;
+import de.gerdiproject.harvest.github.json.GitHubCommit;
+import de.gerdiproject.harvest.github.json.GitHubContent;
+import de.gerdiproject.harvest.github.json.GitHubTree;
+import de.gerdiproject.harvest.github.json.GitHubTreeEntry;
+import de.gerdiproject.harvest.soep.constants.SoepConstants;
+
+/**
+ * This HTTP server imitates the parts of the GitHub REST API and of
+ * raw.githubusercontent.com that are requested by the SOEP harvester,
+ * and serves a synthetic SOEP corpus with a configurable latency and bandwidth.
+ * <br>
+ * The path of each request consists of the host and the path of the imitated
+ * URL, e.g. "/api.github.com/repos/paneldata/soep-core/commits".
+ *
+ * @author Robin Weiss
+ */
+public class SyntheticGitHubServer
+{
+    private static final String API_PATH = "/api.github.com/repos/paneldata/soep-core/";
+    private static final String COMMITS_PATH = API_PATH + "commits";
+    private static final String CONTENTS_PATH = API_PATH + "contents/" + SoepConstants.DATASETS_PATH;
+    private static final String TREES_PATH = API_PATH + "git/trees/";
+    private static final String RAW_PATH = "/raw.githubusercontent.com/paneldata/soep-core/master/";
+
+    private static final String COMMIT_SHA = "0123456789abcdef0123456789abcdef01234567";
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+    private static final String CSV_CONTENT_TYPE = "text/plain; charset=utf-8";
+    private static final String CONTENT_TYPE_HEADER = "Content-Type";
+    private static final int STATUS_OK = 200;
+    private static final int STATUS_NOT_FOUND = 404;
+    private static final int NO_RESPONSE_BODY = -1;
+    private static final int CHUNK_SIZE = 8192;
+    private static final int THREAD_COUNT = 8;
+
+    private final int latencyMillis;
+    private final long bytesPerSecond;
+    private final Map<String, byte[]> responses = new HashMap<>();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong sentBytes = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+
+    /**
+     * Constructor that generates all responses of the server.
+     *
+     * @param generator the generator of the served CSV files
+     * @param datasetCount the number of datasets that are generated by the generator
+     * @param latencyMillis the delay of each response in milliseconds
+     * @param bytesPerSecond the maximum number of bytes per second that are sent
+     * in response to a single request, or 0 if the bandwidth is unlimited
+     */
+    public SyntheticGitHubServer(final SoepCsvGenerator generator, final int datasetCount, final int latencyMillis, final long bytesPerSecond)
+    {
+        this.latencyMillis = latencyMillis;
+        this.bytesPerSecond = bytesPerSecond;
+
+        final Gson gson = new Gson();
+        final GitHubCommit commit = new GitHubCommit();
+        commit.setSha(COMMIT_SHA);
+        responses.put(COMMITS_PATH, toJson(gson, Collections.singletonList(commit)));
+        responses.put(CONTENTS_PATH, toJson(gson, createContents(datasetCount)));
+        responses.put(String.format("%s%s:%s", TREES_PATH, COMMIT_SHA, SoepConstants.DATASETS_FOLDER), toJson(gson, createTree(datasetCount)));
+        responses.put(RAW_PATH + SoepConstants.DATASETS_CSV_PATH, generator.createDatasetsCsv());
+        responses.put(RAW_PATH + SoepConstants.VARIABLES_CSV_PATH, generator.createVariablesCsv());
+        responses.put(RAW_PATH + SoepConstants.CONCEPTS_CSV_PATH, generator.createConceptsCsv());
+    }
+
+
+    /**
+     * Starts the server on a free port of the loopback interface.
+     *
+     * @throws IOException if the server could not be started
+     */
+    public void start() throws IOException
+    {
+        executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+
+    /**
+     * Stops the server and waits for all responses to be sent.
+     *
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public void stop() throws InterruptedException
+    {
+        server.stop(0);
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+
+    /**
+     * Returns the host name of the server.
+     *
+     * @return the host name of the server
+     */
+    public String getHost()
+    {
+        return server.getAddress().getHostString();
+    }
+
+
+    /**
+     * Returns the port on which the server listens.
+     *
+     * @return the port of the server
+     */
+    public int getPort()
+    {
+        return server.getAddress().getPort();
+    }
+
+
+    /**
+     * Returns the number of requests that were received by the server.
+     *
+     * @return the number of received requests
+     */
+    public long getRequestCount()
+    {
+        return requestCount.get();
+    }
+
+
+    /**
+     * Returns the number of response body bytes that were sent by the server.
+     *
+     * @return the number of sent bytes
+     */
+    public long getSentBytes()
+    {
+        return sentBytes.get();
+    }
+
+
+    /**
+     * Responds to a single request after the configured latency,
+     * or with a 404 status if the requested path is not imitated.
+     * Comparisons of commits are not imitated, which causes incremental
+     * harvests to fall back to a full harvest.
+     *
+     * @param exchange the request and its response
+     *
+     * @throws IOException if the response could not be sent
+     */
+    private void handle(final HttpExchange exchange) throws IOException
+    {
+        requestCount.incrementAndGet();
+
+        try {
+            Thread.sleep(latencyMillis);
+
+            final String path = exchange.getRequestURI().getPath();
+            final byte[] body = responses.get(path);
+
+            if (body == null)
+                exchange.sendResponseHeaders(STATUS_NOT_FOUND, NO_RESPONSE_BODY);
+            else {
+                exchange.getResponseHeaders().set(
+                    CONTENT_TYPE_HEADER,
+                    path.startsWith(RAW_PATH) ? CSV_CONTENT_TYPE : JSON_CONTENT_TYPE);
+                exchange.sendResponseHeaders(STATUS_OK, body.length);
+                sendThrottled(exchange.getResponseBody(), body);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+
+    /**
+     * Writes a response body in chunks, pausing between the chunks
+     * in order to stay below the configured bandwidth.
+     *
+     * @param output the stream of the response body
+     * @param body the response body
+     *
+     * @throws IOException if the response body could not be written
+     * @throws InterruptedException if the thread was interrupted while pausing
+     */
+    private void sendThrottled(final OutputStream output, final byte[] body) throws IOException, InterruptedException
+    {
+        final long startNanos = System.nanoTime();
+
+        for (int offset = 0; offset < body.length; offset += CHUNK_SIZE) {
+            final int length = Math.min(CHUNK_SIZE, body.length - offset);
+            output.write(body, offset, length);
+            sentBytes.addAndGet(length);
+
+            if (bytesPerSecond > 0) {
+                final long targetNanos = TimeUnit.SECONDS.toNanos(offset + length) / bytesPerSecond;
+                final long aheadNanos = targetNanos - (System.nanoTime() - startNanos);
+
+                if (aheadNanos > 0)
+                    TimeUnit.NANOSECONDS.sleep(aheadNanos);
+            }
+        }
+    }
+
+
+    /**
+     * Creates the GitHub contents of all generated dataset files.
+     *
+     * @param datasetCount the number of generated datasets
+     *
+     * @return a list of GitHub contents
+     */
+    private static List<GitHubContent> createContents(final int datasetCount)
+    {
+        final List<GitHubContent> contents = new ArrayList<>(datasetCount);
+
+        for (int i = 0; i < datasetCount; i++) {
+            final String fileName = SoepCsvGenerator.getDatasetName(i) + ".csv";
+            final String path = SoepConstants.DATASETS_PATH + fileName;
+
+            final GitHubContent content = new GitHubContent();
+            content.setName(fileName);
+            content.setPath(path);
+            content.setSha(getFileSha(i));
+            content.setType(SoepConstants.CONTENT_TYPE_FILE);
+            content.setHtmlUrl(String.format(SoepConstants.FILE_HTML_URL, path));
+            content.setDownloadUrl(String.format(SoepConstants.FILE_DOWNLOAD_URL, path));
+            contents.add(content);
+        }
+
+        return contents;
+    }
+
+
+    /**
+     * Creates the Git tree of the datasets folder.
+     *
+     * @param datasetCount the number of generated datasets
+     *
+     * @return a complete Git tree
+     */
+    private static GitHubTree createTree(final int datasetCount)
+    {
+        final List<GitHubTreeEntry> entries = new ArrayList<>(datasetCount);
+
+        for (int i = 0; i < datasetCount; i++) {
+            final GitHubTreeEntry entry = new GitHubTreeEntry();
+            entry.setPath(SoepCsvGenerator.getDatasetName(i) + ".csv");
+            entry.setType(SoepConstants.TREE_ENTRY_TYPE_BLOB);
+            entry.setSha(getFileSha(i));
+            entries.add(entry);
+        }
+
+        final GitHubTree tree = new GitHubTree();
+        tree.setSha(COMMIT_SHA);
+        tree.setTree(entries);
+        return tree;
+    }
+
+
+    /**
+     * Returns a unique blob hash of a generated dataset file.
+     *
+     * @param index the zero-based index of the dataset
+     *
+     * @return a hexadecimal hash
+     */
+    private static String getFileSha(final int index)
+    {
+        return String.format("%040x", index);
+    }
+
+
+    /**
+     * Serializes a JSON response body.
+     *
+     * @param gson the serializer
+     * @param json the object that is to be serialized
+     *
+     * @return the UTF-8 encoded JSON response body
+     */
+    private static byte[] toJson(final Gson gson, final Object json)
+    {
+        return gson.toJson(json).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.etls.transformers;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.gerdiproject.harvest.soep.constants.SoepDataCiteConstants;
+import de.gerdiproject.json.datacite.DataCiteJson;
+import de.gerdiproject.json.datacite.Description;
+import de.gerdiproject.json.datacite.Identifier;
+import de.gerdiproject.json.datacite.Rights;
+import de.gerdiproject.json.datacite.enums.DescriptionType;
+import de.gerdiproject.json.datacite.enums.IdentifierType;
+
+/**
+ * This benchmark compares filling the constant fields of SOEP documents one by one,
+ * as the {@linkplain SoepTransformer} used to, with creating documents from a
+ * {@linkplain SoepDocumentTemplate}.
+ * <br>
+ * Allocated bytes per document are reported as "gc.alloc.rate.norm" when the
+ * benchmark is run with "-prof gc", which is the default of the "benchmark" Maven profile.
+ *
+ * @author Robin Weiss
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SoepDocumentTemplateBenchmark
+{
+    private static final String SOURCE_ID = "ddionrails/datasets/ap.csv";
+
+    private final SoepDocumentTemplate template = new SoepDocumentTemplate();
+
+
+    /**
+     * Creates a document from the template, including the default description.
+     *
+     * @return a document that only contains the constant fields
+     */
+    @Benchmark
+    public DataCiteJson createTemplateDocument()
+    {
+        final DataCiteJson document = template.createDocument(SOURCE_ID);
+        document.addDescriptions(Collections.singletonList(template.getDefaultDescription()));
+        return document;
+    }
+
+
+    /**
+     * Fills the constant fields of a document in the same way as the
+     * {@linkplain SoepTransformer} did before the template was introduced.
+     *
+     * @return a document that only contains the constant fields
+     */
+    @Benchmark
+    public DataCiteJson createLegacyDocument()
+    {
+        final DataCiteJson document = new DataCiteJson(SOURCE_ID);
+        document.addFormats(SoepDataCiteConstants.FORMATS);
+        document.setIdentifier(new Identifier(SoepDataCiteConstants.IDENTIFIER, IdentifierType.DOI));
+        document.addCreators(SoepDataCiteConstants.CREATORS);
+        document.setPublisher(SoepDataCiteConstants.PROVIDER);
+        document.setPublicationYear(SoepDataCiteConstants.PUBLICATION_YEAR);
+        document.addSubjects(SoepDataCiteConstants.SUBJECTS);
+        document.addContributors(Arrays.asList(SoepDataCiteConstants.COLLECTOR_CONTRIBUTOR));
+        document.setResourceType(SoepDataCiteConstants.RESOURCE_TYPE);
+        document.setVersion(SoepDataCiteConstants.VERSION);
+        document.addRights(Arrays.asList(new Rights(SoepDataCiteConstants.RIGHTS_VALUE)));
+        document.setRepositoryIdentifier(SoepDataCiteConstants.REPOSITORY_ID);
+        document.addResearchDisciplines(SoepDataCiteConstants.DISCIPLINES);
+        document.addDescriptions(Arrays.asList(
+                                     new Description(
+                                         SoepDataCiteConstants.DESCRIPTION_VALUE,
+                                         DescriptionType.Abstract,
+                                         SoepDataCiteConstants.DESCRIPTION_LANGUAGE)));
+        return document;
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.etls.transformers;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import de.gerdiproject.harvest.benchmark.SoepCsvGenerator;
+import de.gerdiproject.harvest.etls.extractors.SoepFileVO;
+import de.gerdiproject.harvest.github.json.GitHubContent;
+import de.gerdiproject.harvest.soep.constants.SoepConstants;
+import de.gerdiproject.harvest.soep.csv.ConceptMetadata;
+import de.gerdiproject.harvest.soep.csv.DatasetMetadata;
+import de.gerdiproject.harvest.soep.csv.VariableColumn;
+import de.gerdiproject.harvest.soep.store.VariableStore;
+import de.gerdiproject.harvest.utils.csv.CsvRow;
+import de.gerdiproject.harvest.utils.csv.MappedCsvParser;
+import de.gerdiproject.json.GsonUtils;
+import de.gerdiproject.json.datacite.DataCiteJson;
+
+/**
+ * This benchmark measures the transformation of a single SOEP dataset with
+ * a varying number of variables, including the creation of the
+ * {@linkplain de.gerdiproject.json.datacite.extension.soep.SoepVariable}s
+ * and their concepts, and the serialization of the resulting document.
+ * <br>
+ * The benchmark resides in the package of the {@linkplain SoepTransformer},
+ * because {@linkplain SoepTransformer#transformElement(SoepFileVO)} is protected.
+ * Allocated bytes per document are reported as "gc.alloc.rate.norm" when the
+ * benchmark is run with "-prof gc", which is the default of the "benchmark" Maven profile.
+ *
+ * @author Robin Weiss
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class SoepTransformerBenchmark
+{
+    private static final long SEED = 42;
+    private static final int CSV_HEADER_ROWS = 1;
+    private static final String COLD_CACHE = "cold";
+
+    @Param({"10", "1000", "50000"})
+    private int variableCount;
+
+    // a warm concept cache is shared by all documents of a harvest,
+    // whereas a cold cache must create all concepts of the document
+    @Param({"warm", COLD_CACHE})
+    private String conceptCache;
+
+    private final MappedCsvParser csvParser = new MappedCsvParser();
+    private final Gson gson = GsonUtils.createGerdiDocumentGsonBuilder().create();
+    private final CharArrayWriter jsonOutput = new CharArrayWriter();
+
+    private SoepTransformer transformer;
+    private SoepFileVO vo;
+
+
+    /**
+     * Generates a single dataset with all of its variables and concepts, and
+     * joins them to the {@linkplain SoepFileVO} that is to be transformed.
+     *
+     * @throws IOException if the generated CSV files could not be parsed
+     */
+    @Setup
+    public void setup() throws IOException
+    {
+        final SoepCsvGenerator generator = new SoepCsvGenerator(SEED, 1, variableCount, variableCount / 20 + 1);
+        final String datasetName = SoepCsvGenerator.getDatasetName(0);
+
+        final Map<String, DatasetMetadata> datasets = new HashMap<>();
+        parse(generator.createDatasetsCsv(), (final CsvRow row) -> {
+            final DatasetMetadata dataset = new DatasetMetadata(row);
+            datasets.put(dataset.getDatasetName(), dataset);
+        });
+
+        final VariableStore variables = new VariableStore();
+        parse(generator.createVariablesCsv(), (final CsvRow row) ->
+              variables.add(
+                  row.get(VariableColumn.DATASET_NAME.getIndex()),
+                  row.get(VariableColumn.VARIABLE_NAME.getIndex()),
+                  row.get(VariableColumn.CONCEPT_NAME.getIndex()),
+                  row.get(VariableColumn.SOURCE.getIndex())));
+        variables.finish();
+
+        final Map<String, ConceptMetadata> concepts = new HashMap<>();
+        parse(generator.createConceptsCsv(), (final CsvRow row) -> {
+            final ConceptMetadata concept = new ConceptMetadata(row);
+            concepts.put(concept.getConceptName(), concept);
+        });
+        variables.joinConcepts(concepts);
+
+        final String fileName = datasetName + ".csv";
+        final GitHubContent content = new GitHubContent();
+        content.setName(fileName);
+        content.setPath(SoepConstants.DATASETS_PATH + fileName);
+        content.setSize(variableCount * 32);
+        content.setHtmlUrl(String.format(SoepConstants.ACCESS_FILE_URL, "blob", fileName));
+        content.setDownloadUrl(String.format(SoepConstants.ACCESS_FILE_URL, "raw", fileName));
+
+        vo = new SoepFileVO(content, datasets.get(datasetName), variables.getDatasetVariables(datasetName), false, 0, 0);
+        transformer = new SoepTransformer();
+    }
+
+
+    /**
+     * Transforms the dataset to a document.
+     *
+     * @return the transformed document
+     */
+    @Benchmark
+    public DataCiteJson transform()
+    {
+        clearColdCache();
+        return transformer.transformElement(vo);
+    }
+
+
+    /**
+     * Transforms the dataset to a document, and serializes the document via Gson,
+     * in the same way as it is written by the harvester.
+     *
+     * @return the number of written characters
+     */
+    @Benchmark
+    public int transformAndSerialize()
+    {
+        clearColdCache();
+        jsonOutput.reset();
+        gson.toJson(transformer.transformElement(vo), DataCiteJson.class, jsonOutput);
+        return jsonOutput.size();
+    }
+
+
+    /**
+     * Writes the dataset as a document via the streaming output of the
+     * {@linkplain SoepTransformer}, for comparison with
+     * {@linkplain #transformAndSerialize()}.
+     *
+     * @return the number of written characters
+     *
+     * @throws IOException if the document could not be written
+     */
+    @Benchmark
+    public int writeStreaming() throws IOException
+    {
+        clearColdCache();
+        jsonOutput.reset();
+        transformer.writeElement(vo, gson, new JsonWriter(jsonOutput));
+        return jsonOutput.size();
+    }
+
+
+    /**
+     * Clears the concept cache of the transformer if the benchmark
+     * is run with a cold cache.
+     */
+    private void clearColdCache()
+    {
+        if (COLD_CACHE.equals(conceptCache))
+            transformer.getConceptCache().clear();
+    }
+
+
+    /**
+     * Parses a generated CSV file.
+     *
+     * @param csv the UTF-8 encoded CSV file
+     * @param rowConsumer a consumer function that accepts each row of the CSV file
+     *
+     * @throws IOException if the CSV file could not be parsed
+     */
+    private void parse(final byte[] csv, final Consumer<CsvRow> rowConsumer) throws IOException
+    {
+        csvParser.parse(ByteBuffer.wrap(csv), CSV_HEADER_ROWS, rowConsumer);
+    }
+}
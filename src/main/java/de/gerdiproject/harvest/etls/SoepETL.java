@@ -16,10 +16,15 @@
  */
 package de.gerdiproject.harvest.etls;
 
+import de.gerdiproject.harvest.config.Configuration;
+import de.gerdiproject.harvest.config.parameters.BooleanParameter;
+import de.gerdiproject.harvest.config.parameters.IntegerParameter;
+import de.gerdiproject.harvest.config.parameters.StringParameter;
 import de.gerdiproject.harvest.etls.extractors.SoepExtractor;
 import de.gerdiproject.harvest.etls.extractors.SoepFileVO;
 import de.gerdiproject.harvest.etls.transformers.SoepTransformer;
 import de.gerdiproject.harvest.soep.constants.SoepConstants;
+import de.gerdiproject.harvest.soep.metrics.HarvestMetrics;
 import de.gerdiproject.json.datacite.DataCiteJson;
 
 /**
@@ -29,11 +34,293 @@ import de.gerdiproject.json.datacite.DataCiteJson;
  */
 public class SoepETL extends StaticIteratorETL<SoepFileVO, DataCiteJson>
 {
+    private BooleanParameter mappedCsvParameter;
+    private IntegerParameter transformThreadsParameter;
+    private IntegerParameter prefetchSizeParameter;
+    private BooleanParameter incrementalParameter;
+    private BooleanParameter gitTreeListingParameter;
+    private StringParameter localMirrorParameter;
+    private BooleanParameter snapshotParameter;
+    private BooleanParameter skipUnchangedParameter;
+    private IntegerParameter maxVariablesParameter;
+    private BooleanParameter keepAliveParameter;
+    private IntegerParameter connectTimeoutParameter;
+    private IntegerParameter readTimeoutParameter;
+    private final HarvestMetrics harvestMetrics = new HarvestMetrics();
+    private final SoepExtractor soepExtractor;
+
+
     /**
      * Simple Constructor.
      */
     public SoepETL()
     {
-        super(SoepConstants.SOEP_ETL_NAME, new SoepExtractor(), new SoepTransformer());
+        this(new SoepExtractor());
+    }
+
+
+    /**
+     * Constructor that keeps a reference to the extractor, so that it
+     * can be notified when all documents were loaded.
+     *
+     * @param soepExtractor the extractor of SOEP datasets
+     */
+    private SoepETL(final SoepExtractor soepExtractor)
+    {
+        super(SoepConstants.SOEP_ETL_NAME, soepExtractor, new SoepTransformer());
+        this.soepExtractor = soepExtractor;
+        harvestMetrics.registerMBean(SoepConstants.SOEP_ETL_NAME);
+    }
+
+
+    @Override
+    protected void harvestInternal() throws Exception // NOPMD - the library method may throw any exception
+    {
+        super.harvestInternal();
+
+        // the harvest state must not be stored if the loader failed
+        soepExtractor.markDocumentsLoaded();
+    }
+
+
+    @Override
+    protected void registerParameters()
+    {
+        super.registerParameters();
+
+        this.mappedCsvParameter = Configuration.registerParameter(
+                                      new BooleanParameter(
+                                          SoepConstants.MAPPED_CSV_PARAM_KEY,
+                                          getName(),
+                                          SoepConstants.MAPPED_CSV_PARAM_DEFAULT));
+
+        this.transformThreadsParameter = Configuration.registerParameter(
+                                             new IntegerParameter(
+                                                 SoepConstants.TRANSFORM_THREADS_PARAM_KEY,
+                                                 getName(),
+                                                 SoepConstants.TRANSFORM_THREADS_PARAM_DEFAULT));
+
+        this.prefetchSizeParameter = Configuration.registerParameter(
+                                         new IntegerParameter(
+                                             SoepConstants.PREFETCH_SIZE_PARAM_KEY,
+                                             getName(),
+                                             SoepConstants.PREFETCH_SIZE_PARAM_DEFAULT));
+
+        this.incrementalParameter = Configuration.registerParameter(
+                                        new BooleanParameter(
+                                            SoepConstants.INCREMENTAL_PARAM_KEY,
+                                            getName(),
+                                            SoepConstants.INCREMENTAL_PARAM_DEFAULT));
+
+        this.gitTreeListingParameter = Configuration.registerParameter(
+                                           new BooleanParameter(
+                                               SoepConstants.GIT_TREE_LISTING_PARAM_KEY,
+                                               getName(),
+                                               SoepConstants.GIT_TREE_LISTING_PARAM_DEFAULT));
+
+        this.localMirrorParameter = Configuration.registerParameter(
+                                        new StringParameter(
+                                            SoepConstants.LOCAL_MIRROR_PARAM_KEY,
+                                            getName(),
+                                            SoepConstants.LOCAL_MIRROR_PARAM_DEFAULT));
+
+        this.snapshotParameter = Configuration.registerParameter(
+                                     new BooleanParameter(
+                                         SoepConstants.SNAPSHOT_PARAM_KEY,
+                                         getName(),
+                                         SoepConstants.SNAPSHOT_PARAM_DEFAULT));
+
+        this.skipUnchangedParameter = Configuration.registerParameter(
+                                          new BooleanParameter(
+                                              SoepConstants.SKIP_UNCHANGED_PARAM_KEY,
+                                              getName(),
+                                              SoepConstants.SKIP_UNCHANGED_PARAM_DEFAULT));
+
+        this.maxVariablesParameter = Configuration.registerParameter(
+                                         new IntegerParameter(
+                                             SoepConstants.MAX_VARIABLES_PARAM_KEY,
+                                             getName(),
+                                             SoepConstants.MAX_VARIABLES_PARAM_DEFAULT));
+
+        this.keepAliveParameter = Configuration.registerParameter(
+                                      new BooleanParameter(
+                                          SoepConstants.KEEP_ALIVE_PARAM_KEY,
+                                          getName(),
+                                          SoepConstants.KEEP_ALIVE_PARAM_DEFAULT));
+
+        this.connectTimeoutParameter = Configuration.registerParameter(
+                                           new IntegerParameter(
+                                               SoepConstants.CONNECT_TIMEOUT_PARAM_KEY,
+                                               getName(),
+                                               SoepConstants.CONNECT_TIMEOUT_PARAM_DEFAULT));
+
+        this.readTimeoutParameter = Configuration.registerParameter(
+                                        new IntegerParameter(
+                                            SoepConstants.READ_TIMEOUT_PARAM_KEY,
+                                            getName(),
+                                            SoepConstants.READ_TIMEOUT_PARAM_DEFAULT));
+    }
+
+
+    /**
+     * Checks if CSV files that are read from the disk cache are to be
+     * memory-mapped instead of being parsed by opencsv.
+     *
+     * @return true if cached CSV files are to be memory-mapped
+     */
+    public boolean isMappingCsvFiles()
+    {
+        return mappedCsvParameter.getValue();
+    }
+
+
+    /**
+     * Returns the number of threads that transform datasets in parallel.
+     * If it is 1 or less, datasets are transformed one after another.
+     *
+     * @return the number of transformer threads
+     */
+    public int getTransformThreadCount()
+    {
+        return transformThreadsParameter.getValue();
+    }
+
+
+    /**
+     * Returns the number of datasets that are assembled on a separate thread
+     * ahead of the transformer. If it is 0 or less, datasets are assembled
+     * when the transformer requests them.
+     *
+     * @return the size of the prefetching queue
+     */
+    public int getPrefetchQueueSize()
+    {
+        return prefetchSizeParameter.getValue();
+    }
+
+
+    /**
+     * Checks if only the datasets that changed since the last
+     * completed harvest are to be harvested.
+     *
+     * @return true if harvests are incremental
+     */
+    public boolean isIncremental()
+    {
+        return incrementalParameter.getValue();
+    }
+
+
+    /**
+     * Checks if the dataset files are to be listed via the Git Trees API
+     * instead of the contents API.
+     *
+     * @return true if the dataset files are to be listed via the Git Trees API
+     */
+    public boolean isListingGitTree()
+    {
+        return gitTreeListingParameter.getValue();
+    }
+
+
+    /**
+     * Returns the path of a local clone or bare mirror of the SOEP repository,
+     * from which the SOEP files are to be read instead of requesting them
+     * from GitHub.
+     *
+     * @return the path of the local git mirror, or an empty string if
+     * the files are to be requested from GitHub
+     */
+    public String getLocalMirrorPath()
+    {
+        final String path = localMirrorParameter.getValue();
+        return path == null ? "" : path.trim();
+    }
+
+
+    /**
+     * Checks if the parsed CSV files are to be stored in binary snapshots,
+     * which replace the CSV files for as long as they do not change.
+     *
+     * @return true if metadata snapshots are to be used
+     */
+    public boolean isUsingMetadataSnapshots()
+    {
+        return snapshotParameter.getValue();
+    }
+
+
+    /**
+     * Checks if datasets are to be skipped if none of the inputs of their
+     * documents changed since the last completed harvest.
+     *
+     * @return true if unchanged documents are to be skipped
+     */
+    public boolean isSkippingUnchangedDocuments()
+    {
+        return skipUnchangedParameter.getValue();
+    }
+
+
+    /**
+     * Returns the maximum number of variables per document. Datasets with
+     * more variables are split into a parent document and part documents.
+     * If it is 0 or less, datasets are never split.
+     *
+     * @return the maximum number of variables per document
+     */
+    public int getMaxVariablesPerDocument()
+    {
+        return maxVariablesParameter.getValue();
+    }
+
+
+    /**
+     * Checks if HTTP connections are to be kept alive and reused for
+     * subsequent requests, instead of sending each request via the
+     * web data retriever of the harvester library.
+     *
+     * @return true if HTTP connections are to be reused
+     */
+    public boolean isKeepingConnectionsAlive()
+    {
+        return keepAliveParameter.getValue();
+    }
+
+
+    /**
+     * Returns the maximum number of milliseconds to wait for an HTTP
+     * connection to be established. It only applies if connections
+     * are kept alive.
+     *
+     * @return the connect timeout in milliseconds, or 0 if there is none
+     */
+    public int getConnectTimeout()
+    {
+        return Math.max(connectTimeoutParameter.getValue(), 0);
+    }
+
+
+    /**
+     * Returns the maximum number of milliseconds to wait for the next bytes
+     * of an HTTP response. It only applies if connections are kept alive.
+     *
+     * @return the read timeout in milliseconds, or 0 if there is none
+     */
+    public int getReadTimeout()
+    {
+        return Math.max(readTimeoutParameter.getValue(), 0);
+    }
+
+
+    /**
+     * Returns the durations and throughput of the phases of the
+     * current or last harvest, which are also published via JMX.
+     *
+     * @return the metrics of the current or last harvest
+     */
+    public HarvestMetrics getHarvestMetrics()
+    {
+        return harvestMetrics;
     }
 }
@@ -0,0 +1,274 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.etls.extractors;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.gerdiproject.harvest.soep.constants.SoepConstants;
+import de.gerdiproject.harvest.soep.constants.SoepLoggingConstants;
+
+/**
+ * This {@linkplain Iterator} retrieves the elements of a source iterator on
+ * a producer thread and buffers them in a bounded queue, allowing the
+ * source elements to be assembled while the consumer processes previous ones.
+ * The times during which either thread waits for the other are measured,
+ * in order to show which side of the pipeline is the bottleneck.
+ *
+ * @param <T> the type of the iterated elements
+ *
+ * @author Robin Weiss
+ */
+public class PrefetchingIterator<T> implements Iterator<T>, AutoCloseable
+{
+    // markers that are put into the queue instead of elements
+    private static final Object NULL_ELEMENT = new Object();
+    private static final Object END_OF_SOURCE = new Object();
+
+    private final Iterator<T> source;
+    private final BlockingQueue<Object> queue;
+    private final Thread producer;
+
+    private final AtomicLong producerStallNanos = new AtomicLong();
+    private final AtomicLong consumerStallNanos = new AtomicLong();
+
+    // written by the consumer and by close(), which may be called by another thread
+    private volatile Object nextItem;
+    private volatile boolean isClosed;
+
+
+    /**
+     * Constructor that starts the producer thread.
+     *
+     * @param source the iterator of which the elements are to be prefetched
+     * @param capacity the max number of prefetched elements
+     * @param threadName the name of the producer thread
+     */
+    public PrefetchingIterator(final Iterator<T> source, final int capacity, final String threadName)
+    {
+        this.source = source;
+        this.queue = new ArrayBlockingQueue<>(Math.max(capacity, 1));
+        this.producer = new Thread(this::produce, threadName);
+        this.producer.setDaemon(true);
+        this.producer.start();
+    }
+
+
+    @Override
+    public boolean hasNext()
+    {
+        if (nextItem == null)
+            nextItem = take();
+
+        return nextItem != END_OF_SOURCE;
+    }
+
+
+    @SuppressWarnings("unchecked") // the queue only contains markers, failures and elements of type T
+    @Override
+    public T next()
+    {
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        final Object item = nextItem;
+
+        // failures are not consumed, because the producer stopped after them
+        if (item instanceof ProducerFailure)
+            throw new ExtractorException(SoepLoggingConstants.ERROR_PREFETCHING, ((ProducerFailure) item).cause);
+
+        nextItem = null;
+        return item == NULL_ELEMENT ? null : (T) item;
+    }
+
+
+    /**
+     * Stops the producer thread and discards all prefetched elements.
+     * This must be called if the iteration is aborted, before the
+     * resources of the source iterator are released.
+     */
+    @Override
+    public void close()
+    {
+        isClosed = true;
+        producer.interrupt();
+
+        try {
+            producer.join(SoepConstants.PREFETCH_SHUTDOWN_TIMEOUT_MS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        queue.clear();
+        nextItem = END_OF_SOURCE;
+    }
+
+
+    /**
+     * Checks if the consumer retrieved all elements of the source iterator.
+     *
+     * @return true if the end of the source iterator was reached by the consumer
+     */
+    public boolean isExhausted()
+    {
+        return nextItem == END_OF_SOURCE && !isClosed;
+    }
+
+
+    /**
+     * Returns the number of elements that are currently prefetched.
+     *
+     * @return the current queue depth
+     */
+    public int getQueueDepth()
+    {
+        return queue.size();
+    }
+
+
+    /**
+     * Returns the max number of elements that can be prefetched.
+     *
+     * @return the queue capacity
+     */
+    public int getCapacity()
+    {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+
+    /**
+     * Returns how long the producer thread waited for the consumer,
+     * because the queue was full.
+     *
+     * @return the producer stall time in milliseconds
+     */
+    public long getProducerStallMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(producerStallNanos.get());
+    }
+
+
+    /**
+     * Returns how long the consumer waited for the producer thread,
+     * because the queue was empty.
+     *
+     * @return the consumer stall time in milliseconds
+     */
+    public long getConsumerStallMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(consumerStallNanos.get());
+    }
+
+
+    /**
+     * The task of the producer thread, which moves all elements
+     * from the source iterator to the queue.
+     */
+    private void produce()
+    {
+        try {
+            try {
+                while (source.hasNext() && !Thread.currentThread().isInterrupted()) {
+                    final T element = source.next();
+                    put(element == null ? NULL_ELEMENT : element);
+                }
+            } catch (final RuntimeException | Error e) {
+                // notify the consumer of the failure
+                put(new ProducerFailure(e));
+                return;
+            }
+
+            put(END_OF_SOURCE);
+
+        } catch (final InterruptedException e) {
+            // the iterator was closed, so nobody is waiting for more elements
+        }
+    }
+
+
+    /**
+     * Adds an item to the queue, waiting for free space if necessary.
+     *
+     * @param item the item to be added
+     *
+     * @throws InterruptedException if the iterator was closed while waiting
+     */
+    private void put(final Object item) throws InterruptedException
+    {
+        if (!queue.offer(item)) {
+            final long startTime = System.nanoTime();
+            queue.put(item);
+            producerStallNanos.addAndGet(System.nanoTime() - startTime);
+        }
+    }
+
+
+    /**
+     * Removes the next item from the queue, waiting for the producer
+     * if necessary.
+     *
+     * @return the next item of the queue
+     */
+    private Object take()
+    {
+        Object item = queue.poll();
+
+        if (item == null) {
+            final long startTime = System.nanoTime();
+
+            try {
+                item = queue.take();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new ExtractorException(SoepLoggingConstants.ERROR_PREFETCHING, e);
+            } finally {
+                consumerStallNanos.addAndGet(System.nanoTime() - startTime);
+            }
+        }
+
+        return item;
+    }
+
+
+    /**
+     * This class wraps an exception of the producer thread,
+     * so it can be re-thrown on the consumer thread.
+     *
+     * @author Robin Weiss
+     */
+    private static class ProducerFailure
+    {
+        private final Throwable cause;
+
+
+        /**
+         * Constructor that requires the exception of the producer thread.
+         *
+         * @param cause the exception of the producer thread
+         */
+        ProducerFailure(final Throwable cause)
+        {
+            this.cause = cause;
+        }
+    }
+}
@@ -15,25 +15,59 @@
  */
 package de.gerdiproject.harvest.etls.extractors;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.DirectoryStream;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import de.gerdiproject.harvest.etls.AbstractETL;
 import de.gerdiproject.harvest.etls.ETLPreconditionException;
+import de.gerdiproject.harvest.etls.SoepETL;
+import de.gerdiproject.harvest.github.GitHubRateLimiter;
+import de.gerdiproject.harvest.github.LocalGitMirror;
 import de.gerdiproject.harvest.github.json.GitHubCommit;
+import de.gerdiproject.harvest.github.json.GitHubComparison;
 import de.gerdiproject.harvest.github.json.GitHubContent;
+import de.gerdiproject.harvest.github.json.GitHubTree;
+import de.gerdiproject.harvest.github.json.GitHubTreeEntry;
 import de.gerdiproject.harvest.soep.constants.SoepConstants;
 import de.gerdiproject.harvest.soep.constants.SoepLoggingConstants;
 import de.gerdiproject.harvest.soep.csv.ConceptMetadata;
 import de.gerdiproject.harvest.soep.csv.DatasetMetadata;
-import de.gerdiproject.harvest.soep.csv.VariableMetadata;
+import de.gerdiproject.harvest.soep.csv.VariableColumn;
+import de.gerdiproject.harvest.soep.incremental.DatasetChanges;
+import de.gerdiproject.harvest.soep.incremental.DocumentFingerprint;
+import de.gerdiproject.harvest.soep.incremental.DocumentFingerprintFile;
+import de.gerdiproject.harvest.soep.incremental.HarvestCheckpoint;
+import de.gerdiproject.harvest.soep.incremental.HarvestedCommitFile;
+import de.gerdiproject.harvest.soep.metrics.FlightRecorderEvent;
+import de.gerdiproject.harvest.soep.metrics.FlightRecorderEventType;
+import de.gerdiproject.harvest.soep.metrics.HarvestMetrics;
+import de.gerdiproject.harvest.soep.metrics.HarvestPhase;
+import de.gerdiproject.harvest.soep.store.DatasetVariables;
+import de.gerdiproject.harvest.soep.store.MetadataSnapshot;
+import de.gerdiproject.harvest.soep.store.VariableStore;
 import de.gerdiproject.harvest.utils.CsvRequester;
+import de.gerdiproject.harvest.utils.csv.CsvRow;
+import de.gerdiproject.harvest.utils.http.KeepAliveHttpTransport;
 
 /**
  * This extractor retrieves SOEP datasets from a GitHub repository.
@@ -42,14 +76,33 @@ import de.gerdiproject.harvest.utils.CsvRequester;
  */
 public class SoepExtractor extends AbstractIteratorExtractor<SoepFileVO>
 {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SoepExtractor.class);
+
     private final CsvRequester csvRequester = new CsvRequester();
     protected Map<String, DatasetMetadata> datasetDescriptions;
-    protected Map<String, List<VariableMetadata>> variableDescriptions;
-    protected Map<String, ConceptMetadata> conceptDescriptions;
+    protected VariableStore variableStore;
     protected Iterator<GitHubContent> datasetIterator;
+    protected Iterator<SoepFileVO> removalMarkerIterator;
 
     private String commitHash;
+    private String metadataCommitHash;
     private int datasetCount = -1;
+    private int prefetchQueueSize;
+    private PrefetchingIterator<SoepFileVO> prefetchingIterator;
+    private boolean isIncremental;
+    private HarvestedCommitFile harvestedCommitFile;
+    private boolean isExhausted;
+    private boolean isListingGitTree;
+    private LocalGitMirror localMirror;
+    private boolean isUsingSnapshots;
+    private boolean isSkippingUnchanged;
+    private DocumentFingerprintFile fingerprintFile;
+    private HarvestCheckpoint harvestCheckpoint;
+    private Map<String, String> fingerprints;
+    private int changedDocumentCount;
+    private int skippedDocumentCount;
+    private int maxVariablesPerDocument;
+    private HarvestMetrics harvestMetrics;
 
 
     @Override
@@ -57,38 +110,225 @@ public class SoepExtractor extends AbstractIteratorExtractor<SoepFileVO>
     {
         super.init(etl);
 
-        this.commitHash = getLatestCommitHash();
+        final SoepETL soepEtl = (SoepETL) etl;
+        this.harvestMetrics = soepEtl.getHarvestMetrics();
+        harvestMetrics.start();
+        csvRequester.setHarvestMetrics(harvestMetrics);
+        csvRequester.setMappingCachedFiles(soepEtl.isMappingCsvFiles());
+        csvRequester.setHttpTransport(soepEtl.isKeepingConnectionsAlive()
+                                      ? new KeepAliveHttpTransport(soepEtl.getConnectTimeout(), soepEtl.getReadTimeout())
+                                      : null);
+        this.prefetchQueueSize = soepEtl.getPrefetchQueueSize();
+        this.isIncremental = soepEtl.isIncremental();
+        this.isListingGitTree = soepEtl.isListingGitTree();
+        this.localMirror = openLocalMirror(soepEtl.getLocalMirrorPath());
+
+        // snapshots must not be written to the folder of mocked responses
+        this.isUsingSnapshots = soepEtl.isUsingMetadataSnapshots() && !csvRequester.isReadingFromDisk();
+        this.harvestedCommitFile = new HarvestedCommitFile(
+            new File(csvRequester.getCacheFolder(), SoepConstants.HARVESTED_COMMIT_FILE_NAME));
+        this.maxVariablesPerDocument = soepEtl.getMaxVariablesPerDocument();
+        this.isSkippingUnchanged = soepEtl.isSkippingUnchangedDocuments();
+        this.fingerprintFile = new DocumentFingerprintFile(
+            new File(csvRequester.getCacheFolder(), SoepConstants.FINGERPRINT_FILE_NAME));
+        this.harvestCheckpoint = new HarvestCheckpoint(harvestedCommitFile, fingerprintFile);
+
+        // the downloads are independent of each other, so they can run in parallel
+        final ExecutorService executor = Executors.newFixedThreadPool(SoepConstants.INIT_THREAD_COUNT);
 
-        // Get metadata from CSV, including datasets, variables that describe them, and concepts of these variables
         try {
-            this.datasetDescriptions = loadDatasetMetadata();
-            this.variableDescriptions = loadVariableMetadata();
-            this.conceptDescriptions = loadConceptMetadata();
-        } catch (final IOException e) {
-            throw new ETLPreconditionException(SoepLoggingConstants.ERROR_READING_CSV_FILE, e);
+            final Future<String> commitHashFuture = executor.submit(this::getLatestCommitHash);
+
+            // Get list of datasets
+            final Future<List<GitHubContent>> contentsFuture =
+                executor.submit(() -> listDatasetFiles(commitHashFuture));
+
+            // the CSV files only need to be parsed if they changed since the last snapshot,
+            // and incremental harvests compare all changes of the metadata folder
+            final Future<String> metadataCommitHashFuture = isUsingSnapshots || isIncremental
+                                                            ? executor.submit(this::getMetadataCommitHash)
+                                                            : CompletableFuture.completedFuture(null);
+            this.metadataCommitHash = awaitInitResult(metadataCommitHashFuture);
+            final MetadataSnapshot snapshot = isUsingSnapshots ? readMetadataSnapshot(metadataCommitHash) : null;
+
+            if (snapshot != null) {
+                this.datasetDescriptions = snapshot.getDatasets();
+                this.variableStore = snapshot.getVariableStore();
+            } else {
+                // Get metadata from CSV, including datasets, variables that describe them, and concepts of these variables
+                final Future<Map<String, DatasetMetadata>> datasetFuture = executor.submit(this::loadDatasetMetadata);
+                final Future<VariableStore> variableFuture = executor.submit(this::loadVariableMetadata);
+                final Future<Map<String, ConceptMetadata>> conceptFuture = executor.submit(this::loadConceptMetadata);
+
+                this.datasetDescriptions = awaitInitResult(datasetFuture);
+                this.variableStore = awaitInitResult(variableFuture);
+
+                // join the concepts of all variables once, so datasets can look them up by index
+                final Map<String, ConceptMetadata> concepts = awaitInitResult(conceptFuture);
+                final long joinStartNanos = System.nanoTime();
+                variableStore.joinConcepts(concepts);
+                harvestMetrics.record(HarvestPhase.CONCEPT_JOIN, joinStartNanos);
+
+                if (isUsingSnapshots)
+                    writeMetadataSnapshot(metadataCommitHash);
+            }
+
+            this.commitHash = awaitInitResult(commitHashFuture);
+
+            List<GitHubContent> datasetContents = awaitInitResult(contentsFuture);
+            Collection<String> removedDatasetPaths = Collections.emptyList();
+
+            // the fingerprints of all listed datasets are stored when the documents are loaded
+            this.fingerprints = isSkippingUnchanged ? computeFingerprints(datasetContents) : null;
+
+            // the part counts of all listed datasets are stored, so surplus parts can be removed later
+            final Map<String, Integer> partCounts = countParts(datasetContents);
+            final Map<String, Integer> harvestedPartCounts = fingerprintFile.loadPartCounts();
+            final boolean isTrackingParts = !partCounts.isEmpty() || !harvestedPartCounts.isEmpty();
+            final List<SoepFileVO> removalMarkers = createSurplusPartMarkers(datasetContents, partCounts, harvestedPartCounts);
+
+            // only harvest datasets that changed since the last harvest, if possible
+            final DatasetChanges changes = isIncremental ? retrieveDatasetChanges(datasetContents) : null;
+
+            if (changes != null) {
+                // datasets whose rows were removed from "datasets.csv" no longer have a document
+                final Set<String> removedMetadata = changes.getRemovedMetadataDatasets();
+                removedDatasetPaths = new LinkedList<>(changes.getRemovedDatasetPaths());
+
+                for (final GitHubContent content : datasetContents) {
+                    if (removedMetadata.contains(getDatasetName(content)))
+                        removedDatasetPaths.add(content.getPath());
+                }
+
+                datasetContents = datasetContents.stream()
+                                  .filter((final GitHubContent content) -> changes.isChanged(getDatasetName(content))
+                                          && !removedMetadata.contains(getDatasetName(content)))
+                                  .collect(Collectors.toList());
+            }
+
+            // skip datasets whose documents would not change
+            if (isSkippingUnchanged) {
+                final Map<String, String> harvestedFingerprints = fingerprintFile.load();
+                final int listedDatasetCount = datasetContents.size();
+
+                datasetContents = datasetContents.stream()
+                                  .filter((final GitHubContent content) ->
+                                          !fingerprints.get(content.getPath()).equals(harvestedFingerprints.get(content.getPath())))
+                                  .collect(Collectors.toList());
+
+                this.skippedDocumentCount = listedDatasetCount - datasetContents.size();
+                this.changedDocumentCount = datasetContents.size();
+
+                LOGGER.info(String.format(
+                                SoepLoggingConstants.FINGERPRINT_STATISTICS,
+                                changedDocumentCount,
+                                skippedDocumentCount));
+            } else {
+                this.skippedDocumentCount = 0;
+                this.changedDocumentCount = datasetContents.size();
+            }
+
+            harvestMetrics.setDocumentCounts(changedDocumentCount, skippedDocumentCount);
+
+            // removed datasets are marked along with all of their previous parts
+            removalMarkers.addAll(createRemovalMarkers(removedDatasetPaths, harvestedPartCounts));
+
+            // the harvest state is only stored after all documents were loaded
+            harvestCheckpoint.begin(
+                isIncremental ? metadataCommitHash : null,
+                fingerprints,
+                isTrackingParts ? partCounts : null);
+
+            // Set size and iterators
+            this.datasetCount = countDocuments(datasetContents, partCounts) + removalMarkers.size();
+            this.datasetIterator = datasetContents.iterator();
+            this.removalMarkerIterator = removalMarkers.iterator();
+        } finally {
+            // abort remaining downloads if one of them failed
+            executor.shutdownNow();
+
+            if (localMirror != null) {
+                localMirror.close();
+                localMirror = null;
+            }
+        }
+    }
+
+
+    /**
+     * Waits for an asynchronous initialization task to finish and returns its result.
+     * Exceptions that were thrown by the task are re-thrown.
+     *
+     * @param future the result of an initialization task
+     * @param <T> the type of the result
+     *
+     * @throws ETLPreconditionException if the task failed to read a CSV file or was interrupted
+     *
+     * @return the result of the task
+     */
+    private static <T> T awaitInitResult(final Future<T> future)
+    {
+        try {
+            return future.get();
+
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ETLPreconditionException(SoepLoggingConstants.ERROR_INIT_INTERRUPTED, e);
+
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+
+            if (cause instanceof Error)
+                throw (Error) cause;
+
+            throw new ETLPreconditionException(SoepLoggingConstants.ERROR_READING_CSV_FILE, cause);
         }
+    }
 
-        // Get list of datasets
-        final List<GitHubContent> datasetContents = csvRequester.getObjectFromUrl(
-                                                        SoepConstants.DATASETS_CONTENT_URL,
-                                                        SoepConstants.CONTENT_LIST_TYPE);
 
-        // Set size and iterator
-        this.datasetCount = datasetContents.size();
-        this.datasetIterator = datasetContents.iterator();
+    /**
+     * Opens the local git mirror of the SOEP repository, if one is configured.
+     *
+     * @param localMirrorPath the path of the local git mirror, or an empty string
+     *
+     * @throws ETLPreconditionException if the local git mirror cannot be opened
+     *
+     * @return the local git mirror, or null if the files are to be requested from GitHub
+     */
+    private static LocalGitMirror openLocalMirror(final String localMirrorPath)
+    {
+        if (localMirrorPath.isEmpty())
+            return null;
+
+        try {
+            final LocalGitMirror mirror = new LocalGitMirror(new File(localMirrorPath));
+            LOGGER.info(String.format(SoepLoggingConstants.READING_GIT_MIRROR_INFO, localMirrorPath, mirror.getHeadCommitHash()));
+            return mirror;
+
+        } catch (final IOException e) {
+            throw new ETLPreconditionException(SoepLoggingConstants.ERROR_OPENING_GIT_MIRROR, e);
+        }
     }
 
 
     /**
-     * Sends a "commits" request to the GitHub REST API
-     * and retrieves the commit hash of the latest commit that changed
-     * the datasets folder.
+     * Sends a "commits" request to the GitHub REST API, or reads the local
+     * git mirror, and retrieves the commit hash of the latest commit that
+     * changed the datasets folder.
+     *
+     * @throws IOException if the local git mirror could not be read
      *
      * @return the commit hash of the latest commit that changed
      * the datasets folder
      */
-    private String getLatestCommitHash()
+    private String getLatestCommitHash() throws IOException
     {
+        if (localMirror != null)
+            return localMirror.getLatestCommitHash(SoepConstants.DATASETS_FOLDER);
+
         final List<GitHubCommit> datasetCommits = csvRequester.getObjectFromUrl(
                                                       SoepConstants.DATASET_COMMITS_URL,
                                                       SoepConstants.COMMIT_LIST_TYPE);
@@ -98,6 +338,464 @@ public class SoepExtractor extends AbstractIteratorExtractor<SoepFileVO>
     }
 
 
+    /**
+     * Sends a "commits" request to the GitHub REST API, or reads the local
+     * git mirror, and retrieves the commit hash of the latest commit that
+     * changed the folder of the CSV files.
+     *
+     * @return the commit hash of the latest commit that changed
+     * the folder of the CSV files, or null if it is unknown
+     */
+    private String getMetadataCommitHash()
+    {
+        if (localMirror != null) {
+            try {
+                return localMirror.getLatestCommitHash(SoepConstants.METADATA_FOLDER);
+            } catch (final IOException e) {
+                LOGGER.warn(String.format(SoepLoggingConstants.ERROR_READING_SNAPSHOT, e.getMessage()));
+                return null;
+            }
+        }
+
+        final List<GitHubCommit> metadataCommits = csvRequester.getObjectFromUrl(
+                                                       SoepConstants.METADATA_COMMITS_URL,
+                                                       SoepConstants.COMMIT_LIST_TYPE);
+
+        return metadataCommits == null || metadataCommits.isEmpty() ? null : metadataCommits.get(0).getSha();
+    }
+
+
+    /**
+     * Returns the file of the metadata snapshot of a specified commit.
+     *
+     * @param metadataCommitHash the commit hash of the parsed CSV files
+     *
+     * @return the file of the metadata snapshot
+     */
+    private File getSnapshotFile(final String metadataCommitHash)
+    {
+        return new File(
+                   new File(csvRequester.getCacheFolder(), SoepConstants.SNAPSHOT_FOLDER_NAME),
+                   metadataCommitHash + SoepConstants.SNAPSHOT_FILE_SUFFIX);
+    }
+
+
+    /**
+     * Reads the parsed CSV files from the snapshot of a specified commit.
+     * Corrupt and out-of-date snapshots are deleted, so they are
+     * replaced by a new snapshot.
+     *
+     * @param metadataCommitHash the commit hash of the CSV files, or null
+     *
+     * @return the metadata snapshot, or null if the CSV files need to be parsed
+     */
+    private MetadataSnapshot readMetadataSnapshot(final String metadataCommitHash)
+    {
+        if (metadataCommitHash == null)
+            return null;
+
+        final File snapshotFile = getSnapshotFile(metadataCommitHash);
+
+        if (!snapshotFile.exists())
+            return null;
+
+        try {
+            final MetadataSnapshot snapshot = MetadataSnapshot.read(snapshotFile, metadataCommitHash);
+            LOGGER.info(String.format(SoepLoggingConstants.READING_SNAPSHOT_INFO, metadataCommitHash, snapshotFile.getPath()));
+            return snapshot;
+
+        } catch (final IOException e) {
+            LOGGER.warn(String.format(SoepLoggingConstants.ERROR_READING_SNAPSHOT, e.getMessage()));
+
+            if (!snapshotFile.delete())
+                LOGGER.warn(String.format(SoepLoggingConstants.ERROR_DELETING_SNAPSHOT, snapshotFile.getPath()));
+
+            return null;
+        }
+    }
+
+
+    /**
+     * Writes the parsed CSV files to the snapshot of a specified commit,
+     * and deletes the snapshots of all other commits.
+     *
+     * @param metadataCommitHash the commit hash of the CSV files, or null
+     * if no snapshot is to be written
+     */
+    private void writeMetadataSnapshot(final String metadataCommitHash)
+    {
+        if (metadataCommitHash == null)
+            return;
+
+        final File snapshotFile = getSnapshotFile(metadataCommitHash);
+
+        try {
+            MetadataSnapshot.write(snapshotFile, metadataCommitHash, datasetDescriptions, variableStore);
+        } catch (final IOException e) {
+            LOGGER.warn(String.format(SoepLoggingConstants.ERROR_WRITING_SNAPSHOT, snapshotFile.getPath()), e);
+            return;
+        }
+
+        final File[] outdatedSnapshots = snapshotFile.getParentFile().listFiles(
+                                             (final File file) -> !file.equals(snapshotFile));
+
+        if (outdatedSnapshots != null) {
+            for (final File outdatedSnapshot : outdatedSnapshots) {
+                if (!outdatedSnapshot.delete())
+                    LOGGER.warn(String.format(SoepLoggingConstants.ERROR_DELETING_SNAPSHOT, outdatedSnapshot.getPath()));
+            }
+        }
+    }
+
+
+    /**
+     * Lists the files of the datasets folder, either via the local git mirror,
+     * via the contents API, or via the Git Trees API if the latest commit hash is known.
+     *
+     * @param commitHashFuture the pending result of the latest commit hash
+     *
+     * @throws InterruptedException if the thread was interrupted while waiting for the commit hash
+     * @throws ExecutionException if the commit hash could not be retrieved
+     * @throws IOException if the local git mirror could not be read
+     *
+     * @return a list of all dataset files
+     */
+    private List<GitHubContent> listDatasetFiles(final Future<String> commitHashFuture)
+    throws InterruptedException, ExecutionException, IOException
+    {
+        if (localMirror != null)
+            return createContents(localMirror.listFiles(SoepConstants.DATASETS_FOLDER));
+
+        if (isListingGitTree) {
+            final String latestCommitHash = commitHashFuture.get();
+
+            if (latestCommitHash != null) {
+                final GitHubTree datasetTree = csvRequester.getObjectFromUrl(
+                                                   String.format(SoepConstants.DATASETS_TREE_URL, latestCommitHash),
+                                                   GitHubTree.class);
+
+                // truncated trees are incomplete, so they cannot be used
+                if (datasetTree != null && !datasetTree.isTruncated())
+                    return createContents(datasetTree.getTree());
+
+                LOGGER.warn(SoepLoggingConstants.TRUNCATED_TREE_WARNING);
+            }
+        }
+
+        return csvRequester.getObjectFromUrl(
+                   SoepConstants.DATASETS_CONTENT_URL,
+                   SoepConstants.CONTENT_LIST_TYPE);
+    }
+
+
+    /**
+     * Creates the GitHub contents of all files of the datasets tree.
+     * Files of sub-folders are skipped, because the contents API does not list them.
+     *
+     * @param entries the entries of the Git tree of the datasets folder
+     *
+     * @return the GitHub contents of all dataset files
+     */
+    private static List<GitHubContent> createContents(final List<GitHubTreeEntry> entries)
+    {
+        return entries.stream()
+               .filter((final GitHubTreeEntry entry) -> SoepConstants.TREE_ENTRY_TYPE_BLOB.equals(entry.getType()))
+               .filter((final GitHubTreeEntry entry) -> entry.getPath().indexOf('/') == -1)
+               .map(SoepExtractor::createContent)
+               .collect(Collectors.toList());
+    }
+
+
+    /**
+     * Creates the GitHub content of a dataset file from an entry of the datasets tree.
+     * The URLs of the file are derived from its path, in the same way as
+     * they are returned by the contents API.
+     *
+     * @param entry an entry of the Git tree of the datasets folder
+     *
+     * @return the GitHub content of the dataset file
+     */
+    private static GitHubContent createContent(final GitHubTreeEntry entry)
+    {
+        final String path = SoepConstants.DATASETS_PATH + entry.getPath();
+
+        final GitHubContent content = new GitHubContent();
+        content.setName(entry.getPath());
+        content.setPath(path);
+        content.setSha(entry.getSha());
+        content.setSize(entry.getSize());
+        content.setType(SoepConstants.CONTENT_TYPE_FILE);
+        content.setGitUrl(entry.getUrl());
+        content.setHtmlUrl(String.format(SoepConstants.FILE_HTML_URL, path));
+        content.setDownloadUrl(String.format(SoepConstants.FILE_DOWNLOAD_URL, path));
+
+        return content;
+    }
+
+
+    /**
+     * Compares the last harvested commit with the latest commit that changed
+     * the metadata folder, in order to determine which datasets need to be
+     * harvested again. Commits that only changed CSV files are compared, too.
+     *
+     * @param datasetContents the GitHub contents of all listed dataset files
+     *
+     * @return the changed datasets, or null if all datasets need to be harvested
+     */
+    private DatasetChanges retrieveDatasetChanges(final List<GitHubContent> datasetContents)
+    {
+        final String harvestedCommitHash = harvestedCommitFile.load();
+
+        if (harvestedCommitHash == null || metadataCommitHash == null)
+            return null;
+
+        DatasetChanges changes;
+
+        try {
+            final GitHubComparison comparison = csvRequester.getObjectFromUrl(
+                                                    String.format(SoepConstants.COMPARE_URL, harvestedCommitHash, metadataCommitHash),
+                                                    GitHubComparison.class);
+            changes = DatasetChanges.fromComparison(comparison);
+
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn(String.format(SoepLoggingConstants.ERROR_COMPARING_COMMITS, harvestedCommitHash, metadataCommitHash, e.getMessage()));
+            changes = null;
+        }
+
+        // patches that start inside a quoted field may yield the names of field fragments,
+        // which cannot be told apart from concepts without variables, so both require a full harvest
+        if (changes != null) {
+            final Set<String> listedDatasets = datasetContents.stream()
+                                               .map(SoepExtractor::getDatasetName)
+                                               .collect(Collectors.toSet());
+
+            if (!changes.hasKnownRecordNames(
+                    (final String datasetName) -> listedDatasets.contains(datasetName)
+                    || datasetDescriptions.containsKey(datasetName)
+                    || variableStore.containsDataset(datasetName),
+                    variableStore::containsConcept)) {
+                LOGGER.warn(String.format(SoepLoggingConstants.ERROR_UNKNOWN_CSV_RECORD, harvestedCommitHash));
+                changes = null;
+            }
+        }
+
+        if (changes == null) {
+            LOGGER.info(String.format(SoepLoggingConstants.FULL_HARVEST_FALLBACK_INFO, harvestedCommitHash));
+            return null;
+        }
+
+        // datasets are also changed if the concept of one of their variables changed
+        changes.addChangedDatasets(variableStore.getDatasetsOfConcepts(changes.getChangedConcepts()));
+
+        LOGGER.info(String.format(
+                        SoepLoggingConstants.INCREMENTAL_HARVEST_INFO,
+                        harvestedCommitHash,
+                        changes.getChangedDatasets().size(),
+                        changes.getRemovedDatasetPaths().size() + changes.getRemovedMetadataDatasets().size()));
+
+        return changes;
+    }
+
+
+    /**
+     * Computes the {@linkplain DocumentFingerprint}s of datasets.
+     *
+     * @param datasetContents the GitHub contents of the dataset files
+     *
+     * @return a map of dataset file paths to fingerprints
+     */
+    private Map<String, String> computeFingerprints(final List<GitHubContent> datasetContents)
+    {
+        final Map<String, String> datasetFingerprints = new HashMap<>();
+
+        for (final GitHubContent content : datasetContents) {
+            final String datasetName = getDatasetName(content);
+            datasetFingerprints.put(
+                content.getPath(),
+                DocumentFingerprint.compute(
+                    content,
+                    datasetDescriptions.get(datasetName),
+                    variableStore.getDatasetVariables(datasetName),
+                    maxVariablesPerDocument));
+        }
+
+        return datasetFingerprints;
+    }
+
+
+    /**
+     * Counts the part documents of all datasets that are split.
+     *
+     * @param datasetContents the GitHub contents of the dataset files
+     *
+     * @return a map of dataset file paths to the numbers of their part documents,
+     * which only contains datasets that are split
+     */
+    private Map<String, Integer> countParts(final List<GitHubContent> datasetContents)
+    {
+        final Map<String, Integer> partCounts = new HashMap<>();
+
+        for (final GitHubContent content : datasetContents) {
+            final String datasetName = getDatasetName(content);
+
+            // datasets without metadata are skipped, and never split
+            if (datasetDescriptions.containsKey(datasetName)) {
+                final int partCount = getPartCount(variableStore.getDatasetVariables(datasetName));
+
+                if (partCount > 0)
+                    partCounts.put(content.getPath(), partCount);
+            }
+        }
+
+        return partCounts;
+    }
+
+
+    /**
+     * Counts the documents that are created from datasets, including
+     * the part documents of datasets that are split.
+     *
+     * @param datasetContents the GitHub contents of the dataset files
+     * @param partCounts the numbers of part documents of all listed datasets that are split
+     *
+     * @return the number of documents of the datasets
+     */
+    private static int countDocuments(final List<GitHubContent> datasetContents, final Map<String, Integer> partCounts)
+    {
+        int documentCount = 0;
+
+        for (final GitHubContent content : datasetContents)
+            documentCount += 1 + partCounts.getOrDefault(content.getPath(), 0);
+
+        return documentCount;
+    }
+
+
+    /**
+     * Creates removal markers for the part documents of the last completed
+     * harvest that are no longer created, because a dataset was split into
+     * fewer parts or is no longer split at all.
+     *
+     * @param listedContents the GitHub contents of all listed dataset files
+     * @param partCounts the current numbers of part documents of all listed datasets
+     * @param harvestedPartCounts the numbers of part documents of the last completed harvest
+     *
+     * @return a modifiable list of removal markers of surplus part documents
+     */
+    private static List<SoepFileVO> createSurplusPartMarkers(final List<GitHubContent> listedContents, final Map<String, Integer> partCounts,
+                                                             final Map<String, Integer> harvestedPartCounts)
+    {
+        final List<SoepFileVO> markers = new LinkedList<>();
+
+        for (final GitHubContent content : listedContents) {
+            final int harvestedPartCount = harvestedPartCounts.getOrDefault(content.getPath(), 0);
+
+            for (int partNumber = partCounts.getOrDefault(content.getPath(), 0) + 1; partNumber <= harvestedPartCount; partNumber++)
+                markers.add(createRemovalMarker(content.getPath(), partNumber));
+        }
+
+        return markers;
+    }
+
+
+    /**
+     * Creates removal markers for removed datasets, and for all part
+     * documents that were created from them in the last completed harvest.
+     *
+     * @param removedDatasetPaths the repository paths of the removed dataset files
+     * @param harvestedPartCounts the numbers of part documents of the last completed harvest
+     *
+     * @return a list of removal markers
+     */
+    private static List<SoepFileVO> createRemovalMarkers(final Collection<String> removedDatasetPaths,
+                                                         final Map<String, Integer> harvestedPartCounts)
+    {
+        final List<SoepFileVO> markers = new LinkedList<>();
+
+        for (final String path : removedDatasetPaths) {
+            final int harvestedPartCount = harvestedPartCounts.getOrDefault(path, 0);
+
+            for (int partNumber = 0; partNumber <= harvestedPartCount; partNumber++)
+                markers.add(createRemovalMarker(path, partNumber));
+        }
+
+        return markers;
+    }
+
+
+    /**
+     * Creates a value object that marks a dataset or one of its parts as removed.
+     *
+     * @param path the repository path of the removed dataset file
+     * @param partNumber the number of the removed part document, or 0 if the
+     * parent document is removed
+     *
+     * @return a value object that only contains the path of the dataset and the part number
+     */
+    private static SoepFileVO createRemovalMarker(final String path, final int partNumber)
+    {
+        final GitHubContent content = new GitHubContent();
+        content.setPath(path);
+        content.setName(path.substring(path.lastIndexOf('/') + 1));
+
+        return new SoepFileVO(content, null, null, true, partNumber, 0);
+    }
+
+
+    /**
+     * Calculates the number of part documents of a dataset.
+     *
+     * @param variables the variables of the dataset
+     *
+     * @return the number of part documents, or 0 if the dataset is not split
+     */
+    private int getPartCount(final DatasetVariables variables)
+    {
+        if (maxVariablesPerDocument <= 0 || variables.size() <= maxVariablesPerDocument)
+            return 0;
+
+        return (variables.size() + maxVariablesPerDocument - 1) / maxVariablesPerDocument;
+    }
+
+
+    /**
+     * Returns the number of datasets of the current harvest whose documents
+     * are transformed, not including removed datasets.
+     *
+     * @return the number of changed documents
+     */
+    public int getChangedDocumentCount()
+    {
+        return changedDocumentCount;
+    }
+
+
+    /**
+     * Returns the number of datasets of the current harvest that are skipped,
+     * because none of the inputs of their documents changed since the last
+     * completed harvest.
+     *
+     * @return the number of skipped documents
+     */
+    public int getSkippedDocumentCount()
+    {
+        return skippedDocumentCount;
+    }
+
+
+    /**
+     * Retrieves the name of a dataset from its GitHub content.
+     *
+     * @param content the GitHub content of a dataset file
+     *
+     * @return the file name without extension
+     */
+    private static String getDatasetName(final GitHubContent content)
+    {
+        return content.getName().substring(0, content.getName().lastIndexOf('.'));
+    }
+
+
     @Override
     public String getUniqueVersionString()
     {
@@ -115,7 +813,64 @@ public class SoepExtractor extends AbstractIteratorExtractor<SoepFileVO>
     @Override
     protected Iterator<SoepFileVO> extractAll() throws ExtractorException
     {
-        return new SoepFileIterator();
+        if (prefetchQueueSize <= 0)
+            return new SoepFileIterator();
+
+        // assemble datasets on a separate thread, while the transformer processes previous ones
+        this.prefetchingIterator = new PrefetchingIterator<>(
+            new SoepFileIterator(),
+            prefetchQueueSize,
+            SoepConstants.PREFETCH_THREAD_NAME);
+        harvestMetrics.setPrefetchingIterator(prefetchingIterator);
+
+        return prefetchingIterator;
+    }
+
+
+    /**
+     * Iterates through the rows of a SOEP CSV file, which is read from the local
+     * git mirror if there is one, or downloaded otherwise.
+     *
+     * @param downloadUrl the URL from which the latest CSV file can be downloaded,
+     * and which identifies its cache file
+     * @param repositoryPath the path of the CSV file within the repository
+     * @param iterFunction a consumer function that accepts each row of the CSV file
+     *
+     * @throws IOException if the CSV file could not be read
+     */
+    private void parseCsv(final String downloadUrl, final String repositoryPath, final Consumer<CsvRow> iterFunction) throws IOException
+    {
+        final FlightRecorderEvent parseEvent = FlightRecorderEventType.CSV_PARSE.begin();
+        final long[] rowCount = {0};
+
+        // rows are only counted if the event is recorded
+        final Consumer<CsvRow> countingFunction;
+
+        if (parseEvent.isRecording()) {
+            countingFunction = (final CsvRow row) -> {
+                rowCount[0]++;
+                iterFunction.accept(row);
+            };
+        } else
+            countingFunction = iterFunction;
+
+        // files of a known commit are downloaded at that commit, so they match the snapshot key and the compared commit
+        if (localMirror == null && metadataCommitHash != null)
+            csvRequester.parseCsv(
+                String.format(SoepConstants.FILE_AT_COMMIT_DOWNLOAD_URL, metadataCommitHash, repositoryPath),
+                downloadUrl,
+                countingFunction);
+
+        else if (localMirror == null)
+            csvRequester.parseCsv(downloadUrl, countingFunction);
+        else {
+            try
+                (InputStream csvInput = localMirror.openFile(repositoryPath)) {
+                csvRequester.parseCsvStream(csvInput, countingFunction);
+            }
+        }
+
+        parseEvent.commit(repositoryPath, rowCount[0]);
     }
 
 
@@ -129,13 +884,14 @@ public class SoepExtractor extends AbstractIteratorExtractor<SoepFileVO>
     {
         final Map<String, DatasetMetadata> metadataMap = new HashMap<>();
 
-        final Consumer<String[]> addFunction = (final String... row) -> {
+        final Consumer<CsvRow> addFunction = (final CsvRow row) -> {
             final DatasetMetadata dm = new DatasetMetadata(row);
             metadataMap.put(dm.getDatasetName(), dm);
         };
 
-        csvRequester.parseCsv(
+        parseCsv(
             SoepConstants.DATASETS_CSV_DOWNLOAD_URL,
+            SoepConstants.DATASETS_CSV_PATH,
             addFunction);
 
         return metadataMap;
@@ -152,14 +908,15 @@ public class SoepExtractor extends AbstractIteratorExtractor<SoepFileVO>
     {
         final Map<String, ConceptMetadata> conceptsDescription = new HashMap<>();
 
-        final Consumer<String[]> addFunction = (final String... row) -> {
+        final Consumer<CsvRow> addFunction = (final CsvRow row) -> {
             final ConceptMetadata cm = new ConceptMetadata(row);
             conceptsDescription.put(cm.getConceptName(), cm);
         };
 
         // Parse "concepts" CSV file
-        csvRequester.parseCsv(
+        parseCsv(
             SoepConstants.CONCEPTS_CSV_DOWNLOAD_URL,
+            SoepConstants.CONCEPTS_CSV_PATH,
             addFunction);
 
         return conceptsDescription;
@@ -168,28 +925,32 @@ public class SoepExtractor extends AbstractIteratorExtractor<SoepFileVO>
 
     /**
      * Load the variable descriptions for every dataset.
+     * Only the columns that are required for harvesting are read.
      *
      * @throws IOException if the CSV file could not be read
-     * @return a Map of datasets and their corresponding variable metadata {@linkplain VariableMetadata}
+     * @return a {@linkplain VariableStore} that contains the variables of all datasets
      */
-    public Map<String, List<VariableMetadata>> loadVariableMetadata() throws IOException
+    public VariableStore loadVariableMetadata() throws IOException
     {
-        final Map<String, List<VariableMetadata>> variableMap = new HashMap<>();
+        final VariableStore variables = new VariableStore();
 
-        final Consumer<String[]> addFunction = (final String... row) -> {
-            final VariableMetadata vm = new VariableMetadata(row);
-            final String key = vm.getDatasetName();
-            final List<VariableMetadata> variableMetadata = variableMap.computeIfAbsent(key, k -> new LinkedList<>());
-
-            variableMetadata.add(vm);
-        };
+        final Consumer<CsvRow> addFunction = (final CsvRow row) ->
+                                             variables.add(
+                                                 row.get(VariableColumn.DATASET_NAME.getIndex()),
+                                                 row.get(VariableColumn.VARIABLE_NAME.getIndex()),
+                                                 row.get(VariableColumn.CONCEPT_NAME.getIndex()),
+                                                 row.get(VariableColumn.SOURCE.getIndex()));
 
         // Parse "variables" CSV file
-        csvRequester.parseCsv(
+        parseCsv(
             SoepConstants.VARIABLES_CSV_DOWNLOAD_URL,
+            SoepConstants.VARIABLES_CSV_PATH,
             addFunction);
 
-        return variableMap;
+        // group variables by dataset
+        variables.finish();
+
+        return variables;
     }
 
 
@@ -201,65 +962,159 @@ public class SoepExtractor extends AbstractIteratorExtractor<SoepFileVO>
      */
     private class SoepFileIterator implements Iterator<SoepFileVO>
     {
+        // the dataset that is split into parts, if there is one
+        private SoepFileVO splitDataset;
+        private int nextPartNumber;
+
+
         @Override
         public boolean hasNext()
         {
-            return datasetIterator.hasNext();
+            final boolean hasNext = splitDataset != null || datasetIterator.hasNext() || removalMarkerIterator.hasNext();
+
+            if (!hasNext)
+                isExhausted = true;
+
+            return hasNext;
         }
 
 
         @Override
         public SoepFileVO next()
         {
+            final long startNanos = System.nanoTime();
+
+            try {
+                return nextDataset();
+            } finally {
+                harvestMetrics.record(HarvestPhase.EXTRACT, startNanos);
+            }
+        }
+
+
+        /**
+         * Assembles the next dataset, part of a split dataset, or removed dataset.
+         *
+         * @return a value object of the next dataset, or null if the dataset has no metadata
+         */
+        private SoepFileVO nextDataset()
+        {
+            // the parts of a split dataset follow its parent document
+            if (splitDataset != null)
+                return createNextPart();
+
+            // removed datasets and parts are marked after all changed datasets
+            if (!datasetIterator.hasNext())
+                return removalMarkerIterator.next();
+
             final GitHubContent content = datasetIterator.next();
             final String datasetName = getDatasetName(content);
 
+            final FlightRecorderEvent joinEvent = FlightRecorderEventType.DATASET_JOIN.begin();
             final DatasetMetadata datasetMetadata = datasetDescriptions.get(datasetName);
 
             // Abort if there is no metadata
             if (datasetMetadata == null)
                 return null;
 
-            final List<VariableMetadata> variableMetadataRecords = variableDescriptions.get(datasetName);
-            final Map<String, ConceptMetadata> variableConceptMetadataRecords = getVariableConceptMap(variableMetadataRecords);
+            final DatasetVariables variables = variableStore.getDatasetVariables(datasetName);
+            final int partCount = getPartCount(variables);
+            joinEvent.commit(datasetName, variables.size());
 
-            return new SoepFileVO(content, datasetMetadata, variableMetadataRecords, variableConceptMetadataRecords);
-        }
+            if (partCount == 0)
+                return new SoepFileVO(content, datasetMetadata, variables, false, 0, 0);
 
+            this.splitDataset = new SoepFileVO(content, datasetMetadata, variables, false, 0, partCount);
+            this.nextPartNumber = 1;
 
-        private String getDatasetName(final GitHubContent content)
-        {
-            return content.getName().substring(0, content.getName().lastIndexOf('.'));
+            // the parent document has no variables
+            return new SoepFileVO(content, datasetMetadata, variables.slice(0, 0), false, 0, partCount);
         }
 
 
         /**
-         * Associate variable names of a dataset with ConceptMetadata.
+         * Creates the next part of the dataset that is split.
          *
-         * @param variableMetadata List of VariableMetadata elements that describe the dataset at hand.
-         * @return List<VariableMetadata> A map of variable name - ConceptMetadata "records"
-         **/
-        private Map<String, ConceptMetadata> getVariableConceptMap(final List<VariableMetadata> variableMetadata)
+         * @return a value object that contains a range of the variables of the dataset
+         */
+        private SoepFileVO createNextPart()
         {
-            // input: Map<String, VariableMetadata> variableDescriptions
-            final Map<String, ConceptMetadata> conceptMetadataRecords = new HashMap<>();
+            final DatasetVariables variables = splitDataset.getVariables();
+            final int fromIndex = (nextPartNumber - 1) * maxVariablesPerDocument;
+            final int toIndex = Math.min(fromIndex + maxVariablesPerDocument, variables.size());
 
-            // 1. Loop through VariableMetadata from the input, and add the ones matching the dataset name
-            for (final VariableMetadata vm : variableMetadata) {
-                final String key = vm.getConceptName();
+            final SoepFileVO part = new SoepFileVO(
+                splitDataset.getContent(),
+                splitDataset.getDatasetMetadata(),
+                variables.slice(fromIndex, toIndex),
+                false,
+                nextPartNumber,
+                splitDataset.getPartCount());
 
-                if (!key.isEmpty())
-                    conceptMetadataRecords.put(key, conceptDescriptions.get(key));
-            }
+            if (nextPartNumber == splitDataset.getPartCount())
+                this.splitDataset = null;
+            else
+                nextPartNumber++;
 
-            return conceptMetadataRecords;
+            return part;
         }
     }
 
 
+    /**
+     * Marks all documents of the current harvest as loaded successfully.
+     * Only then, the harvested commit hash and the document fingerprints
+     * are stored, provided that all datasets were extracted.
+     */
+    public void markDocumentsLoaded()
+    {
+        if (harvestCheckpoint != null)
+            harvestCheckpoint.markLoaded();
+    }
+
+
     @Override
     public void clear()
     {
-        // nothing to clean up
+        // the commit counts as extracted if all datasets were retrieved
+        final boolean isCompleted = prefetchingIterator == null
+                                    ? isExhausted
+                                    : prefetchingIterator.isExhausted();
+
+        if (isCompleted && harvestCheckpoint != null)
+            harvestCheckpoint.markExtracted();
+
+        this.fingerprints = null;
+
+        this.isExhausted = false;
+
+        final GitHubRateLimiter rateLimiter = csvRequester.getRateLimiter();
+
+        if (rateLimiter.getRequestLimit() >= 0)
+            LOGGER.info(String.format(
+                            SoepLoggingConstants.RATE_LIMIT_STATISTICS,
+                            rateLimiter.getRemainingRequests(),
+                            rateLimiter.getRequestLimit(),
+                            rateLimiter.getThrottledCount()));
+
+        // stop prefetching before the variables are released
+        if (prefetchingIterator != null) {
+            LOGGER.info(String.format(
+                            SoepLoggingConstants.PREFETCH_STATISTICS,
+                            prefetchingIterator.getQueueDepth(),
+                            prefetchingIterator.getCapacity(),
+                            prefetchingIterator.getProducerStallMillis(),
+                            prefetchingIterator.getConsumerStallMillis()));
+            prefetchingIterator.close();
+            prefetchingIterator = null;
+        }
+
+        if (harvestMetrics != null) {
+            harvestMetrics.finish();
+            LOGGER.info(harvestMetrics.getSummary());
+        }
+
+        // release the variables of all datasets
+        this.variableStore = null;
     }
 }
\ No newline at end of file
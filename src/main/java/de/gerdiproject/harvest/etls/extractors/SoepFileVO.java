@@ -15,13 +15,9 @@
  */
 package de.gerdiproject.harvest.etls.extractors;
 
-import java.util.List;
-import java.util.Map;
-
 import de.gerdiproject.harvest.github.json.GitHubContent;
-import de.gerdiproject.harvest.soep.csv.ConceptMetadata;
 import de.gerdiproject.harvest.soep.csv.DatasetMetadata;
-import de.gerdiproject.harvest.soep.csv.VariableMetadata;
+import de.gerdiproject.harvest.soep.store.DatasetVariables;
 import lombok.Value;
 
 /**
@@ -35,9 +31,14 @@ public class SoepFileVO
     private final GitHubContent content;
     private final DatasetMetadata datasetMetadata;
 
-    // VariableMetadata records from the CSV file that describe the dataset
-    private final List<VariableMetadata> variableMetadataRecords;
+    // Variables from the CSV file that describe the dataset, including their concept metadata
+    private final DatasetVariables variables;
+
+    // if true, the dataset was removed since the last harvest, and only the content path is known
+    private final boolean removed;
 
-    // Map variable name (as the key) to its concept metadata (as value)
-    private final Map<String, ConceptMetadata> variableConceptRecordMap;
+    // datasets with too many variables are split into a parent document with
+    // partNumber 0, and partCount part documents that are numbered from 1
+    private final int partNumber;
+    private final int partCount;
 }
\ No newline at end of file
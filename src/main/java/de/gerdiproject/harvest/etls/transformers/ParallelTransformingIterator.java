@@ -0,0 +1,143 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.etls.transformers;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import de.gerdiproject.harvest.soep.constants.SoepLoggingConstants;
+
+/**
+ * This {@linkplain Iterator} transforms the elements of a source iterator
+ * on the threads of an {@linkplain ExecutorService}, while returning the
+ * transformed elements in the order of the source iterator.
+ * At most a fixed number of elements are transformed ahead of the element
+ * that is returned next, which limits the memory that is occupied by
+ * transformed elements that were not retrieved yet.
+ * Null elements of the source iterator are not transformed, but
+ * returned as null in their place.
+ *
+ * @param <T> the type of the source elements
+ * @param <S> the type of the transformed elements
+ *
+ * @author Robin Weiss
+ */
+public class ParallelTransformingIterator<T, S> implements Iterator<S>
+{
+    private final Iterator<T> source;
+    private final Function<T, S> transformation;
+    private final ExecutorService executor;
+    private final int windowSize;
+    private final Queue<Future<S>> pendingResults;
+
+
+    /**
+     * Constructor that requires the elements to be transformed and the
+     * means to transform them.
+     *
+     * @param source an iterator of elements to be transformed
+     * @param transformation a thread-safe function that transforms a single element
+     * @param executor the executor that runs the transformations
+     * @param windowSize the max number of elements that are transformed in advance
+     */
+    public ParallelTransformingIterator(final Iterator<T> source, final Function<T, S> transformation, final ExecutorService executor, final int windowSize)
+    {
+        this.source = source;
+        this.transformation = transformation;
+        this.executor = executor;
+        this.windowSize = Math.max(windowSize, 1);
+        this.pendingResults = new ArrayDeque<>(this.windowSize);
+    }
+
+
+    @Override
+    public boolean hasNext()
+    {
+        return !pendingResults.isEmpty() || source.hasNext();
+    }
+
+
+    @Override
+    public S next()
+    {
+        fillWindow();
+
+        final Future<S> result = pendingResults.poll();
+
+        if (result == null)
+            throw new NoSuchElementException();
+
+        try {
+            return result.get();
+
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelPendingResults();
+            throw new TransformerException(SoepLoggingConstants.ERROR_TRANSFORM_INTERRUPTED, e);
+
+        } catch (final ExecutionException e) {
+            cancelPendingResults();
+            final Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+
+            if (cause instanceof Error)
+                throw (Error) cause;
+
+            throw new TransformerException(SoepLoggingConstants.ERROR_PARALLEL_TRANSFORM, cause);
+        }
+    }
+
+
+    /**
+     * Submits source elements to the executor until the window is full
+     * or the source iterator is exhausted. Null elements are passed on
+     * as null results, like the sequential transformation does.
+     */
+    private void fillWindow()
+    {
+        while (pendingResults.size() < windowSize && source.hasNext()) {
+            final T element = source.next();
+
+            if (element == null)
+                pendingResults.add(CompletableFuture.completedFuture(null));
+            else
+                pendingResults.add(executor.submit(() -> transformation.apply(element)));
+        }
+    }
+
+
+    /**
+     * Cancels all transformations that are still pending,
+     * after one of them failed.
+     */
+    private void cancelPendingResults()
+    {
+        for (final Future<S> pending : pendingResults)
+            pending.cancel(true);
+
+        pendingResults.clear();
+    }
+}
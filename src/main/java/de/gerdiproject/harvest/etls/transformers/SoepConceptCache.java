@@ -0,0 +1,130 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.etls.transformers;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.gerdiproject.harvest.soep.constants.SoepConstants;
+import de.gerdiproject.harvest.soep.csv.ConceptMetadata;
+import de.gerdiproject.json.datacite.extension.soep.SoepConcept;
+
+/**
+ * This class caches the {@linkplain SoepConcept}s of each SOEP concept,
+ * so that all variables that refer to the same concept share a single,
+ * unmodifiable set of concepts. It can be accessed by multiple threads.
+ *
+ * @author Robin Weiss
+ */
+public class SoepConceptCache
+{
+    private final Map<String, Set<SoepConcept>> conceptSets = new ConcurrentHashMap<>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+
+    /**
+     * Retrieves the DE and EN {@linkplain SoepConcept}s of a concept,
+     * creating them only if the concept was not requested before.
+     *
+     * @param conceptMetadata the concept of a variable, or null
+     *
+     * @return an unmodifiable set of concepts, or null if the concept is null
+     */
+    public Set<SoepConcept> getConcepts(final ConceptMetadata conceptMetadata)
+    {
+        if (conceptMetadata == null)
+            return null;
+
+        Set<SoepConcept> conceptSet = conceptSets.get(conceptMetadata.getConceptName());
+
+        if (conceptSet != null)
+            hitCount.incrementAndGet();
+        else {
+            conceptSet = conceptSets.computeIfAbsent(
+                             conceptMetadata.getConceptName(),
+                             (final String name) -> createConcepts(conceptMetadata));
+            missCount.incrementAndGet();
+        }
+
+        return conceptSet;
+    }
+
+
+    /**
+     * Returns the number of concept requests that were served from the cache.
+     *
+     * @return the number of cache hits
+     */
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+
+    /**
+     * Returns the number of concept requests that were not served from the cache.
+     *
+     * @return the number of cache misses
+     */
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+
+    /**
+     * Removes all cached concepts and resets the hit and miss counts.
+     */
+    public void clear()
+    {
+        conceptSets.clear();
+        hitCount.set(0);
+        missCount.set(0);
+    }
+
+
+    /**
+     * Creates the concepts of a variable in DE and EN versions.
+     *
+     * @param conceptMetadata the concept of a variable
+     *
+     * @return an unmodifiable set of concepts
+     */
+    private static Set<SoepConcept> createConcepts(final ConceptMetadata conceptMetadata)
+    {
+        /* We decided to store a concept both in DE and EN labels, effectively creating two SoepConcepts per SOEP
+            concept entry. */
+        final Set<SoepConcept> conceptSet = new HashSet<>();
+
+        conceptSet.add(new SoepConcept(
+                           conceptMetadata.getConceptName(),
+                           conceptMetadata.getLabelDE(),
+                           SoepConstants.CONCEPT_LABEL_DE));
+
+        conceptSet.add(new SoepConcept(
+                           conceptMetadata.getConceptName(),
+                           conceptMetadata.getLabel(),
+                           SoepConstants.CONCEPT_LABEL_EN));
+
+        return Collections.unmodifiableSet(conceptSet);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.etls.transformers;
+
+import java.util.Collections;
+import java.util.List;
+
+import de.gerdiproject.harvest.soep.constants.SoepDataCiteConstants;
+import de.gerdiproject.json.datacite.Contributor;
+import de.gerdiproject.json.datacite.Creator;
+import de.gerdiproject.json.datacite.DataCiteJson;
+import de.gerdiproject.json.datacite.Description;
+import de.gerdiproject.json.datacite.Identifier;
+import de.gerdiproject.json.datacite.Rights;
+import de.gerdiproject.json.datacite.Subject;
+import de.gerdiproject.json.datacite.enums.DescriptionType;
+import de.gerdiproject.json.datacite.enums.IdentifierType;
+import de.gerdiproject.json.datacite.extension.generic.AbstractResearch;
+
+/**
+ * This class contains the fields that are equal in all SOEP documents.
+ * They are derived once from the {@linkplain SoepDataCiteConstants}, and
+ * shared by all documents that are created from the template, so that only
+ * the dataset-specific fields need to be created for each document.
+ * <br>
+ * The shared objects must not be modified by the documents.
+ *
+ * @author Robin Weiss
+ */
+public class SoepDocumentTemplate
+{
+    private final List<String> formats = SoepDataCiteConstants.FORMATS;
+    private final Identifier identifier = new Identifier(SoepDataCiteConstants.IDENTIFIER, IdentifierType.DOI);
+    private final List<Creator> creators = Collections.unmodifiableList(SoepDataCiteConstants.CREATORS);
+    private final List<Subject> subjects = Collections.unmodifiableList(SoepDataCiteConstants.SUBJECTS);
+    private final List<Contributor> contributors = Collections.singletonList(SoepDataCiteConstants.COLLECTOR_CONTRIBUTOR);
+    private final List<Rights> rights = Collections.singletonList(new Rights(SoepDataCiteConstants.RIGHTS_VALUE));
+    private final List<AbstractResearch> disciplines = SoepDataCiteConstants.DISCIPLINES;
+
+    private final Description defaultDescription = new Description(
+        SoepDataCiteConstants.DESCRIPTION_VALUE,
+        DescriptionType.Abstract,
+        SoepDataCiteConstants.DESCRIPTION_LANGUAGE);
+
+
+    /**
+     * Creates a document that contains all fields of the template.
+     *
+     * @param sourceId the source ID of the document
+     *
+     * @return a new document that shares the constant fields of the template
+     */
+    public DataCiteJson createDocument(final String sourceId)
+    {
+        final DataCiteJson document = new DataCiteJson(sourceId);
+
+        document.addFormats(formats);
+
+        // (ID  1) Identifier: This is the DOI identifier for v33 of the dataset
+        document.setIdentifier(identifier);
+
+        // (ID  2) Creators
+        document.addCreators(creators);
+
+        // (ID  4) Publisher
+        document.setPublisher(SoepDataCiteConstants.PROVIDER);
+
+        // (ID  5) PublicationYear: 2017
+        document.setPublicationYear(SoepDataCiteConstants.PUBLICATION_YEAR);
+
+        // (ID  6) Subjects
+        document.addSubjects(subjects);
+
+        // (ID  7) Contributor
+        document.addContributors(contributors);
+
+        // (ID 10) ResourceType
+        document.setResourceType(SoepDataCiteConstants.RESOURCE_TYPE);
+
+        // (ID 15) Dataset version
+        document.setVersion(SoepDataCiteConstants.VERSION);
+
+        // (ID 16) Rights
+        document.addRights(rights);
+
+        // (E 2) RepositoryIdentifier
+        document.setRepositoryIdentifier(SoepDataCiteConstants.REPOSITORY_ID);
+
+        // (E 4) ResearchDiscipline
+        document.addResearchDisciplines(disciplines);
+
+        return document;
+    }
+
+
+    /**
+     * Returns the abstract that precedes the dataset-specific
+     * descriptions of all documents.
+     *
+     * @return the default description of all documents
+     */
+    public Description getDefaultDescription()
+    {
+        return defaultDescription;
+    }
+}
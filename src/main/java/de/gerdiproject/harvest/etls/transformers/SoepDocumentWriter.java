@@ -0,0 +1,280 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.etls.transformers;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+
+import de.gerdiproject.harvest.soep.store.DatasetVariables;
+import de.gerdiproject.json.datacite.DataCiteJson;
+import de.gerdiproject.json.datacite.extension.soep.SoepVariable;
+
+/**
+ * This class writes SOEP documents incrementally to a {@linkplain JsonWriter}.
+ * All fields except for the variables are serialized from a document that
+ * has an empty extension. The variables are then created one after another
+ * from the variables of the dataset, and are written as soon as they are
+ * created, so that they never need to be held in memory at the same time.
+ * <br>
+ * The output is the same as the serialization of a document that holds a
+ * {@linkplain de.gerdiproject.json.datacite.extension.soep.SoepDataCiteExtension}
+ * with all variables. Since the extension collects its variables in a hash set,
+ * the variables are written in the iteration order of that set, which only
+ * depends on their hash codes and the order in which they were added.
+ * <br>
+ * The harvest does not use this writer, because the loaders of the harvester
+ * library serialize the documents that are returned by the transformer.
+ * It is only used via {@linkplain SoepTransformer#writeElement}.
+ *
+ * @author Robin Weiss
+ */
+public class SoepDocumentWriter
+{
+    private static final String EXTENSIONS_KEY = "extensions";
+    private static final String SOEP_EXTENSION_KEY = "soep";
+
+    // parameters of java.util.HashMap
+    private static final int INITIAL_HASH_CAPACITY = 16;
+    private static final int LOAD_FACTOR_NUMERATOR = 3;
+    private static final int LOAD_FACTOR_DENOMINATOR = 4;
+
+    private static final long INDEX_MASK = 0xFFFFFFFFL;
+
+    private final Gson gson;
+    private final SoepConceptCache conceptCache;
+
+
+    /**
+     * Constructor that requires the serialization of documents.
+     *
+     * @param gson the Gson instance that serializes documents
+     * @param conceptCache the cache of concepts that are shared by all variables
+     */
+    public SoepDocumentWriter(final Gson gson, final SoepConceptCache conceptCache)
+    {
+        this.gson = gson;
+        this.conceptCache = conceptCache;
+    }
+
+
+    /**
+     * Writes a SOEP document. The fields are written in the order in which they
+     * are serialized by Gson, and the variables take the place of the variables
+     * of the empty extension.
+     *
+     * @param writer the writer to which the document is written
+     * @param document a document that contains all fields and an empty SOEP extension
+     * @param variables the variables of the dataset of the document
+     *
+     * @throws IOException if the document could not be written
+     */
+    public void write(final JsonWriter writer, final DataCiteJson document, final DatasetVariables variables) throws IOException
+    {
+        final JsonObject documentJson = gson.toJsonTree(document, DataCiteJson.class).getAsJsonObject();
+
+        writer.beginObject();
+
+        for (final Map.Entry<String, JsonElement> field : documentJson.entrySet()) {
+            writer.name(field.getKey());
+
+            if (EXTENSIONS_KEY.equals(field.getKey()) && field.getValue().isJsonObject())
+                writeExtensions(writer, field.getValue().getAsJsonObject(), variables);
+            else
+                gson.toJson(field.getValue(), writer);
+        }
+
+        // an empty extension may be left out entirely
+        if (!documentJson.has(EXTENSIONS_KEY)) {
+            writer.name(EXTENSIONS_KEY);
+            writeExtensions(writer, new JsonObject(), variables);
+        }
+
+        writer.endObject();
+    }
+
+
+    /**
+     * Writes the extensions of a SOEP document, including all variables.
+     *
+     * @param writer the writer to which the document is written
+     * @param extensionsJson the serialized extensions of the document without variables
+     * @param variables the variables of the dataset of the document
+     *
+     * @throws IOException if the extensions could not be written
+     */
+    private void writeExtensions(final JsonWriter writer, final JsonObject extensionsJson, final DatasetVariables variables) throws IOException
+    {
+        writer.beginObject();
+
+        for (final Map.Entry<String, JsonElement> extension : extensionsJson.entrySet()) {
+            writer.name(extension.getKey());
+
+            if (SOEP_EXTENSION_KEY.equals(extension.getKey()))
+                writeVariables(writer, variables);
+            else
+                gson.toJson(extension.getValue(), writer);
+        }
+
+        if (!extensionsJson.has(SOEP_EXTENSION_KEY)) {
+            writer.name(SOEP_EXTENSION_KEY);
+            writeVariables(writer, variables);
+        }
+
+        writer.endObject();
+    }
+
+
+    /**
+     * Writes the variables of a SOEP document one after another.
+     *
+     * @param writer the writer to which the document is written
+     * @param variables the variables of the dataset of the document
+     *
+     * @throws IOException if the variables could not be written
+     */
+    private void writeVariables(final JsonWriter writer, final DatasetVariables variables) throws IOException
+    {
+        writer.beginArray();
+
+        final int[] order = getHashSetOrder(
+                                getVariableHashCodes(variables),
+                                (final Integer first, final Integer second) ->
+                                createVariable(variables, first).equals(createVariable(variables, second)));
+
+        for (final int index : order)
+            gson.toJson(createVariable(variables, index), SoepVariable.class, writer);
+
+        writer.endArray();
+    }
+
+
+    /**
+     * Creates a variable of a SOEP document.
+     *
+     * @param variables the variables of a dataset
+     * @param index the index of the variable within the dataset
+     *
+     * @return the variable of the SOEP document
+     */
+    private SoepVariable createVariable(final DatasetVariables variables, final int index)
+    {
+        return new SoepVariable(
+                   variables.getVariableName(index),
+                   variables.getSource(index),
+                   conceptCache.getConcepts(variables.getConcept(index)));
+    }
+
+
+    /**
+     * Calculates the hash codes of all variables of a SOEP document.
+     *
+     * @param variables the variables of a dataset
+     *
+     * @return the hash codes of the variables of the SOEP document
+     */
+    private int[] getVariableHashCodes(final DatasetVariables variables)
+    {
+        final int[] hashCodes = new int[variables.size()];
+
+        for (int i = 0; i < hashCodes.length; i++)
+            hashCodes[i] = createVariable(variables, i).hashCode();
+
+        return hashCodes;
+    }
+
+
+    /**
+     * Determines the iteration order of a {@linkplain java.util.HashSet} that is
+     * created empty, and to which elements are added one after another.
+     * Elements that are equal to a previously added element are left out.
+     * <br>
+     * A hash set iterates its buckets in ascending order, and the elements of
+     * each bucket in the order in which they were added. Bins that are
+     * converted to trees are not considered, as they require at least eight
+     * colliding elements.
+     *
+     * @param hashCodes the hash codes of the elements, in the order in which they are added
+     * @param isEqual a function that checks if the elements with two specified indices are equal
+     *
+     * @return the indices of all distinct elements in iteration order
+     */
+    static int[] getHashSetOrder(final int[] hashCodes, final BiPredicate<Integer, Integer> isEqual)
+    {
+        // sort by hash code, keeping the insertion order of equal hash codes
+        final long[] sortedByHash = new long[hashCodes.length];
+
+        for (int i = 0; i < hashCodes.length; i++)
+            sortedByHash[i] = ((long) hashCodes[i] << Integer.SIZE) | i;
+
+        Arrays.sort(sortedByHash);
+
+        // leave out elements that equal a previous element with the same hash code
+        final boolean[] isDuplicate = new boolean[hashCodes.length];
+        int distinctCount = 0;
+        int runStart = 0;
+
+        for (int i = 0; i < sortedByHash.length; i++) {
+            if (i > 0 && (int)(sortedByHash[i] >> Integer.SIZE) != (int)(sortedByHash[i - 1] >> Integer.SIZE))
+                runStart = i;
+
+            final int index = (int)(sortedByHash[i] & INDEX_MASK);
+
+            for (int j = runStart; j < i && !isDuplicate[index]; j++) {
+                final int previousIndex = (int)(sortedByHash[j] & INDEX_MASK);
+
+                if (!isDuplicate[previousIndex] && isEqual.test(previousIndex, index))
+                    isDuplicate[index] = true;
+            }
+
+            if (!isDuplicate[index])
+                distinctCount++;
+        }
+
+        // the table grows whenever the number of elements exceeds the load factor
+        int capacity = INITIAL_HASH_CAPACITY;
+
+        while (distinctCount > capacity / LOAD_FACTOR_DENOMINATOR * LOAD_FACTOR_NUMERATOR)
+            capacity <<= 1;
+
+        // sort by bucket, keeping the insertion order within each bucket
+        final long[] sortedByBucket = new long[distinctCount];
+        int distinctIndex = 0;
+
+        for (int i = 0; i < hashCodes.length; i++) {
+            if (!isDuplicate[i]) {
+                final int spreadHashCode = hashCodes[i] ^ (hashCodes[i] >>> (Integer.SIZE / 2));
+                sortedByBucket[distinctIndex++] = ((long)(spreadHashCode & (capacity - 1)) << Integer.SIZE) | i;
+            }
+        }
+
+        Arrays.sort(sortedByBucket);
+
+        final int[] order = new int[distinctCount];
+
+        for (int i = 0; i < distinctCount; i++)
+            order[i] = (int)(sortedByBucket[i] & INDEX_MASK);
+
+        return order;
+    }
+}
@@ -15,32 +15,48 @@
  */
 package de.gerdiproject.harvest.etls.transformers;
 
-import java.util.Arrays;
+import java.io.IOException;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 
 import de.gerdiproject.harvest.etls.AbstractETL;
+import de.gerdiproject.harvest.etls.SoepETL;
 import de.gerdiproject.harvest.etls.extractors.SoepFileVO;
 import de.gerdiproject.harvest.github.json.GitHubContent;
 import de.gerdiproject.harvest.soep.constants.SoepConstants;
 import de.gerdiproject.harvest.soep.constants.SoepDataCiteConstants;
-import de.gerdiproject.harvest.soep.csv.ConceptMetadata;
+import de.gerdiproject.harvest.soep.constants.SoepLoggingConstants;
 import de.gerdiproject.harvest.soep.csv.DatasetMetadata;
-import de.gerdiproject.harvest.soep.csv.VariableMetadata;
+import de.gerdiproject.harvest.soep.metrics.FlightRecorderEvent;
+import de.gerdiproject.harvest.soep.metrics.FlightRecorderEventType;
+import de.gerdiproject.harvest.soep.metrics.HarvestMetrics;
+import de.gerdiproject.harvest.soep.metrics.HarvestPhase;
+import de.gerdiproject.harvest.soep.metrics.LoadTimingIterator;
+import de.gerdiproject.harvest.soep.store.DatasetVariables;
+import de.gerdiproject.json.GsonUtils;
 import de.gerdiproject.json.datacite.DataCiteJson;
 import de.gerdiproject.json.datacite.Date;
 import de.gerdiproject.json.datacite.Description;
-import de.gerdiproject.json.datacite.Identifier;
-import de.gerdiproject.json.datacite.Rights;
+import de.gerdiproject.json.datacite.RelatedIdentifier;
 import de.gerdiproject.json.datacite.Title;
 import de.gerdiproject.json.datacite.abstr.AbstractDate;
 import de.gerdiproject.json.datacite.enums.DateType;
 import de.gerdiproject.json.datacite.enums.DescriptionType;
-import de.gerdiproject.json.datacite.enums.IdentifierType;
+import de.gerdiproject.json.datacite.enums.RelatedIdentifierType;
+import de.gerdiproject.json.datacite.enums.RelationType;
 import de.gerdiproject.json.datacite.extension.generic.ResearchData;
 import de.gerdiproject.json.datacite.extension.generic.WebLink;
 import de.gerdiproject.json.datacite.extension.generic.enums.WebLinkType;
@@ -55,62 +71,192 @@ import de.gerdiproject.json.datacite.extension.soep.SoepVariable;
  */
 public class SoepTransformer extends AbstractIteratorTransformer<SoepFileVO, DataCiteJson>
 {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SoepTransformer.class);
+
+    private final SoepConceptCache conceptCache = new SoepConceptCache();
+    private final SoepDocumentTemplate documentTemplate = new SoepDocumentTemplate();
+    private int transformThreadCount;
+    private ExecutorService transformExecutor;
+    private HarvestMetrics harvestMetrics = new HarvestMetrics();
+
+    // only used for measuring the serialized size of recorded documents
+    private final Gson documentGson = GsonUtils.createGerdiDocumentGsonBuilder().create();
+
+
     @Override
     public void init(final AbstractETL<?, ?> etl)
     {
-        // nothing to retrieve from the ETL
+        final SoepETL soepEtl = (SoepETL) etl;
+        this.transformThreadCount = soepEtl.getTransformThreadCount();
+        this.harvestMetrics = soepEtl.getHarvestMetrics();
+    }
+
+
+    @Override
+    public Iterator<DataCiteJson> transform(final Iterator<SoepFileVO> elements) throws TransformerException
+    {
+        // the time between two documents is spent by the loader
+        if (transformThreadCount <= 1)
+            return new LoadTimingIterator<>(super.transform(elements), harvestMetrics);
+
+        // documents are transformed in parallel, but passed on in the order of the extracted datasets
+        this.transformExecutor = Executors.newFixedThreadPool(transformThreadCount);
+
+        return new LoadTimingIterator<>(
+                   new ParallelTransformingIterator<>(
+                       elements,
+                       this::transformElement,
+                       transformExecutor,
+                       transformThreadCount * SoepConstants.TRANSFORM_WINDOW_PER_THREAD),
+                   harvestMetrics);
     }
 
 
     @Override
     protected DataCiteJson transformElement(final SoepFileVO vo) throws TransformerException
     {
-        // Specify source ID for harvested file
-        final DatasetMetadata metadata = vo.getDatasetMetadata();
+        final FlightRecorderEvent transformEvent = FlightRecorderEventType.DOCUMENT_TRANSFORM.begin();
+        final long startNanos = System.nanoTime();
+        final DataCiteJson document;
+
+        try {
+            document = createDocumentWithVariables(vo);
+        } finally {
+            harvestMetrics.record(HarvestPhase.TRANSFORM, startNanos);
+        }
 
-        final String sourceTitle = metadata.getLabel();
-        final GitHubContent content = vo.getContent();
+        // the document is only serialized if the event is recorded, after its duration was measured
+        transformEvent.end();
 
-        // Create the document to contain SOEP metadata for every given file from its dataset
-        final DataCiteJson document = new DataCiteJson(content.getPath());
+        if (transformEvent.shouldCommit())
+            transformEvent.commit(
+                vo.getContent().getPath(),
+                getVariableCount(vo),
+                (long) documentGson.toJson(document, DataCiteJson.class).length());
 
-        document.addFormats(SoepDataCiteConstants.FORMATS);
+        return document;
+    }
 
-        // (ID  1) Identifier: This is the DOI identifier for v33 of the dataset
-        document.setIdentifier(new Identifier(SoepDataCiteConstants.IDENTIFIER, IdentifierType.DOI));
 
-        // (ID  2) Creators
-        document.addCreators(SoepDataCiteConstants.CREATORS);
+    /**
+     * Creates a document with all fields of a SOEP dataset, including its variables.
+     *
+     * @param vo the extracted SOEP dataset
+     *
+     * @return a document with a SOEP extension, or a removal marker
+     */
+    private DataCiteJson createDocumentWithVariables(final SoepFileVO vo)
+    {
+        final DataCiteJson document = createDocument(vo);
 
-        // (ID  3 Title) Individual file descriptions
-        document.addTitles(Arrays.asList(new Title(sourceTitle)));
+        if (vo.isRemoved())
+            return document;
 
-        // (ID  4) Publisher
-        document.setPublisher(SoepDataCiteConstants.PROVIDER);
+        // (E 5) Extensions
+        final SoepDataCiteExtension extension = new SoepDataCiteExtension();
+        extension.addSoepDatasetVariables(getDatasetVariables(vo));
+        document.addExtension(extension);
+
+        return document;
+    }
+
+
+    /**
+     * Transforms a {@linkplain SoepFileVO} and writes the resulting document
+     * incrementally, without holding all of its variables in memory.
+     * The written document equals the document that is returned by
+     * {@linkplain #transformElement(SoepFileVO)}.
+     * <br>
+     * The harvest does not call this method, since the loaders of the
+     * harvester library serialize the documents of {@linkplain #transform(Iterator)}
+     * themselves. It is meant for callers that write documents on their own,
+     * such as the transformer benchmark.
+     *
+     * @param vo the extracted SOEP dataset
+     * @param gson the Gson instance that serializes documents
+     * @param writer the writer to which the document is written
+     *
+     * @throws IOException if the document could not be written
+     */
+    public void writeElement(final SoepFileVO vo, final Gson gson, final JsonWriter writer) throws IOException
+    {
+        final FlightRecorderEvent transformEvent = FlightRecorderEventType.DOCUMENT_TRANSFORM.begin();
+        final long startNanos = System.nanoTime();
+        final DataCiteJson document = createDocument(vo);
+
+        try {
+            if (vo.isRemoved())
+                gson.toJson(document, DataCiteJson.class, writer);
+            else {
+                // the empty extension determines where the variables are written
+                document.addExtension(new SoepDataCiteExtension());
+                new SoepDocumentWriter(gson, conceptCache).write(writer, document, vo.getVariables());
+            }
+        } finally {
+            harvestMetrics.record(HarvestPhase.TRANSFORM, startNanos);
+        }
+
+        // the size of streamed documents is unknown
+        transformEvent.commit(vo.getContent().getPath(), getVariableCount(vo), -1L);
+    }
 
-        // (ID  5) PublicationYear: 2017
-        document.setPublicationYear(SoepDataCiteConstants.PUBLICATION_YEAR);
 
-        // (ID  6) Subjects
-        document.addSubjects(SoepDataCiteConstants.SUBJECTS);
+    /**
+     * Returns the number of variables of an extracted SOEP dataset.
+     *
+     * @param vo the extracted SOEP dataset
+     *
+     * @return the number of variables, or 0 if the dataset was removed
+     */
+    private static int getVariableCount(final SoepFileVO vo)
+    {
+        return vo.isRemoved() ? 0 : vo.getVariables().size();
+    }
 
-        // (ID  7) Contributor
-        document.addContributors(Arrays.asList(SoepDataCiteConstants.COLLECTOR_CONTRIBUTOR));
+
+    /**
+     * Creates a document with all fields of a SOEP dataset except for its variables.
+     *
+     * @param vo the extracted SOEP dataset
+     *
+     * @return a document without extensions
+     */
+    private DataCiteJson createDocument(final SoepFileVO vo)
+    {
+        // removed datasets and parts are marked by a document that only contains the source ID
+        if (vo.isRemoved())
+            return new DataCiteJson(getSourceId(vo.getContent(), vo.getPartNumber()));
+
+        // Specify source ID for harvested file
+        final DatasetMetadata metadata = vo.getDatasetMetadata();
+        final GitHubContent content = vo.getContent();
+
+        // part documents of split datasets are distinguished by their part number
+        final String sourceTitle = vo.getPartNumber() == 0
+                                   ? metadata.getLabel()
+                                   : String.format(
+                                       SoepDataCiteConstants.PART_TITLE,
+                                       metadata.getLabel(),
+                                       vo.getPartNumber(),
+                                       vo.getPartCount());
+        final String sourceId = getSourceId(content, vo.getPartNumber());
+
+        // Create the document to contain SOEP metadata for every given file from its dataset,
+        // sharing the fields that are equal in all documents
+        final DataCiteJson document = documentTemplate.createDocument(sourceId);
+
+        // (ID  3 Title) Individual file descriptions
+        document.addTitles(Collections.singletonList(new Title(sourceTitle)));
 
         // (ID  8) Date: dateType="Collected" with individual data collection dates.
         document.addDates(getDates(metadata));
 
-        // (ID 10) ResourceType
-        document.setResourceType(SoepDataCiteConstants.RESOURCE_TYPE);
+        // (ID 12) RelatedIdentifiers: links between split datasets and their parts
+        if (vo.getPartCount() > 0)
+            document.addRelatedIdentifiers(getPartRelations(vo));
 
         // (ID 13) Size
-        document.addSizes(Arrays.asList(String.format(SoepDataCiteConstants.SIZE_BYTES, content.getSize())));
-
-        // (ID 15) Dataset version
-        document.setVersion(SoepDataCiteConstants.VERSION);
-
-        // (ID 16) Rights
-        document.addRights(Arrays.asList(new Rights(SoepDataCiteConstants.RIGHTS_VALUE)));
+        document.addSizes(Collections.singletonList(String.format(SoepDataCiteConstants.SIZE_BYTES, content.getSize())));
 
         // (ID 17) Description, type "Abstract"
         document.addDescriptions(getDescriptions(metadata));
@@ -120,21 +266,52 @@ public class SoepTransformer extends AbstractIteratorTransformer<SoepFileVO, Dat
         // (E 1) WebLinks
         document.addWebLinks(getWebLinks(content));
 
-        // (E 2) RepositoryIdentifier
-        document.setRepositoryIdentifier(SoepDataCiteConstants.REPOSITORY_ID);
-
         // (E 3) ResearchData
         document.addResearchData(getResearchData(content));
 
-        // (E 4) ResearchDiscipline
-        document.addResearchDisciplines(SoepDataCiteConstants.DISCIPLINES);
+        return document;
+    }
 
-        // (E 5) Extensions
-        final SoepDataCiteExtension extension = new SoepDataCiteExtension();
-        extension.addSoepDatasetVariables(getDatasetVariables(vo));
-        document.addExtension(extension);
 
-        return document;
+    /**
+     * Retrieves the source ID of a dataset document or one of its part documents.
+     *
+     * @param content the GitHub content of the dataset file
+     * @param partNumber the number of the part document, or 0 for the dataset document
+     *
+     * @return the repository path of the dataset file, followed by the part number if there is one
+     */
+    private static String getSourceId(final GitHubContent content, final int partNumber)
+    {
+        return partNumber == 0
+               ? content.getPath()
+               : content.getPath() + String.format(SoepConstants.PART_ID_SUFFIX, partNumber);
+    }
+
+
+    /**
+     * Retrieves the links between a split dataset and its part documents,
+     * which refer to the source IDs of the linked documents.
+     *
+     * @param vo the parent or a part of a split dataset
+     *
+     * @return the parts of a parent document, or the parent of a part document
+     */
+    private List<RelatedIdentifier> getPartRelations(final SoepFileVO vo)
+    {
+        final GitHubContent content = vo.getContent();
+        final List<RelatedIdentifier> relations = new LinkedList<>();
+
+        if (vo.getPartNumber() == 0) {
+            for (int partNumber = 1; partNumber <= vo.getPartCount(); partNumber++)
+                relations.add(new RelatedIdentifier(
+                                  getSourceId(content, partNumber),
+                                  RelatedIdentifierType.URL,
+                                  RelationType.HasPart));
+        } else
+            relations.add(new RelatedIdentifier(getSourceId(content, 0), RelatedIdentifierType.URL, RelationType.IsPartOf));
+
+        return relations;
     }
 
 
@@ -177,11 +354,7 @@ public class SoepTransformer extends AbstractIteratorTransformer<SoepFileVO, Dat
         final List<Description> descriptions = new LinkedList<>();
 
         // add default description
-        descriptions.add(
-            new Description(
-                SoepDataCiteConstants.DESCRIPTION_VALUE,
-                DescriptionType.Abstract,
-                SoepDataCiteConstants.DESCRIPTION_LANGUAGE));
+        descriptions.add(documentTemplate.getDefaultDescription());
 
         // add optional description from metadata
         final String metadataDesc = metadata.getDescription();
@@ -242,34 +415,6 @@ public class SoepTransformer extends AbstractIteratorTransformer<SoepFileVO, Dat
     }
 
 
-    /**
-     * Retrieve the concept associated to a variable in DE and EN versions.
-     *
-     * @param conceptMetadata The list of VariableMetadata records that describe the dataset.
-     * @return Concept The target concept associated to the variable
-     * @author Robin Weiss, Fidan Limani
-     */
-    private Set<SoepConcept> getSoepConcepts(final ConceptMetadata conceptMetadata)
-    {
-        if (conceptMetadata == null)
-            return null;
-
-        final Set<SoepConcept> conceptSet = new HashSet<>();
-
-        conceptSet.add(new SoepConcept(
-                           conceptMetadata.getConceptName(),
-                           conceptMetadata.getLabelDE(),
-                           SoepConstants.CONCEPT_LABEL_DE));
-
-        conceptSet.add(new SoepConcept(
-                           conceptMetadata.getConceptName(),
-                           conceptMetadata.getLabel(),
-                           SoepConstants.CONCEPT_LABEL_EN));
-
-        return conceptSet;
-    }
-
-
     /**
      * Retrieve variables associated to a dataset.
      * @param soepFileVO The name of the dataset for which variables are used in SOEP collection
@@ -277,20 +422,20 @@ public class SoepTransformer extends AbstractIteratorTransformer<SoepFileVO, Dat
      */
     private List<SoepVariable> getDatasetVariables(final SoepFileVO soepFileVO)
     {
-        /* We decided to store a concept both in DE and EN labels, effectively creating two SoepConcepts per SOEP
-            concept entry. */
         Set<SoepConcept> conceptSet;
         final List<SoepVariable> soepVariableList = new LinkedList<>();
 
-        /* For every VariableMetadata record for the dataset, convert it to SOEP variable and assign it
+        final DatasetVariables variables = soepFileVO.getVariables();
+
+        /* For every variable of the dataset, convert it to SOEP variable and assign it
         (a set of) SOEP concepts */
-        for (final VariableMetadata vm : soepFileVO.getVariableMetadataRecords()) {
-            /* The concept contains both DE and EN concept labels, as present in the CSV. We need to "reformat" it
-               and store it */
-            conceptSet = getSoepConcepts(soepFileVO.getVariableConceptRecordMap().get(vm.getConceptName()));
+        for (int i = 0; i < variables.size(); i++) {
+            /* The concept contains both DE and EN concept labels, as present in the CSV. Variables that
+               refer to the same concept share the same reformatted concepts */
+            conceptSet = conceptCache.getConcepts(variables.getConcept(i));
 
             /* Create and add a SOEP variable instance to the list */
-            soepVariableList.add(new SoepVariable(vm.getVariableName(), vm.getSource(), conceptSet));
+            soepVariableList.add(new SoepVariable(variables.getVariableName(i), variables.getSource(i), conceptSet));
         }
 
         return soepVariableList;
@@ -300,6 +445,27 @@ public class SoepTransformer extends AbstractIteratorTransformer<SoepFileVO, Dat
     @Override
     public void clear()
     {
-        // nothing to clean up
+        if (transformExecutor != null) {
+            transformExecutor.shutdownNow();
+            transformExecutor = null;
+        }
+
+        LOGGER.info(String.format(
+                        SoepLoggingConstants.CONCEPT_CACHE_STATISTICS,
+                        conceptCache.getHitCount(),
+                        conceptCache.getMissCount()));
+        conceptCache.clear();
+    }
+
+
+    /**
+     * Returns the cache of {@linkplain SoepConcept}s that are shared
+     * by all transformed variables.
+     *
+     * @return the concept cache of the current harvest
+     */
+    public SoepConceptCache getConceptCache()
+    {
+        return conceptCache;
     }
 }
\ No newline at end of file
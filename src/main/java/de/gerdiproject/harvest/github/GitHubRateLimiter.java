@@ -0,0 +1,336 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.github;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.gerdiproject.harvest.soep.constants.SoepConstants;
+import de.gerdiproject.harvest.soep.constants.SoepLoggingConstants;
+
+/**
+ * This class sends requests to the GitHub API while respecting its rate limits.
+ * The remaining quota is read from the rate limit headers of each response.
+ * If the quota runs low, requests are spread until the quota is reset, and if
+ * it is exhausted, requests wait for the reset. Throttled requests are retried
+ * after the time that GitHub asks for, or after a jittered exponential backoff.
+ * Multiple threads can send requests concurrently.
+ *
+ * @author Robin Weiss
+ */
+public class GitHubRateLimiter
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(GitHubRateLimiter.class);
+
+    private static final String LIMIT_HEADER = "X-RateLimit-Limit";
+    private static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+    private static final String RESET_HEADER = "X-RateLimit-Reset";
+    private static final String RETRY_AFTER_HEADER = "Retry-After";
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private final int maxRetries;
+    private final long baseBackoffMillis;
+    private final long maxWaitMillis;
+    private final Random random = new Random();
+    private final AtomicInteger throttledCount = new AtomicInteger();
+
+    private int requestLimit = -1;
+    private int remainingRequests = -1;
+    private long resetTimeMillis;
+
+
+    /**
+     * Constructor that uses the default retry and backoff settings.
+     */
+    public GitHubRateLimiter()
+    {
+        this(SoepConstants.RATE_LIMIT_MAX_RETRIES,
+             SoepConstants.RATE_LIMIT_BASE_BACKOFF_MS,
+             SoepConstants.RATE_LIMIT_MAX_WAIT_MS);
+    }
+
+
+    /**
+     * Constructor that customizes the retry and backoff settings.
+     *
+     * @param maxRetries the max number of times a throttled request is retried
+     * @param baseBackoffMillis the backoff before the first retry, if GitHub does not specify one
+     * @param maxWaitMillis the max time to wait before a single request
+     */
+    public GitHubRateLimiter(final int maxRetries, final long baseBackoffMillis, final long maxWaitMillis)
+    {
+        this.maxRetries = maxRetries;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+
+    /**
+     * Checks if requests to a specified URL are subject to the GitHub API rate limits.
+     *
+     * @param url the URL of a request
+     *
+     * @return true if the URL points to the GitHub API
+     */
+    public boolean isRateLimited(final String url)
+    {
+        return url.startsWith(SoepConstants.GITHUB_API_URL);
+    }
+
+
+    /**
+     * Sends a request as soon as the request budget allows it, and retries
+     * it if it was throttled.
+     *
+     * @param sender a function that sends the request
+     *
+     * @throws IOException if the request could not be sent, or if the thread
+     * was interrupted while waiting
+     *
+     * @return the connection of the last attempt, which may still be throttled
+     * if all retries were throttled
+     */
+    public HttpURLConnection sendRequest(final RequestSender sender) throws IOException
+    {
+        for (int attempt = 0;; attempt++) {
+            sleep(getBudgetDelayMillis());
+
+            final HttpURLConnection connection = sender.send();
+            updateQuota(connection);
+
+            if (!isThrottled(connection) || attempt >= maxRetries)
+                return connection;
+
+            throttledCount.incrementAndGet();
+            final long retryDelay = getRetryDelayMillis(connection, attempt);
+            LOGGER.warn(String.format(SoepLoggingConstants.RATE_LIMITED_WARNING, connection.getURL(), retryDelay));
+
+            connection.disconnect();
+            sleep(retryDelay);
+        }
+    }
+
+
+    /**
+     * Returns the number of requests that GitHub allows per rate limit window.
+     *
+     * @return the request limit, or -1 if no response was received yet
+     */
+    public synchronized int getRequestLimit()
+    {
+        return requestLimit;
+    }
+
+
+    /**
+     * Returns the number of requests that remain until the quota is reset.
+     *
+     * @return the remaining quota, or -1 if no response was received yet
+     */
+    public synchronized int getRemainingRequests()
+    {
+        return remainingRequests;
+    }
+
+
+    /**
+     * Returns the time at which the quota is reset.
+     *
+     * @return the reset time in milliseconds since the epoch, or 0 if unknown
+     */
+    public synchronized long getResetTimeMillis()
+    {
+        return resetTimeMillis;
+    }
+
+
+    /**
+     * Returns the number of requests that were throttled by GitHub.
+     *
+     * @return the number of throttled requests
+     */
+    public int getThrottledCount()
+    {
+        return throttledCount.get();
+    }
+
+
+    /**
+     * Calculates how long the next request must wait to stay within the quota.
+     * If the quota is exhausted, the request waits until the quota is reset.
+     * If the quota runs low, the remaining requests are spread evenly until then.
+     *
+     * @return the delay of the next request in milliseconds
+     */
+    private synchronized long getBudgetDelayMillis()
+    {
+        final long timeUntilReset = resetTimeMillis - System.currentTimeMillis();
+
+        if (remainingRequests < 0 || remainingRequests >= SoepConstants.RATE_LIMIT_RESERVE || timeUntilReset <= 0)
+            return 0;
+
+        final long delay = remainingRequests == 0
+                           ? timeUntilReset
+                           : timeUntilReset / (remainingRequests + 1);
+
+        return Math.min(delay, maxWaitMillis);
+    }
+
+
+    /**
+     * Calculates how long to wait before a throttled request is retried.
+     * The times that GitHub asks for are preferred over an exponential backoff.
+     *
+     * @param connection the connection of the throttled request
+     * @param attempt the number of previous retries
+     *
+     * @return the delay of the retry in milliseconds
+     */
+    private long getRetryDelayMillis(final HttpURLConnection connection, final int attempt)
+    {
+        final long retryAfterSeconds = parseHeader(connection, RETRY_AFTER_HEADER);
+
+        long delay;
+
+        if (retryAfterSeconds >= 0)
+            delay = retryAfterSeconds * 1000;
+
+        else if (parseHeader(connection, REMAINING_HEADER) == 0 && parseHeader(connection, RESET_HEADER) >= 0)
+            delay = parseHeader(connection, RESET_HEADER) * 1000 - System.currentTimeMillis();
+
+        else {
+            // full jitter, so that concurrent requests do not retry at the same time
+            final long maxBackoff = baseBackoffMillis << Math.min(attempt, SoepConstants.RATE_LIMIT_MAX_BACKOFF_SHIFT);
+            delay = (long)(random.nextDouble() * Math.min(maxBackoff, maxWaitMillis));
+        }
+
+        return Math.max(0, Math.min(delay, maxWaitMillis));
+    }
+
+
+    /**
+     * Checks if a request was rejected because of a primary or secondary rate limit.
+     *
+     * @param connection the connection of a request
+     *
+     * @throws IOException if the response code could not be retrieved
+     *
+     * @return true if the request should be retried later
+     */
+    private static boolean isThrottled(final HttpURLConnection connection) throws IOException
+    {
+        final int responseCode = connection.getResponseCode();
+
+        if (responseCode == HTTP_TOO_MANY_REQUESTS)
+            return true;
+
+        // other reasons for "403 Forbidden" must not be retried
+        return responseCode == HttpURLConnection.HTTP_FORBIDDEN
+               && (parseHeader(connection, REMAINING_HEADER) == 0 || parseHeader(connection, RETRY_AFTER_HEADER) >= 0);
+    }
+
+
+    /**
+     * Updates the quota from the rate limit headers of a response.
+     *
+     * @param connection the connection of a request
+     */
+    private synchronized void updateQuota(final HttpURLConnection connection)
+    {
+        final long limit = parseHeader(connection, LIMIT_HEADER);
+        final long remaining = parseHeader(connection, REMAINING_HEADER);
+        final long reset = parseHeader(connection, RESET_HEADER);
+
+        if (limit >= 0)
+            requestLimit = (int) limit;
+
+        if (remaining >= 0)
+            remainingRequests = (int) remaining;
+
+        if (reset >= 0)
+            resetTimeMillis = reset * 1000;
+    }
+
+
+    /**
+     * Parses a numeric response header.
+     *
+     * @param connection the connection of a request
+     * @param header the name of the header
+     *
+     * @return the value of the header, or -1 if it is missing or not a number
+     */
+    private static long parseHeader(final HttpURLConnection connection, final String header)
+    {
+        final String value = connection.getHeaderField(header);
+
+        if (value == null)
+            return -1;
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (final NumberFormatException e) {
+            return -1;
+        }
+    }
+
+
+    /**
+     * Pauses the current thread.
+     *
+     * @param millis the number of milliseconds to wait
+     *
+     * @throws InterruptedIOException if the thread was interrupted while waiting
+     */
+    private static void sleep(final long millis) throws InterruptedIOException
+    {
+        if (millis <= 0)
+            return;
+
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+    }
+
+
+    /**
+     * This function sends a single HTTP request.
+     *
+     * @author Robin Weiss
+     */
+    @FunctionalInterface
+    public interface RequestSender
+    {
+        /**
+         * Sends the request.
+         *
+         * @throws IOException if the request could not be sent
+         *
+         * @return the connection of the request
+         */
+        HttpURLConnection send() throws IOException;
+    }
+}
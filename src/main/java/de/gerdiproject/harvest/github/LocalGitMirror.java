@@ -0,0 +1,212 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.github;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.util.FS;
+
+import de.gerdiproject.harvest.github.json.GitHubTreeEntry;
+import de.gerdiproject.harvest.soep.constants.SoepConstants;
+import de.gerdiproject.harvest.soep.constants.SoepLoggingConstants;
+
+/**
+ * This class reads files of a local clone or bare mirror of a git repository.
+ * All files are read from the commit that HEAD pointed to when the mirror
+ * was opened, so that refreshing the mirror in the meantime does not mix
+ * files of different commits.
+ *
+ * @author Robin Weiss
+ */
+public class LocalGitMirror implements AutoCloseable
+{
+    private final Repository repository;
+    private final RevCommit headCommit;
+
+
+    /**
+     * Constructor that opens a local git repository.
+     *
+     * @param path the folder of a cloned repository, or of a bare mirror
+     *
+     * @throws IOException if the path is no git repository, or if it has no HEAD commit
+     */
+    public LocalGitMirror(final File path) throws IOException
+    {
+        final File gitDir = RepositoryCache.FileKey.resolve(path, FS.DETECTED);
+
+        if (gitDir == null)
+            throw new FileNotFoundException(String.format(SoepLoggingConstants.ERROR_NO_GIT_REPOSITORY, path.getPath()));
+
+        this.repository = new FileRepositoryBuilder().setGitDir(gitDir).setMustExist(true).build();
+
+        try
+            (RevWalk revWalk = new RevWalk(repository)) {
+            final ObjectId headId = repository.resolve(Constants.HEAD);
+
+            if (headId == null)
+                throw new IOException(String.format(SoepLoggingConstants.ERROR_NO_GIT_REPOSITORY, path.getPath()));
+
+            this.headCommit = revWalk.parseCommit(headId);
+
+        } catch (final IOException e) {
+            repository.close();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Retrieves the hash of the latest commit that changed a specified folder.
+     *
+     * @param folderPath the path of the folder within the repository
+     *
+     * @throws IOException if the commit history could not be read
+     *
+     * @return the commit hash, or null if the folder was never changed
+     */
+    public String getLatestCommitHash(final String folderPath) throws IOException
+    {
+        try
+            (Git git = new Git(repository)) {
+            final Iterator<RevCommit> commits =
+                git.log().add(headCommit).addPath(folderPath).setMaxCount(1).call().iterator();
+
+            return commits.hasNext() ? commits.next().getName() : null;
+
+        } catch (final GitAPIException e) {
+            throw new IOException(e);
+        }
+    }
+
+
+    /**
+     * Lists all files of a specified folder, but not those of its sub-folders.
+     *
+     * @param folderPath the path of the folder within the repository
+     *
+     * @throws IOException if the folder does not exist or could not be read
+     *
+     * @return a list of tree entries with paths that are relative to the folder
+     */
+    public List<GitHubTreeEntry> listFiles(final String folderPath) throws IOException
+    {
+        final List<GitHubTreeEntry> entries = new LinkedList<>();
+
+        try
+            (ObjectReader reader = repository.newObjectReader();
+             TreeWalk treeWalk = new TreeWalk(reader)) {
+
+            treeWalk.addTree(findObject(reader, folderPath));
+            treeWalk.setRecursive(false);
+
+            while (treeWalk.next()) {
+                // the contents API does not list files of sub-folders either
+                if (treeWalk.isSubtree())
+                    continue;
+
+                final ObjectId blobId = treeWalk.getObjectId(0);
+
+                final GitHubTreeEntry entry = new GitHubTreeEntry();
+                entry.setPath(treeWalk.getPathString());
+                entry.setMode(treeWalk.getFileMode(0).toString());
+                entry.setType(SoepConstants.TREE_ENTRY_TYPE_BLOB);
+                entry.setSha(blobId.getName());
+                entry.setSize((int) reader.getObjectSize(blobId, Constants.OBJ_BLOB));
+                entries.add(entry);
+            }
+        }
+
+        return entries;
+    }
+
+
+    /**
+     * Opens a file of the repository.
+     *
+     * @param filePath the path of the file within the repository
+     *
+     * @throws IOException if the file does not exist or could not be read
+     *
+     * @return a stream of the file content
+     */
+    public InputStream openFile(final String filePath) throws IOException
+    {
+        try
+            (ObjectReader reader = repository.newObjectReader()) {
+            return repository.open(findObject(reader, filePath), Constants.OBJ_BLOB).openStream();
+        }
+    }
+
+
+    /**
+     * Returns the hash of the commit from which all files are read.
+     *
+     * @return the hash of the HEAD commit
+     */
+    public String getHeadCommitHash()
+    {
+        return headCommit.getName();
+    }
+
+
+    @Override
+    public void close()
+    {
+        repository.close();
+    }
+
+
+    /**
+     * Looks up the object ID of a file or folder of the HEAD commit.
+     *
+     * @param reader the reader of the object store
+     * @param path the path of the file or folder within the repository
+     *
+     * @throws IOException if the path does not exist in the HEAD commit
+     *
+     * @return the ID of the blob or tree at the path
+     */
+    private ObjectId findObject(final ObjectReader reader, final String path) throws IOException
+    {
+        try
+            (TreeWalk pathWalk = TreeWalk.forPath(reader, path, headCommit.getTree())) {
+
+            if (pathWalk == null)
+                throw new FileNotFoundException(String.format(SoepLoggingConstants.ERROR_GIT_PATH_NOT_FOUND, path, headCommit.getName()));
+
+            return pathWalk.getObjectId(0);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.github.json;
+
+import com.google.gson.annotations.SerializedName;
+
+import lombok.Data;
+
+/**
+ * This JSON object is part of a GitHub API response.
+ * It describes how a file was changed by one or more commits.
+ *
+ * @author Robin Weiss
+ */
+@Data
+public class GitHubFile
+{
+    private String sha;
+    private String filename;
+    private String status;
+    private int additions;
+    private int deletions;
+    private int changes;
+
+    // the unified diff of the file, which is omitted if the diff is too large
+    private String patch;
+
+    @SerializedName("previous_filename")
+    private String previousFilename;
+}
@@ -0,0 +1,38 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.github.json;
+
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * This class represents a JSON object of a GitHub Git Trees request.<br>
+ * e.g. https://api.github.com/repos/paneldata/soep-core/git/trees/master
+ *
+ * @author Robin Weiss
+ */
+@Data
+public class GitHubTree
+{
+    private String sha;
+    private String url;
+    private List<GitHubTreeEntry> tree;
+
+    // true if the tree has more entries than GitHub returns in a single response
+    private boolean truncated;
+}
@@ -41,8 +41,12 @@ public class SoepConstants
 
     public static final String SOEP_REMOTE_REPO_URL = "https://github.com/paneldata/soep-core";
 
-    private static final String API_BASE_URL = "https://api.github.com/repos/paneldata/soep-core/";
-    private static final String DATASETS_PATH = "ddionrails/datasets/";
+    public static final String GITHUB_API_URL = "https://api.github.com/";
+    private static final String API_BASE_URL = GITHUB_API_URL + "repos/paneldata/soep-core/";
+    public static final String METADATA_FOLDER = "ddionrails";
+    public static final String METADATA_PATH = METADATA_FOLDER + "/";
+    public static final String DATASETS_FOLDER = METADATA_PATH + "datasets";
+    public static final String DATASETS_PATH = DATASETS_FOLDER + "/";
 
     // GitHub "tree" and "blob" access URL
     public static final String ACCESS_FILE_URL =
@@ -57,17 +61,119 @@ public class SoepConstants
         + "commits?sha=master&path="
         + DATASETS_PATH;
 
+    public static final String METADATA_COMMITS_URL =
+        API_BASE_URL
+        + "commits?sha=master&per_page=1&path="
+        + METADATA_FOLDER;
+
     public static final String DATASETS_CONTENT_URL =
         API_BASE_URL
         + "contents/"
         + DATASETS_PATH;
 
+    public static final String COMPARE_URL = API_BASE_URL + "compare/%s...%s";
+
+    // the top level of the tree of the datasets folder at a specified commit,
+    // which lists the same files as the contents API
+    public static final String DATASETS_TREE_URL =
+        API_BASE_URL
+        + "git/trees/%s:"
+        + DATASETS_FOLDER;
+
+    // URLs of files that are listed via the Git Trees API
+    public static final String FILE_HTML_URL = SOEP_REMOTE_REPO_URL + "/blob/master/%s";
+    public static final String FILE_DOWNLOAD_URL = "https://raw.githubusercontent.com/paneldata/soep-core/master/%s";
+
+    // the content of a file at a specified commit, which is not affected by later pushes
+    public static final String FILE_AT_COMMIT_DOWNLOAD_URL = "https://raw.githubusercontent.com/paneldata/soep-core/%s/%s";
+    public static final String TREE_ENTRY_TYPE_BLOB = "blob";
+    public static final String CONTENT_TYPE_FILE = "file";
+
     public static final String DATASETS_CSV_DOWNLOAD_URL = "https://raw.githubusercontent.com/paneldata/soep-core/master/ddionrails/datasets.csv";
     public static final String VARIABLES_CSV_DOWNLOAD_URL = "https://raw.githubusercontent.com/paneldata/soep-core/master/ddionrails/variables.csv";
     public static final String CONCEPTS_CSV_DOWNLOAD_URL = "https://raw.githubusercontent.com/paneldata/soep-core/master/ddionrails/concepts.csv";
 
+    // Repository paths of the CSV files
+    public static final String DATASETS_CSV_PATH = "ddionrails/datasets.csv";
+    public static final String VARIABLES_CSV_PATH = "ddionrails/variables.csv";
+    public static final String CONCEPTS_CSV_PATH = "ddionrails/concepts.csv";
+
+    // The columns that identify the dataset of a "datasets.csv" row and the concept of a "concepts.csv" row
+    public static final int DATASETS_CSV_NAME_COLUMN = 1;
+    public static final int CONCEPTS_CSV_NAME_COLUMN = 0;
+
+    // GitHub compare statuses
+    public static final String COMPARISON_STATUS_AHEAD = "ahead";
+    public static final String COMPARISON_STATUS_IDENTICAL = "identical";
+    public static final String FILE_STATUS_REMOVED = "removed";
+    public static final String FILE_STATUS_RENAMED = "renamed";
+
+    // GitHub lists at most 300 files per comparison, so a comparison of that size may be incomplete
+    public static final int MAX_COMPARED_FILES = 300;
+
+    // The file in the cache folder that stores the hash of the last harvested commit
+    public static final String HARVESTED_COMMIT_FILE_NAME = "harvestedCommit.txt";
+
+    // The file in the cache folder that stores the fingerprints of the last harvested documents
+    public static final String FINGERPRINT_FILE_NAME = "documentFingerprints.txt";
+
+    // The folder in the cache folder that stores binary snapshots of the parsed CSV files
+    public static final String SNAPSHOT_FOLDER_NAME = "metadataSnapshots";
+    public static final String SNAPSHOT_FILE_SUFFIX = ".snapshot";
+
+    // Suffix of the source IDs and URLs of the part documents of split datasets
+    public static final String PART_ID_SUFFIX = "#part-%d";
+
     public static final String SOEP_ETL_NAME = "SoepETL";
 
+    // GitHub API rate limits
+    public static final int RATE_LIMIT_MAX_RETRIES = 5;
+    public static final long RATE_LIMIT_BASE_BACKOFF_MS = 1000;
+    public static final int RATE_LIMIT_MAX_BACKOFF_SHIFT = 16;
+    public static final long RATE_LIMIT_MAX_WAIT_MS = 3600000;
+
+    // If fewer requests remain, they are spread until the quota is reset
+    public static final int RATE_LIMIT_RESERVE = 10;
+
+    // The number of downloads that are executed in parallel during the initialization of the extractor
+    public static final int INIT_THREAD_COUNT = 5;
+
+    // Parameters
+    public static final String MAPPED_CSV_PARAM_KEY = "memoryMapCsvFiles";
+    public static final boolean MAPPED_CSV_PARAM_DEFAULT = false;
+    public static final String TRANSFORM_THREADS_PARAM_KEY = "transformThreads";
+    public static final int TRANSFORM_THREADS_PARAM_DEFAULT = 1;
+    public static final String PREFETCH_SIZE_PARAM_KEY = "prefetchQueueSize";
+    public static final int PREFETCH_SIZE_PARAM_DEFAULT = 0;
+    public static final String INCREMENTAL_PARAM_KEY = "incrementalHarvest";
+    public static final boolean INCREMENTAL_PARAM_DEFAULT = false;
+    public static final String GIT_TREE_LISTING_PARAM_KEY = "listDatasetsViaGitTrees";
+    public static final boolean GIT_TREE_LISTING_PARAM_DEFAULT = false;
+    public static final String LOCAL_MIRROR_PARAM_KEY = "localMirrorPath";
+    public static final String LOCAL_MIRROR_PARAM_DEFAULT = "";
+    public static final String SNAPSHOT_PARAM_KEY = "metadataSnapshots";
+    public static final boolean SNAPSHOT_PARAM_DEFAULT = false;
+    public static final String SKIP_UNCHANGED_PARAM_KEY = "skipUnchangedDocuments";
+    public static final boolean SKIP_UNCHANGED_PARAM_DEFAULT = false;
+    public static final String MAX_VARIABLES_PARAM_KEY = "maxVariablesPerDocument";
+    public static final int MAX_VARIABLES_PARAM_DEFAULT = 0;
+    public static final String KEEP_ALIVE_PARAM_KEY = "keepConnectionsAlive";
+    public static final boolean KEEP_ALIVE_PARAM_DEFAULT = false;
+    public static final String CONNECT_TIMEOUT_PARAM_KEY = "connectTimeoutMs";
+    public static final int CONNECT_TIMEOUT_PARAM_DEFAULT = 10000;
+    public static final String READ_TIMEOUT_PARAM_KEY = "readTimeoutMs";
+    public static final int READ_TIMEOUT_PARAM_DEFAULT = 60000;
+
+    // The number of datasets per transformer thread that may be transformed ahead of the loader
+    public static final int TRANSFORM_WINDOW_PER_THREAD = 4;
+
+    // The thread that assembles SOEP datasets ahead of the transformer, if prefetching is enabled
+    public static final String PREFETCH_THREAD_NAME = "SoepPrefetcher";
+    public static final long PREFETCH_SHUTDOWN_TIMEOUT_MS = 5000;
+
+    // The JMX object name of the harvest metrics of an ETL
+    public static final String METRICS_MBEAN_NAME = "de.gerdiproject.harvest:type=HarvestMetrics,name=%s";
+
     // The concept label language
     public static final String CONCEPT_LABEL_EN = "en";
     public static final String CONCEPT_LABEL_DE = "de";
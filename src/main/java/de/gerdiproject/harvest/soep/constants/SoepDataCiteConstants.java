@@ -126,6 +126,9 @@ public class SoepDataCiteConstants
     // SIZES
     public static final String SIZE_BYTES = "%d bytes";
 
+    // PARTS
+    public static final String PART_TITLE = "%s (part %d of %d)";
+
 
     /**
      * Initializes a WebLink that leads to SOEP logo.
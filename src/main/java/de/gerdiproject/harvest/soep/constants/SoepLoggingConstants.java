@@ -50,4 +50,47 @@ public class SoepLoggingConstants
     public static final String ERROR_READING_DATASET_FILES = "Exception while reading SOEP <dataset> files.";
     public static final String ERROR_READING_CONCEPTS_FILES = "Exception while reading SOEP <concepts> files.";
     public static final String ERROR_READING_VARIABLES_FILES = "Exception while reading SOEP <variables> files.";
+    public static final String ERROR_INIT_INTERRUPTED = "Interrupted while retrieving SOEP metadata.";
+    public static final String ERROR_TRANSFORM_INTERRUPTED = "Interrupted while transforming SOEP datasets.";
+    public static final String ERROR_PARALLEL_TRANSFORM = "Exception while transforming SOEP datasets in parallel.";
+    public static final String ERROR_PREFETCHING = "Exception while prefetching SOEP datasets.";
+    public static final String ERROR_READING_HARVESTED_COMMIT = "Could not read the last harvested commit from <%s>";
+    public static final String ERROR_WRITING_HARVESTED_COMMIT = "Could not write the last harvested commit to <%s>";
+    public static final String TRUNCATED_TREE_WARNING =
+        "The Git tree of the SOEP datasets is unavailable or truncated, listing them via the contents API instead";
+    public static final String ERROR_NO_GIT_REPOSITORY = "<%s> is not a git repository with a HEAD commit";
+    public static final String ERROR_GIT_PATH_NOT_FOUND = "<%s> does not exist in commit <%s>";
+    public static final String ERROR_OPENING_GIT_MIRROR = "Could not open the local SOEP git mirror.";
+    public static final String READING_GIT_MIRROR_INFO = "Reading SOEP files from the local git mirror <%s> at commit <%s>";
+    public static final String RATE_LIMITED_WARNING = "GitHub throttled the request to <%s>, retrying in %d ms";
+    public static final String RATE_LIMIT_STATISTICS =
+        "GitHub API quota: %d of %d requests remaining, %d requests throttled";
+    public static final String SNAPSHOT_OUTDATED_ERROR = "The SOEP metadata snapshot <%s> is out of date";
+    public static final String SNAPSHOT_CORRUPT_ERROR = "The SOEP metadata snapshot <%s> is corrupt";
+    public static final String ERROR_READING_SNAPSHOT = "Could not read the SOEP metadata snapshot, parsing the CSV files instead: %s";
+    public static final String ERROR_WRITING_SNAPSHOT = "Could not write the SOEP metadata snapshot <%s>";
+    public static final String ERROR_DELETING_SNAPSHOT = "Could not delete the SOEP metadata snapshot <%s>";
+    public static final String READING_SNAPSHOT_INFO = "Reading SOEP metadata of commit <%s> from snapshot <%s>";
+    public static final String ERROR_READING_FINGERPRINTS = "Could not read the document fingerprints from <%s>";
+    public static final String ERROR_WRITING_FINGERPRINTS = "Could not write the document fingerprints to <%s>";
+    public static final String ERROR_COMPARING_COMMITS = "Could not compare the commits <%s> and <%s>: %s";
+    public static final String ERROR_INCOMPLETE_CSV_RECORD = "The patch of <%s> does not consist of complete CSV records";
+    public static final String ERROR_UNKNOWN_CSV_RECORD =
+        "The changes since commit <%s> contain CSV records of unknown datasets or concepts";
+
+    public static final String CONCEPT_CACHE_STATISTICS = "SOEP concept cache: %d hits, %d misses";
+    public static final String INCREMENTAL_HARVEST_INFO =
+        "Harvesting SOEP changes since commit <%s>: %d changed datasets, %d removed datasets";
+    public static final String FULL_HARVEST_FALLBACK_INFO =
+        "The changes since commit <%s> cannot be determined, harvesting all SOEP datasets";
+    public static final String FINGERPRINT_STATISTICS =
+        "SOEP document fingerprints: %d changed documents, %d unchanged documents skipped";
+    public static final String PREFETCH_STATISTICS =
+        "SOEP prefetch queue: %d of %d datasets queued, producer stalled for %d ms, consumer stalled for %d ms";
+    public static final String HARVEST_METRICS_SUMMARY =
+        "SOEP harvest metrics: %d documents in %d ms (%.1f documents/s), %d CSV rows and %d bytes parsed%s";
+    public static final String PHASE_METRICS = "; %s: %d times, %.1f ms total, %.1f ms median, %.1f ms p99, %.1f ms max";
+    public static final String ERROR_REGISTERING_METRICS = "Could not publish the SOEP harvest metrics via JMX: %s";
+    public static final String ERROR_DEFINING_JFR_EVENT = "Could not define the Flight Recorder event <%s>: %s";
+    public static final String ERROR_RECORDING_JFR_EVENT = "Could not record a Flight Recorder event, %s() failed: %s";
 }
\ No newline at end of file
@@ -15,6 +15,7 @@
  */
 package de.gerdiproject.harvest.soep.csv;
 
+import de.gerdiproject.harvest.utils.csv.CsvRow;
 import lombok.Data;
 
 /**
@@ -35,12 +36,12 @@ public class ConceptMetadata
      *
      * @param row read from "concepts.csv"
      */
-    public ConceptMetadata(final String... row)
+    public ConceptMetadata(final CsvRow row)
     {
-        this.conceptName = row[0];
-        this.topic = row[1];
-        this.topicName = row[2];
-        this.labelDE = row[3];
-        this.label = row[4];
+        this.conceptName = row.get(0);
+        this.topic = row.get(1);
+        this.topicName = row.get(2);
+        this.labelDE = row.get(3);
+        this.label = row.get(4);
     }
 }
\ No newline at end of file
@@ -15,6 +15,7 @@
  */
 package de.gerdiproject.harvest.soep.csv;
 
+import de.gerdiproject.harvest.utils.csv.CsvRow;
 import lombok.Data;
 
 /**
@@ -39,14 +40,14 @@ public class DatasetMetadata
      *
      * @param row a row read from "datasets.csv"
      */
-    public DatasetMetadata(final String... row)
+    public DatasetMetadata(final CsvRow row)
     {
-        this.studyName = row[0];
-        this.datasetName = row[1];
-        this.periodName = row[2];
-        this.analysisUnitName = row[3];
-        this.conceptualDatasetName = row[4];
-        this.label = row[5];
-        this.description = row[6];
+        this.studyName = row.get(0);
+        this.datasetName = row.get(1);
+        this.periodName = row.get(2);
+        this.analysisUnitName = row.get(3);
+        this.conceptualDatasetName = row.get(4);
+        this.label = row.get(5);
+        this.description = row.get(6);
     }
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+/**
+ * Copyright © 2017 Fidan Limani, Robin Weiss (http://www.gerdi-project.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.gerdiproject.harvest.soep.csv;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * This enumeration represents the columns of the SOEP "variables.csv" file.
+ *
+ * @author Robin Weiss
+ */
+@AllArgsConstructor
+public enum VariableColumn
+{
+    STUDY_NAME(0),
+    DATASET_NAME(1),
+    VARIABLE_NAME(2),
+    CONCEPT_NAME(3),
+    SOURCE(4),
+    ITEM_ID(5),
+    ID(6);
+
+    /**
+     * The zero-based index of the column.
+     */
+    @Getter
+    private final int index;
+}
@@ -0,0 +1,401 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.soep.incremental;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import de.gerdiproject.harvest.github.json.GitHubComparison;
+import de.gerdiproject.harvest.github.json.GitHubFile;
+import de.gerdiproject.harvest.soep.constants.SoepConstants;
+import de.gerdiproject.harvest.soep.constants.SoepLoggingConstants;
+import de.gerdiproject.harvest.soep.csv.VariableColumn;
+import de.gerdiproject.harvest.utils.csv.CsvRow;
+import de.gerdiproject.harvest.utils.csv.MappedCsvParser;
+
+/**
+ * This class collects the SOEP datasets that were added, changed, or removed
+ * between two commits of the SOEP repository. A dataset is considered changed
+ * if its dataset file changed, or if one of its rows in "datasets.csv" or
+ * "variables.csv" changed. Changed rows of "concepts.csv" are collected as
+ * concept names, which need to be mapped to the datasets that use them.
+ * Datasets whose rows were removed from "datasets.csv" are collected separately,
+ * because they no longer have a document.
+ * <br>
+ * A hunk of a patch may start in the middle of a quoted multi-line field. If the
+ * remaining lines of that field contain no quotes, they cannot be told apart from
+ * complete records, so the names that were parsed from changed records need to be
+ * checked via {@linkplain #hasKnownRecordNames(Predicate, Predicate)}.
+ *
+ * @author Robin Weiss
+ */
+public class DatasetChanges
+{
+    private final Set<String> changedDatasets = new HashSet<>();
+    private final Map<String, String> removedDatasetPaths = new HashMap<>();
+    private final Set<String> changedConcepts = new HashSet<>();
+    private final Set<String> removedMetadataDatasets = new HashSet<>();
+
+    // the dataset names of all changed rows of "datasets.csv" and "variables.csv"
+    private final Set<String> recordDatasetNames = new HashSet<>();
+
+
+    /**
+     * Determines the changed datasets from a comparison of two commits.
+     *
+     * @param comparison the response of a GitHub compare request
+     *
+     * @throws IOException if a changed CSV row could not be parsed
+     *
+     * @return the changed datasets, or null if the comparison is incomplete
+     * or too large, requiring a full harvest
+     */
+    public static DatasetChanges fromComparison(final GitHubComparison comparison) throws IOException
+    {
+        if (comparison == null
+            || comparison.getFiles() == null
+            || !SoepConstants.COMPARISON_STATUS_AHEAD.equals(comparison.getStatus())
+            && !SoepConstants.COMPARISON_STATUS_IDENTICAL.equals(comparison.getStatus())
+            || comparison.getFiles().size() >= SoepConstants.MAX_COMPARED_FILES)
+            return null;
+
+        final DatasetChanges changes = new DatasetChanges();
+
+        for (final GitHubFile file : comparison.getFiles()) {
+            final String path = file.getFilename();
+
+            if (path.startsWith(SoepConstants.DATASETS_PATH))
+                changes.addDatasetFileChange(file);
+
+            else if (SoepConstants.DATASETS_CSV_PATH.equals(path)
+                     || SoepConstants.VARIABLES_CSV_PATH.equals(path)
+                     || SoepConstants.CONCEPTS_CSV_PATH.equals(path)) {
+
+                // without a patch, the changed rows are unknown
+                if (file.getPatch() == null)
+                    return null;
+
+                changes.addCsvFileChange(path, file.getPatch());
+            }
+        }
+
+        return changes;
+    }
+
+
+    /**
+     * Marks datasets as changed.
+     *
+     * @param datasetNames the names of the changed datasets
+     */
+    public void addChangedDatasets(final Collection<String> datasetNames)
+    {
+        changedDatasets.addAll(datasetNames);
+    }
+
+
+    /**
+     * Checks if a dataset was added or changed.
+     *
+     * @param datasetName the name of the dataset
+     *
+     * @return true if the dataset was added or changed
+     */
+    public boolean isChanged(final String datasetName)
+    {
+        return changedDatasets.contains(datasetName);
+    }
+
+
+    /**
+     * Returns the names of all added or changed datasets.
+     *
+     * @return an unmodifiable set of dataset names
+     */
+    public Set<String> getChangedDatasets()
+    {
+        return Collections.unmodifiableSet(changedDatasets);
+    }
+
+
+    /**
+     * Returns the repository paths of the files of all removed datasets.
+     *
+     * @return an unmodifiable collection of file paths
+     */
+    public Collection<String> getRemovedDatasetPaths()
+    {
+        return Collections.unmodifiableCollection(removedDatasetPaths.values());
+    }
+
+
+    /**
+     * Returns the names of all datasets of which the "datasets.csv" rows
+     * were removed without being added again.
+     *
+     * @return an unmodifiable set of dataset names
+     */
+    public Set<String> getRemovedMetadataDatasets()
+    {
+        return Collections.unmodifiableSet(removedMetadataDatasets);
+    }
+
+
+    /**
+     * Returns the names of all concepts of which the "concepts.csv" rows changed.
+     *
+     * @return an unmodifiable set of concept names
+     */
+    public Set<String> getChangedConcepts()
+    {
+        return Collections.unmodifiableSet(changedConcepts);
+    }
+
+
+    /**
+     * Checks if all dataset and concept names that were parsed from changed CSV
+     * records are known. Unknown names may stem from a hunk that starts in the
+     * middle of a record, in which case the really changed records are missed.
+     * Datasets whose files were removed count as known.
+     *
+     * @param isKnownDataset tests if a dataset name belongs to an existing dataset
+     * @param isKnownConcept tests if a concept name belongs to an existing concept
+     *
+     * @return true if all names of changed CSV records are known
+     */
+    public boolean hasKnownRecordNames(final Predicate<String> isKnownDataset, final Predicate<String> isKnownConcept)
+    {
+        for (final String datasetName : recordDatasetNames) {
+            if (!isKnownDataset.test(datasetName) && !removedDatasetPaths.containsKey(datasetName))
+                return false;
+        }
+
+        for (final String conceptName : changedConcepts) {
+            if (!isKnownConcept.test(conceptName))
+                return false;
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Marks the dataset of a changed dataset file as changed or removed.
+     * Renamed files remove the dataset of the previous file name.
+     *
+     * @param file a changed file of the datasets folder
+     */
+    private void addDatasetFileChange(final GitHubFile file)
+    {
+        if (SoepConstants.FILE_STATUS_RENAMED.equals(file.getStatus()) && file.getPreviousFilename() != null)
+            removedDatasetPaths.put(getDatasetName(file.getPreviousFilename()), file.getPreviousFilename());
+
+        if (SoepConstants.FILE_STATUS_REMOVED.equals(file.getStatus()))
+            removedDatasetPaths.put(getDatasetName(file.getFilename()), file.getFilename());
+        else
+            changedDatasets.add(getDatasetName(file.getFilename()));
+    }
+
+
+    /**
+     * Collects the datasets or concepts of all added or removed rows of a CSV file.
+     * Since quoted fields may contain line breaks, the lines of the patch are joined
+     * to complete CSV records for both the old and the new version of the file.
+     * A record counts as added or removed if one of its lines was.
+     *
+     * @param path the repository path of the CSV file
+     * @param patch the unified diff of the CSV file
+     *
+     * @throws IOException if the patch cuts through a CSV record
+     */
+    private void addCsvFileChange(final String path, final String patch) throws IOException
+    {
+        final boolean isConceptFile = SoepConstants.CONCEPTS_CSV_PATH.equals(path);
+        final int nameColumn;
+
+        if (isConceptFile)
+            nameColumn = SoepConstants.CONCEPTS_CSV_NAME_COLUMN;
+        else if (SoepConstants.DATASETS_CSV_PATH.equals(path))
+            nameColumn = SoepConstants.DATASETS_CSV_NAME_COLUMN;
+        else
+            nameColumn = VariableColumn.DATASET_NAME.getIndex();
+
+        final PatchRecord removedRecord = new PatchRecord(path);
+        final PatchRecord addedRecord = new PatchRecord(path);
+        final Set<String> removedNames = new HashSet<>();
+        final Set<String> addedNames = new HashSet<>();
+
+        for (final String line : patch.split("\n")) {
+            final char prefix = line.isEmpty() ? ' ' : line.charAt(0);
+            final String content = line.isEmpty() ? line : line.substring(1);
+
+            // hunk headers must not be in the middle of a record
+            if (prefix == '@') {
+                if (!removedRecord.isEmpty() || !addedRecord.isEmpty())
+                    throw new IOException(String.format(SoepLoggingConstants.ERROR_INCOMPLETE_CSV_RECORD, path));
+
+            } else if (prefix == '-')
+                removedRecord.addLine(content, true, nameColumn, removedNames);
+
+            else if (prefix == '+')
+                addedRecord.addLine(content, true, nameColumn, addedNames);
+
+            else if (prefix == ' ') {
+                removedRecord.addLine(content, false, nameColumn, removedNames);
+                addedRecord.addLine(content, false, nameColumn, addedNames);
+            }
+
+            // other lines, such as "\ No newline at end of file", are irrelevant
+        }
+
+        if (!removedRecord.isEmpty() || !addedRecord.isEmpty())
+            throw new IOException(String.format(SoepLoggingConstants.ERROR_INCOMPLETE_CSV_RECORD, path));
+
+        if (isConceptFile) {
+            changedConcepts.addAll(removedNames);
+            changedConcepts.addAll(addedNames);
+        } else {
+            changedDatasets.addAll(removedNames);
+            changedDatasets.addAll(addedNames);
+            recordDatasetNames.addAll(removedNames);
+            recordDatasetNames.addAll(addedNames);
+        }
+
+        if (SoepConstants.DATASETS_CSV_PATH.equals(path)) {
+            removedNames.removeAll(addedNames);
+            removedMetadataDatasets.addAll(removedNames);
+        }
+    }
+
+
+    /**
+     * Retrieves the name of a dataset from the path of its dataset file.
+     *
+     * @param path the repository path of a dataset file
+     *
+     * @return the file name without extension
+     */
+    private static String getDatasetName(final String path)
+    {
+        final String fileName = path.substring(path.lastIndexOf('/') + 1);
+        final int extensionIndex = fileName.lastIndexOf('.');
+        return extensionIndex == -1 ? fileName : fileName.substring(0, extensionIndex);
+    }
+
+
+    /**
+     * This class joins the lines of one side of a patch until they
+     * form a complete CSV record, which is the case as soon as all
+     * quoted fields are closed.
+     *
+     * @author Robin Weiss
+     */
+    private static class PatchRecord
+    {
+        private static final MappedCsvParser CSV_PARSER = new MappedCsvParser();
+
+        private final String path;
+        private final StringBuilder lines = new StringBuilder();
+        private int quoteCount;
+        private boolean isChanged;
+
+
+        /**
+         * Constructor that requires the CSV file of the patch.
+         *
+         * @param path the repository path of the CSV file
+         */
+        PatchRecord(final String path)
+        {
+            this.path = path;
+        }
+
+
+        /**
+         * Adds a line to the record. If the record is complete afterwards and one
+         * of its lines was changed, the name in the specified column is collected.
+         *
+         * @param line the line without its diff prefix
+         * @param isChangedLine true if the line was added or removed
+         * @param nameColumn the column that contains the name of the record
+         * @param names the names of all changed records
+         *
+         * @throws IOException if the completed lines are not a single CSV record,
+         * or if a changed record has no name, which is the case if the patch
+         * starts in the middle of a record
+         */
+        void addLine(final String line, final boolean isChangedLine, final int nameColumn, final Set<String> names) throws IOException
+        {
+            if (lines.length() > 0)
+                lines.append('\n');
+
+            lines.append(line);
+            isChanged |= isChangedLine;
+
+            for (int i = 0; i < line.length(); i++) {
+                if (line.charAt(i) == '"')
+                    quoteCount++;
+            }
+
+            // escaped quotes are doubled, so an odd number of quotes means an open field
+            if (quoteCount % 2 != 0)
+                return;
+
+            final List<String> recordNames = new LinkedList<>();
+            final Consumer<CsvRow> addName = (final CsvRow row) ->
+                                             recordNames.add(row.size() > nameColumn ? row.get(nameColumn) : null);
+            CSV_PARSER.parse(ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8)), 0, addName);
+
+            if (recordNames.size() > 1)
+                throw new IOException(String.format(SoepLoggingConstants.ERROR_INCOMPLETE_CSV_RECORD, path));
+
+            // changed records without a name column cannot be mapped to datasets or concepts
+            if (isChanged && !recordNames.isEmpty()) {
+                if (recordNames.get(0) == null)
+                    throw new IOException(String.format(SoepLoggingConstants.ERROR_INCOMPLETE_CSV_RECORD, path));
+
+                names.add(recordNames.get(0));
+            }
+
+            lines.setLength(0);
+            quoteCount = 0;
+            isChanged = false;
+        }
+
+
+        /**
+         * Checks if no lines of an incomplete record are pending.
+         *
+         * @return true if the record is empty
+         */
+        boolean isEmpty()
+        {
+            return lines.length() == 0;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.soep.incremental;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import de.gerdiproject.harvest.github.json.GitHubContent;
+import de.gerdiproject.harvest.soep.csv.ConceptMetadata;
+import de.gerdiproject.harvest.soep.csv.DatasetMetadata;
+import de.gerdiproject.harvest.soep.store.DatasetVariables;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * This static class computes fingerprints of all inputs from which the
+ * document of a SOEP dataset is transformed. If the fingerprint of a
+ * dataset did not change since the last harvest, its document
+ * does not need to be transformed and loaded again.
+ *
+ * @author Robin Weiss
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class DocumentFingerprint
+{
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    // must be increased whenever the transformation of documents changes
+    private static final int FINGERPRINT_VERSION = 1;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+
+    /**
+     * Computes the fingerprint of a dataset, which covers its file, its
+     * row of the datasets CSV file, its variables, their concepts, and
+     * the number of variables above which it is split into several documents.
+     *
+     * @param content the GitHub content of the dataset file
+     * @param datasetMetadata the metadata of the dataset, or null
+     * @param variables the variables of the dataset
+     * @param maxVariablesPerDocument the number of variables above which the dataset is split
+     *
+     * @return a hexadecimal SHA-256 hash of the inputs of the document
+     */
+    public static String compute(final GitHubContent content, final DatasetMetadata datasetMetadata, final DatasetVariables variables,
+                                 final int maxVariablesPerDocument)
+    {
+        final MessageDigest digest = createDigest();
+        update(digest, FINGERPRINT_VERSION);
+        update(digest, Math.max(maxVariablesPerDocument, 0));
+
+        update(digest, content.getPath());
+        update(digest, content.getName());
+        update(digest, content.getSha());
+        update(digest, content.getSize());
+        update(digest, content.getHtmlUrl());
+        update(digest, content.getDownloadUrl());
+
+        update(digest, datasetMetadata != null ? 1 : 0);
+
+        if (datasetMetadata != null) {
+            update(digest, datasetMetadata.getStudyName());
+            update(digest, datasetMetadata.getDatasetName());
+            update(digest, datasetMetadata.getPeriodName());
+            update(digest, datasetMetadata.getAnalysisUnitName());
+            update(digest, datasetMetadata.getConceptualDatasetName());
+            update(digest, datasetMetadata.getLabel());
+            update(digest, datasetMetadata.getDescription());
+        }
+
+        final int variableCount = variables.size();
+        update(digest, variableCount);
+
+        for (int i = 0; i < variableCount; i++) {
+            update(digest, variables.getVariableName(i));
+            update(digest, variables.getConceptName(i));
+            update(digest, variables.getSource(i));
+
+            final ConceptMetadata concept = variables.getConcept(i);
+            update(digest, concept != null ? 1 : 0);
+
+            if (concept != null) {
+                update(digest, concept.getConceptName());
+                update(digest, concept.getTopic());
+                update(digest, concept.getTopicName());
+                update(digest, concept.getLabelDE());
+                update(digest, concept.getLabel());
+            }
+        }
+
+        return toHexString(digest.digest());
+    }
+
+
+    /**
+     * Creates a new SHA-256 digest.
+     *
+     * @return a new SHA-256 digest
+     */
+    private static MessageDigest createDigest()
+    {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (final NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    /**
+     * Adds a number to a digest.
+     *
+     * @param digest the digest that is updated
+     * @param value the number that is added
+     */
+    private static void update(final MessageDigest digest, final int value)
+    {
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(value).array());
+    }
+
+
+    /**
+     * Adds a string to a digest. The length of the string is added
+     * first, so that consecutive strings cannot be confused.
+     *
+     * @param digest the digest that is updated
+     * @param value the string that is added, or null
+     */
+    private static void update(final MessageDigest digest, final String value)
+    {
+        if (value == null)
+            update(digest, -1);
+        else {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            update(digest, bytes.length);
+            digest.update(bytes);
+        }
+    }
+
+
+    /**
+     * Converts bytes to a lower case hexadecimal string.
+     *
+     * @param bytes the bytes that are to be converted
+     *
+     * @return a hexadecimal string of the bytes
+     */
+    private static String toHexString(final byte[] bytes)
+    {
+        final char[] hex = new char[bytes.length * 2];
+
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+
+        return new String(hex);
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.soep.incremental;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.gerdiproject.harvest.soep.constants.SoepLoggingConstants;
+
+/**
+ * This class persists the {@linkplain DocumentFingerprint}s and the number of
+ * part documents of all datasets of the last completed harvest, mapped by the
+ * repository paths of their dataset files. Each line of the file consists of
+ * a fingerprint, a part count and a path, separated by spaces. If the
+ * fingerprint was not computed, it is replaced by a dash.
+ *
+ * @author Robin Weiss
+ */
+public class DocumentFingerprintFile
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(DocumentFingerprintFile.class);
+    private static final char SEPARATOR = ' ';
+    private static final String NO_FINGERPRINT = "-";
+
+    private final File file;
+
+
+    /**
+     * Constructor that requires the file in which the fingerprints are stored.
+     *
+     * @param file the file in which the fingerprints are stored
+     */
+    public DocumentFingerprintFile(final File file)
+    {
+        this.file = file;
+    }
+
+
+    /**
+     * Reads the fingerprints of the last completed harvest.
+     *
+     * @return a map of dataset file paths to fingerprints, which is empty
+     * if no harvest was completed yet
+     */
+    public Map<String, String> load()
+    {
+        final Map<String, String> fingerprints = new HashMap<>();
+
+        read((final String[] entry) -> {
+            if (!NO_FINGERPRINT.equals(entry[0]))
+                fingerprints.put(entry[2], entry[0]);
+        });
+
+        return fingerprints;
+    }
+
+
+    /**
+     * Reads the number of part documents of all datasets of the last completed harvest.
+     *
+     * @return a map of dataset file paths to part counts, which only contains
+     * datasets that were split
+     */
+    public Map<String, Integer> loadPartCounts()
+    {
+        final Map<String, Integer> partCounts = new HashMap<>();
+
+        read((final String[] entry) -> {
+            final int partCount = Integer.parseInt(entry[1]);
+
+            if (partCount > 0)
+                partCounts.put(entry[2], partCount);
+        });
+
+        return partCounts;
+    }
+
+
+    /**
+     * Reads all lines of the file and splits them into a fingerprint, a part count
+     * and a path. Lines that were written before part counts were stored
+     * are read with a part count of 0.
+     *
+     * @param entryConsumer a consumer of the fingerprint, part count and path of each line
+     */
+    private void read(final Consumer<String[]> entryConsumer)
+    {
+        if (!file.exists())
+            return;
+
+        try
+            (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                final int separatorIndex = line.indexOf(SEPARATOR);
+
+                if (separatorIndex <= 0)
+                    continue;
+
+                final String fingerprint = line.substring(0, separatorIndex);
+                final String remainder = line.substring(separatorIndex + 1);
+                final int secondSeparatorIndex = remainder.indexOf(SEPARATOR);
+
+                if (secondSeparatorIndex > 0 && isNumber(remainder.substring(0, secondSeparatorIndex)))
+                    entryConsumer.accept(new String[] {
+                                             fingerprint,
+                                             remainder.substring(0, secondSeparatorIndex),
+                                             remainder.substring(secondSeparatorIndex + 1)
+                                         });
+                else
+                    entryConsumer.accept(new String[] {fingerprint, "0", remainder});
+            }
+
+        } catch (final IOException | NumberFormatException e) {
+            LOGGER.warn(String.format(SoepLoggingConstants.ERROR_READING_FINGERPRINTS, file.getPath()), e);
+        }
+    }
+
+
+    /**
+     * Checks if a string consists of decimal digits only.
+     *
+     * @param value the string that is checked
+     *
+     * @return true if the string is a non-negative number
+     */
+    private static boolean isNumber(final String value)
+    {
+        for (int i = 0; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i)))
+                return false;
+        }
+
+        return !value.isEmpty();
+    }
+
+
+    /**
+     * Stores the fingerprints and part counts of a completed harvest,
+     * replacing all previously stored entries.
+     *
+     * @param fingerprints a map of dataset file paths to fingerprints, or null
+     * if no fingerprints were computed
+     * @param partCounts a map of dataset file paths to the numbers of
+     * their part documents, which only needs to contain split datasets,
+     * or null if no dataset is split
+     */
+    public void save(final Map<String, String> fingerprints, final Map<String, Integer> partCounts)
+    {
+        // sorted paths keep the file stable between harvests
+        final TreeSet<String> paths = new TreeSet<>();
+
+        if (fingerprints != null)
+            paths.addAll(fingerprints.keySet());
+
+        if (partCounts != null)
+            paths.addAll(partCounts.keySet());
+
+        try {
+            final File parentFolder = file.getAbsoluteFile().getParentFile();
+
+            if (!parentFolder.exists() && !parentFolder.mkdirs())
+                throw new IOException(parentFolder.getPath() + SoepLoggingConstants.DIR_NOT_CREATED);
+
+            try
+                (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                for (final String path : paths) {
+                    final String fingerprint = fingerprints == null ? null : fingerprints.get(path);
+
+                    writer.write(fingerprint == null ? NO_FINGERPRINT : fingerprint);
+                    writer.write(SEPARATOR);
+                    writer.write(String.valueOf(partCounts == null ? 0 : partCounts.getOrDefault(path, 0)));
+                    writer.write(SEPARATOR);
+                    writer.write(path);
+                    writer.newLine();
+                }
+            }
+
+        } catch (final IOException e) {
+            LOGGER.warn(String.format(SoepLoggingConstants.ERROR_WRITING_FINGERPRINTS, file.getPath()), e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.soep.incremental;
+
+import java.util.Map;
+
+/**
+ * This class holds back the harvested commit hash, the document
+ * fingerprints and the part counts of the current harvest, until all of
+ * its documents were both extracted and loaded. Since the extractor may
+ * run ahead of the loader, the exhaustion of the extractor alone does not mean that the
+ * documents arrived in the index. If the harvest fails, nothing is stored,
+ * so that the same datasets are harvested again next time.
+ *
+ * @author Robin Weiss
+ */
+public class HarvestCheckpoint
+{
+    private final HarvestedCommitFile harvestedCommitFile;
+    private final DocumentFingerprintFile fingerprintFile;
+
+    private String commitHash;
+    private Map<String, String> fingerprints;
+    private Map<String, Integer> partCounts;
+    private boolean isExtracted;
+    private boolean isLoaded;
+
+
+    /**
+     * Constructor that requires the files in which the state of completed harvests is stored.
+     *
+     * @param harvestedCommitFile the file in which the harvested commit hash is stored
+     * @param fingerprintFile the file in which the document fingerprints are stored
+     */
+    public HarvestCheckpoint(final HarvestedCommitFile harvestedCommitFile, final DocumentFingerprintFile fingerprintFile)
+    {
+        this.harvestedCommitFile = harvestedCommitFile;
+        this.fingerprintFile = fingerprintFile;
+    }
+
+
+    /**
+     * Starts a new harvest, discarding the pending state of a previous
+     * harvest that did not complete.
+     *
+     * @param commitHash the commit hash that is stored if the harvest completes,
+     * or null if it is not to be stored
+     * @param fingerprints the document fingerprints that are stored if the harvest
+     * completes, or null if they are not to be stored
+     * @param partCounts the numbers of part documents of split datasets that are
+     * stored if the harvest completes, or null if nothing is to be stored
+     */
+    public synchronized void begin(final String commitHash, final Map<String, String> fingerprints,
+                                   final Map<String, Integer> partCounts)
+    {
+        this.commitHash = commitHash;
+        this.fingerprints = fingerprints;
+        this.partCounts = partCounts;
+        this.isExtracted = false;
+        this.isLoaded = false;
+    }
+
+
+    /**
+     * Marks all datasets of the current harvest as extracted.
+     * The pending state is stored if the documents were loaded, too.
+     */
+    public synchronized void markExtracted()
+    {
+        this.isExtracted = true;
+        saveIfCompleted();
+    }
+
+
+    /**
+     * Marks all documents of the current harvest as loaded successfully.
+     * The pending state is stored if all datasets were extracted, too.
+     */
+    public synchronized void markLoaded()
+    {
+        this.isLoaded = true;
+        saveIfCompleted();
+    }
+
+
+    /**
+     * Stores the pending state if the current harvest is completed,
+     * and discards it afterwards, so it is not stored twice.
+     */
+    private void saveIfCompleted()
+    {
+        if (!isExtracted || !isLoaded)
+            return;
+
+        if (commitHash != null)
+            harvestedCommitFile.save(commitHash);
+
+        if (fingerprints != null || partCounts != null)
+            fingerprintFile.save(fingerprints, partCounts);
+
+        begin(null, null, null);
+    }
+}
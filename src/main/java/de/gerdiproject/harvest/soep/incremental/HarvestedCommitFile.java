@@ -0,0 +1,94 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.soep.incremental;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.gerdiproject.harvest.soep.constants.SoepLoggingConstants;
+
+/**
+ * This class persists the hash of the last commit that was harvested
+ * completely, so that the next harvest can be limited to the changes
+ * that were committed since.
+ *
+ * @author Robin Weiss
+ */
+public class HarvestedCommitFile
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(HarvestedCommitFile.class);
+
+    private final File file;
+
+
+    /**
+     * Constructor that requires the file in which the commit hash is stored.
+     *
+     * @param file the file in which the commit hash is stored
+     */
+    public HarvestedCommitFile(final File file)
+    {
+        this.file = file;
+    }
+
+
+    /**
+     * Reads the hash of the last harvested commit.
+     *
+     * @return the commit hash, or null if no harvest was completed yet
+     */
+    public String load()
+    {
+        if (!file.exists())
+            return null;
+
+        try {
+            final String commitHash = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+            return commitHash.isEmpty() ? null : commitHash;
+
+        } catch (final IOException e) {
+            LOGGER.warn(String.format(SoepLoggingConstants.ERROR_READING_HARVESTED_COMMIT, file.getPath()), e);
+            return null;
+        }
+    }
+
+
+    /**
+     * Stores the hash of the last harvested commit.
+     *
+     * @param commitHash the hash of the harvested commit
+     */
+    public void save(final String commitHash)
+    {
+        try {
+            final File parentFolder = file.getAbsoluteFile().getParentFile();
+
+            if (!parentFolder.exists() && !parentFolder.mkdirs())
+                throw new IOException(parentFolder.getPath() + SoepLoggingConstants.DIR_NOT_CREATED);
+
+            Files.write(file.toPath(), commitHash.getBytes(StandardCharsets.UTF_8));
+
+        } catch (final IOException e) {
+            LOGGER.warn(String.format(SoepLoggingConstants.ERROR_WRITING_HARVESTED_COMMIT, file.getPath()), e);
+        }
+    }
+}
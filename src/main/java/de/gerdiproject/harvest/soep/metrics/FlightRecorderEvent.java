@@ -0,0 +1,271 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.soep.metrics;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.gerdiproject.harvest.soep.constants.SoepLoggingConstants;
+
+/**
+ * This class represents a single JDK Flight Recorder event of a
+ * {@linkplain FlightRecorderEventType}. Since the harvester is compiled for
+ * Java 8, the events are defined at runtime via the "jdk.jfr.EventFactory",
+ * which is available in Java 11 and in OpenJDK 8 builds with the Flight
+ * Recorder backport. If the Flight Recorder is unavailable, or if an event
+ * type is not enabled in any running recording, events are disabled and
+ * all of their methods do nothing.
+ *
+ * @author Robin Weiss
+ */
+public class FlightRecorderEvent
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(FlightRecorderEvent.class);
+
+    /**
+     * An event that is not recorded.
+     */
+    static final FlightRecorderEvent DISABLED = new FlightRecorderEvent(null);
+
+    private static final String EVENT_NAME_PREFIX = "de.gerdiproject.soep.";
+    private static final String[] EVENT_CATEGORY = {"GeRDI", "SOEP Harvester"};
+
+    private static final Constructor<?> ANNOTATION_CONSTRUCTOR;
+    private static final Constructor<?> FIELD_CONSTRUCTOR;
+    private static final Class<?>[] EVENT_ANNOTATIONS;
+    private static final Method CREATE_FACTORY;
+    private static final Method GET_EVENT_TYPE;
+    private static final Method IS_ENABLED;
+    private static final Method NEW_EVENT;
+    private static final Method BEGIN;
+    private static final Method END;
+    private static final Method SHOULD_COMMIT;
+    private static final Method SET;
+    private static final Method COMMIT;
+
+    static {
+        Constructor<?> annotationConstructor = null;
+        Constructor<?> fieldConstructor = null;
+        Class<?>[] eventAnnotations = null;
+        Method createFactory = null;
+        Method getEventType = null;
+        Method isEnabled = null;
+        Method newEvent = null;
+        Method begin = null;
+        Method end = null;
+        Method shouldCommit = null;
+        Method set = null;
+        Method commit = null;
+
+        try {
+            final Class<?> annotationClass = Class.forName("jdk.jfr.AnnotationElement");
+            final Class<?> fieldClass = Class.forName("jdk.jfr.ValueDescriptor");
+            final Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+            final Class<?> eventTypeClass = Class.forName("jdk.jfr.EventType");
+            final Class<?> eventClass = Class.forName("jdk.jfr.Event");
+
+            annotationConstructor = annotationClass.getConstructor(Class.class, Object.class);
+            fieldConstructor = fieldClass.getConstructor(Class.class, String.class);
+            eventAnnotations = new Class<?>[] {
+                Class.forName("jdk.jfr.Name"),
+                Class.forName("jdk.jfr.Label"),
+                Class.forName("jdk.jfr.Category")
+            };
+            createFactory = factoryClass.getMethod("create", List.class, List.class);
+            getEventType = factoryClass.getMethod("getEventType");
+            isEnabled = eventTypeClass.getMethod("isEnabled");
+            newEvent = factoryClass.getMethod("newEvent");
+            begin = eventClass.getMethod("begin");
+            end = eventClass.getMethod("end");
+            shouldCommit = eventClass.getMethod("shouldCommit");
+            set = eventClass.getMethod("set", int.class, Object.class);
+            commit = eventClass.getMethod("commit");
+
+        } catch (final ReflectiveOperationException e) {
+            // the Flight Recorder is unavailable in this JVM
+            createFactory = null;
+        }
+
+        ANNOTATION_CONSTRUCTOR = annotationConstructor;
+        FIELD_CONSTRUCTOR = fieldConstructor;
+        EVENT_ANNOTATIONS = eventAnnotations;
+        CREATE_FACTORY = createFactory;
+        GET_EVENT_TYPE = getEventType;
+        IS_ENABLED = isEnabled;
+        NEW_EVENT = newEvent;
+        BEGIN = begin;
+        END = end;
+        SHOULD_COMMIT = shouldCommit;
+        SET = set;
+        COMMIT = commit;
+    }
+
+    private final Object event;
+
+
+    /**
+     * Constructor that wraps a Flight Recorder event.
+     *
+     * @param event an instance of "jdk.jfr.Event", or null if the event is disabled
+     */
+    private FlightRecorderEvent(final Object event)
+    {
+        this.event = event;
+    }
+
+
+    /**
+     * Checks if the event is recorded by the Flight Recorder.
+     *
+     * @return true if the event is recorded
+     */
+    public boolean isRecording()
+    {
+        return event != null;
+    }
+
+
+    /**
+     * Marks the end of the event. If this method is not called, the event
+     * ends when it is committed.
+     */
+    public void end()
+    {
+        if (event != null)
+            invoke(END, event);
+    }
+
+
+    /**
+     * Checks if the event is to be committed, which is only the case if it
+     * is recorded, and its duration exceeds the threshold of the recording.
+     * This allows expensive field values to be computed only if they are
+     * going to be recorded.
+     *
+     * @return true if the event is to be committed
+     */
+    public boolean shouldCommit()
+    {
+        return event != null && Boolean.TRUE.equals(invoke(SHOULD_COMMIT, event));
+    }
+
+
+    /**
+     * Sets the fields of the event, and writes it to all recordings.
+     *
+     * @param values the values of all fields, in the order of the
+     * fields of the {@linkplain FlightRecorderEventType}
+     */
+    public void commit(final Object... values)
+    {
+        if (event == null)
+            return;
+
+        for (int i = 0; i < values.length; i++)
+            invoke(SET, event, i, values[i]);
+
+        invoke(COMMIT, event);
+    }
+
+
+    /**
+     * Creates and begins an event of a specified event factory,
+     * if the event type is enabled.
+     *
+     * @param eventFactory an instance of "jdk.jfr.EventFactory", or null
+     *
+     * @return a new event, or a disabled event
+     */
+    static FlightRecorderEvent begin(final Object eventFactory)
+    {
+        if (eventFactory == null
+            || !Boolean.TRUE.equals(invoke(IS_ENABLED, invoke(GET_EVENT_TYPE, eventFactory))))
+            return DISABLED;
+
+        final Object event = invoke(NEW_EVENT, eventFactory);
+
+        if (event == null)
+            return DISABLED;
+
+        invoke(BEGIN, event);
+        return new FlightRecorderEvent(event);
+    }
+
+
+    /**
+     * Defines a Flight Recorder event type.
+     *
+     * @param name the unique name of the event type, without the common prefix
+     * @param label the human-readable name of the event type
+     * @param fieldNames the names of the fields of the event type
+     * @param fieldTypes the types of the fields, which must be primitive types or strings
+     *
+     * @return an instance of "jdk.jfr.EventFactory", or null if the
+     * Flight Recorder is unavailable
+     */
+    static Object createEventFactory(final String name, final String label, final String[] fieldNames, final Class<?>[] fieldTypes)
+    {
+        if (CREATE_FACTORY == null)
+            return null;
+
+        try {
+            final List<Object> annotations = Arrays.asList(
+                                                 ANNOTATION_CONSTRUCTOR.newInstance(EVENT_ANNOTATIONS[0], EVENT_NAME_PREFIX + name),
+                                                 ANNOTATION_CONSTRUCTOR.newInstance(EVENT_ANNOTATIONS[1], label),
+                                                 ANNOTATION_CONSTRUCTOR.newInstance(EVENT_ANNOTATIONS[2], EVENT_CATEGORY));
+
+            final List<Object> fields = new ArrayList<>(fieldNames.length);
+
+            for (int i = 0; i < fieldNames.length; i++)
+                fields.add(FIELD_CONSTRUCTOR.newInstance(fieldTypes[i], fieldNames[i]));
+
+            return CREATE_FACTORY.invoke(null, annotations, fields);
+
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            LOGGER.warn(String.format(SoepLoggingConstants.ERROR_DEFINING_JFR_EVENT, name, e.getMessage()));
+            return null;
+        }
+    }
+
+
+    /**
+     * Invokes a method of the Flight Recorder API. Failures are logged,
+     * because they must not affect the harvest.
+     *
+     * @param method the invoked method
+     * @param target the object on which the method is invoked
+     * @param arguments the arguments of the method
+     *
+     * @return the return value of the method, or null if it failed
+     */
+    private static Object invoke(final Method method, final Object target, final Object... arguments)
+    {
+        try {
+            return method.invoke(target, arguments);
+        } catch (final IllegalAccessException | InvocationTargetException | RuntimeException e) {
+            LOGGER.warn(String.format(SoepLoggingConstants.ERROR_RECORDING_JFR_EVENT, method.getName(), e.getMessage()));
+            return null;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.soep.metrics;
+
+/**
+ * This enumeration defines the JDK Flight Recorder events of a SOEP harvest,
+ * which tie the generic events of a recording, such as socket reads or
+ * garbage collections, to the SOEP file or dataset that caused them.
+ * <br>
+ * The events are defined when this class is loaded. If the Flight Recorder
+ * is unavailable, {@linkplain #begin()} returns a disabled event.
+ *
+ * @author Robin Weiss
+ */
+public enum FlightRecorderEventType
+{
+    /**
+     * The download of a CSV file, including its parsing if it is streamed.
+     */
+    CSV_DOWNLOAD("CsvDownload", "SOEP CSV Download",
+                 new String[] {"url", "bytes"},
+                 new Class<?>[] {String.class, long.class}),
+
+    /**
+     * The parsing of a SOEP CSV file.
+     */
+    CSV_PARSE("CsvParse", "SOEP CSV Parse",
+              new String[] {"file", "rows"},
+              new Class<?>[] {String.class, long.class}),
+
+    /**
+     * The join of a dataset with its metadata and variables.
+     */
+    DATASET_JOIN("DatasetJoin", "SOEP Dataset Join",
+                 new String[] {"dataset", "variables"},
+                 new Class<?>[] {String.class, int.class}),
+
+    /**
+     * The transformation of a dataset to a document. The serialized size is
+     * only computed for committed events, and is -1 if it is unknown.
+     */
+    DOCUMENT_TRANSFORM("DocumentTransform", "SOEP Document Transform",
+                       new String[] {"path", "variables", "serializedSize"},
+                       new Class<?>[] {String.class, int.class, long.class});
+
+    // an instance of "jdk.jfr.EventFactory", or null if the Flight Recorder is unavailable
+    private final Object eventFactory;
+
+
+    /**
+     * Constructor that defines the Flight Recorder event type.
+     *
+     * @param name the unique name of the event type, without the common prefix
+     * @param label the human-readable name of the event type
+     * @param fieldNames the names of the fields of the event type
+     * @param fieldTypes the types of the fields
+     */
+    FlightRecorderEventType(final String name, final String label, final String[] fieldNames, final Class<?>[] fieldTypes)
+    {
+        this.eventFactory = FlightRecorderEvent.createEventFactory(name, label, fieldNames, fieldTypes);
+    }
+
+
+    /**
+     * Begins a new event of this type. The event is disabled unless
+     * a recording that enables this event type is running.
+     *
+     * @return a new event
+     */
+    public FlightRecorderEvent begin()
+    {
+        return FlightRecorderEvent.begin(eventFactory);
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.soep.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.gerdiproject.harvest.etls.extractors.PrefetchingIterator;
+import de.gerdiproject.harvest.github.GitHubRateLimiter;
+import de.gerdiproject.harvest.soep.constants.SoepConstants;
+import de.gerdiproject.harvest.soep.constants.SoepLoggingConstants;
+
+/**
+ * This class collects the durations of all {@linkplain HarvestPhase}s of a
+ * SOEP harvest, as well as the number of parsed CSV rows and read bytes.
+ * It can be accessed by multiple threads, and is published as an MXBean,
+ * so it can be inspected via JMX while a harvest is running.
+ *
+ * @author Robin Weiss
+ */
+public class HarvestMetrics implements HarvestMetricsMXBean
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(HarvestMetrics.class);
+
+    private final Map<HarvestPhase, PhaseTimer> timers = new EnumMap<>(HarvestPhase.class);
+    private final LongAdder rowsParsed = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+
+    private volatile long startNanos;
+    private volatile long finishNanos;
+    private volatile PrefetchingIterator<?> prefetchingIterator;
+    private volatile GitHubRateLimiter rateLimiter;
+    private volatile int documentsChanged;
+    private volatile int documentsSkipped;
+
+
+    /**
+     * Constructor that creates a timer for each {@linkplain HarvestPhase}.
+     */
+    public HarvestMetrics()
+    {
+        for (final HarvestPhase phase : HarvestPhase.values())
+            timers.put(phase, new PhaseTimer(phase));
+    }
+
+
+    /**
+     * Removes the metrics of the previous harvest, and marks the
+     * start of a new harvest.
+     */
+    public void start()
+    {
+        for (final PhaseTimer timer : timers.values())
+            timer.reset();
+
+        rowsParsed.reset();
+        bytesRead.reset();
+        this.prefetchingIterator = null;
+        this.documentsChanged = 0;
+        this.documentsSkipped = 0;
+
+        this.finishNanos = 0;
+        this.startNanos = System.nanoTime();
+    }
+
+
+    /**
+     * Marks the end of the current harvest.
+     */
+    public void finish()
+    {
+        if (startNanos != 0 && finishNanos == 0)
+            this.finishNanos = System.nanoTime();
+    }
+
+
+    /**
+     * Records the duration of a phase that started at a specified time
+     * and ends now.
+     *
+     * @param phase the phase that ended
+     * @param phaseStartNanos the value of {@linkplain System#nanoTime()} when the phase started
+     */
+    public void record(final HarvestPhase phase, final long phaseStartNanos)
+    {
+        timers.get(phase).record(phaseStartNanos);
+    }
+
+
+    /**
+     * Returns the timer of a phase.
+     *
+     * @param phase the phase of which the timer is retrieved
+     *
+     * @return the timer of the phase
+     */
+    public PhaseTimer getTimer(final HarvestPhase phase)
+    {
+        return timers.get(phase);
+    }
+
+
+    /**
+     * Adds to the number of parsed CSV rows.
+     *
+     * @param rowCount the number of rows that were parsed
+     */
+    public void addRowsParsed(final long rowCount)
+    {
+        rowsParsed.add(rowCount);
+    }
+
+
+    /**
+     * Adds to the number of read CSV bytes.
+     *
+     * @param byteCount the number of bytes that were read
+     */
+    public void addBytesRead(final long byteCount)
+    {
+        bytesRead.add(byteCount);
+    }
+
+
+    /**
+     * Sets the iterator that prefetches the datasets of the current harvest,
+     * so that its queue can be watched while the harvest is running.
+     *
+     * @param prefetchingIterator the iterator that prefetches the datasets
+     */
+    public void setPrefetchingIterator(final PrefetchingIterator<?> prefetchingIterator)
+    {
+        this.prefetchingIterator = prefetchingIterator;
+    }
+
+
+    /**
+     * Sets the rate limiter of the GitHub API requests, so that the
+     * remaining request quota can be watched.
+     *
+     * @param rateLimiter the rate limiter of the GitHub API requests
+     */
+    public void setRateLimiter(final GitHubRateLimiter rateLimiter)
+    {
+        this.rateLimiter = rateLimiter;
+    }
+
+
+    /**
+     * Sets the numbers of documents that are harvested and skipped
+     * by the current harvest.
+     *
+     * @param documentsChanged the number of documents that changed since the last harvest
+     * @param documentsSkipped the number of unchanged documents that are skipped
+     */
+    public void setDocumentCounts(final int documentsChanged, final int documentsSkipped)
+    {
+        this.documentsChanged = documentsChanged;
+        this.documentsSkipped = documentsSkipped;
+    }
+
+
+    @Override
+    public long getElapsedMillis()
+    {
+        if (startNanos == 0)
+            return 0;
+
+        final long endNanos = finishNanos == 0 ? System.nanoTime() : finishNanos;
+        return TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos);
+    }
+
+
+    @Override
+    public long getRowsParsed()
+    {
+        return rowsParsed.sum();
+    }
+
+
+    @Override
+    public long getBytesRead()
+    {
+        return bytesRead.sum();
+    }
+
+
+    @Override
+    public long getDocumentsTransformed()
+    {
+        return timers.get(HarvestPhase.TRANSFORM).getCount();
+    }
+
+
+    @Override
+    public int getDocumentsChanged()
+    {
+        return documentsChanged;
+    }
+
+
+    @Override
+    public int getDocumentsSkipped()
+    {
+        return documentsSkipped;
+    }
+
+
+    @Override
+    public long getDocumentsLoaded()
+    {
+        return timers.get(HarvestPhase.LOAD).getCount();
+    }
+
+
+    @Override
+    public double getDocumentsPerSecond()
+    {
+        final long elapsedMillis = getElapsedMillis();
+        return elapsedMillis == 0
+               ? 0
+               : getDocumentsTransformed() * (double) TimeUnit.SECONDS.toMillis(1) / elapsedMillis;
+    }
+
+
+    @Override
+    public int getPrefetchQueueDepth()
+    {
+        final PrefetchingIterator<?> iter = prefetchingIterator;
+        return iter == null ? 0 : iter.getQueueDepth();
+    }
+
+
+    @Override
+    public int getPrefetchCapacity()
+    {
+        final PrefetchingIterator<?> iter = prefetchingIterator;
+        return iter == null ? 0 : iter.getCapacity();
+    }
+
+
+    @Override
+    public long getPrefetchProducerStallMillis()
+    {
+        final PrefetchingIterator<?> iter = prefetchingIterator;
+        return iter == null ? 0 : iter.getProducerStallMillis();
+    }
+
+
+    @Override
+    public long getPrefetchConsumerStallMillis()
+    {
+        final PrefetchingIterator<?> iter = prefetchingIterator;
+        return iter == null ? 0 : iter.getConsumerStallMillis();
+    }
+
+
+    @Override
+    public int getGitHubRequestLimit()
+    {
+        final GitHubRateLimiter limiter = rateLimiter;
+        return limiter == null ? -1 : limiter.getRequestLimit();
+    }
+
+
+    @Override
+    public int getGitHubRequestsRemaining()
+    {
+        final GitHubRateLimiter limiter = rateLimiter;
+        return limiter == null ? -1 : limiter.getRemainingRequests();
+    }
+
+
+    @Override
+    public int getGitHubRequestsThrottled()
+    {
+        final GitHubRateLimiter limiter = rateLimiter;
+        return limiter == null ? 0 : limiter.getThrottledCount();
+    }
+
+
+    @Override
+    public List<PhaseStatistics> getPhases()
+    {
+        final List<PhaseStatistics> phases = new ArrayList<>(timers.size());
+
+        for (final PhaseTimer timer : timers.values())
+            phases.add(timer.getStatistics());
+
+        return phases;
+    }
+
+
+    @Override
+    public String getSummary()
+    {
+        final StringBuilder phaseSummary = new StringBuilder();
+
+        for (final PhaseStatistics phase : getPhases()) {
+            if (phase.getCount() == 0)
+                continue;
+
+            phaseSummary.append(String.format(
+                                    Locale.ENGLISH,
+                                    SoepLoggingConstants.PHASE_METRICS,
+                                    phase.getPhase(),
+                                    phase.getCount(),
+                                    phase.getTotalMillis(),
+                                    phase.getMedianMillis(),
+                                    phase.getP99Millis(),
+                                    phase.getMaxMillis()));
+        }
+
+        return String.format(
+                   Locale.ENGLISH,
+                   SoepLoggingConstants.HARVEST_METRICS_SUMMARY,
+                   getDocumentsTransformed(),
+                   getElapsedMillis(),
+                   getDocumentsPerSecond(),
+                   getRowsParsed(),
+                   getBytesRead(),
+                   phaseSummary);
+    }
+
+
+    /**
+     * Publishes the metrics via the platform MBean server. If metrics with
+     * the same name were published before, for instance by a previous
+     * deployment of the harvester, they are replaced.
+     *
+     * @param etlName the name of the ETL of which the metrics are collected
+     */
+    public void registerMBean(final String etlName)
+    {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        try {
+            final ObjectName objectName = new ObjectName(String.format(SoepConstants.METRICS_MBEAN_NAME, etlName));
+
+            try {
+                server.registerMBean(this, objectName);
+            } catch (final InstanceAlreadyExistsException e) {
+                server.unregisterMBean(objectName);
+                server.registerMBean(this, objectName);
+            }
+
+        } catch (final JMException e) {
+            LOGGER.warn(String.format(SoepLoggingConstants.ERROR_REGISTERING_METRICS, e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.soep.metrics;
+
+import java.util.List;
+
+/**
+ * This interface defines the attributes of {@linkplain HarvestMetrics}
+ * that are published via JMX.
+ *
+ * @author Robin Weiss
+ */
+public interface HarvestMetricsMXBean
+{
+    /**
+     * Returns the time that passed since the current harvest started,
+     * or the duration of the last harvest if it is finished.
+     *
+     * @return the duration of the harvest in milliseconds
+     */
+    long getElapsedMillis();
+
+
+    /**
+     * Returns the number of CSV rows that were parsed during the harvest.
+     *
+     * @return the number of parsed CSV rows
+     */
+    long getRowsParsed();
+
+
+    /**
+     * Returns the number of CSV bytes that were read during the harvest.
+     *
+     * @return the number of read CSV bytes
+     */
+    long getBytesRead();
+
+
+    /**
+     * Returns the number of documents that were transformed during the harvest.
+     *
+     * @return the number of transformed documents
+     */
+    long getDocumentsTransformed();
+
+
+    /**
+     * Returns the number of documents that were passed on to the loader
+     * and loaded during the harvest.
+     *
+     * @return the number of loaded documents
+     */
+    long getDocumentsLoaded();
+
+
+    /**
+     * Returns the number of documents of the harvest whose inputs changed
+     * since the last harvest, not including removed documents.
+     *
+     * @return the number of changed documents
+     */
+    int getDocumentsChanged();
+
+
+    /**
+     * Returns the number of documents that are skipped by the harvest,
+     * because none of their inputs changed since the last harvest.
+     *
+     * @return the number of skipped documents
+     */
+    int getDocumentsSkipped();
+
+
+    /**
+     * Returns the average number of transformed documents per second
+     * since the harvest started.
+     *
+     * @return the number of transformed documents per second
+     */
+    double getDocumentsPerSecond();
+
+
+    /**
+     * Returns the number of datasets that are currently prefetched,
+     * or 0 if the datasets are not prefetched.
+     *
+     * @return the current depth of the prefetch queue
+     */
+    int getPrefetchQueueDepth();
+
+
+    /**
+     * Returns the max number of datasets that can be prefetched,
+     * or 0 if the datasets are not prefetched.
+     *
+     * @return the capacity of the prefetch queue
+     */
+    int getPrefetchCapacity();
+
+
+    /**
+     * Returns how long the prefetching thread waited, because the
+     * prefetch queue was full.
+     *
+     * @return the producer stall time in milliseconds
+     */
+    long getPrefetchProducerStallMillis();
+
+
+    /**
+     * Returns how long the transformation waited for the prefetching
+     * thread, because the prefetch queue was empty.
+     *
+     * @return the consumer stall time in milliseconds
+     */
+    long getPrefetchConsumerStallMillis();
+
+
+    /**
+     * Returns the max number of GitHub API requests per rate limit window,
+     * or -1 if it is unknown.
+     *
+     * @return the GitHub API request limit
+     */
+    int getGitHubRequestLimit();
+
+
+    /**
+     * Returns the number of GitHub API requests that remain
+     * until the quota is reset, or -1 if it is unknown.
+     *
+     * @return the remaining GitHub API requests
+     */
+    int getGitHubRequestsRemaining();
+
+
+    /**
+     * Returns the number of GitHub API requests that were throttled
+     * and had to be retried.
+     *
+     * @return the number of throttled GitHub API requests
+     */
+    int getGitHubRequestsThrottled();
+
+
+    /**
+     * Returns the statistics of all phases of the harvest.
+     *
+     * @return a list of statistics, one for each {@linkplain HarvestPhase}
+     */
+    List<PhaseStatistics> getPhases();
+
+
+    /**
+     * Summarizes the metrics in a single line.
+     *
+     * @return a summary of the metrics
+     */
+    String getSummary();
+}
@@ -0,0 +1,57 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.soep.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * This enumeration represents the phases of a SOEP harvest
+ * whose durations are measured by {@linkplain HarvestMetrics}.
+ *
+ * @author Robin Weiss
+ */
+@AllArgsConstructor
+public enum HarvestPhase
+{
+    // a request to the GitHub API, including the parsing of the JSON response
+    GITHUB_API("GitHub API request"),
+
+    // the time until the response headers of a CSV download were received
+    CSV_REQUEST("CSV request"),
+
+    // the parsing of a CSV file, including the download of its body if it is streamed
+    CSV_PARSE("CSV parsing"),
+
+    // the join of all variables with their concepts
+    CONCEPT_JOIN("concept join"),
+
+    // the assembly of a single extracted document
+    EXTRACT("extraction"),
+
+    // the transformation of a single document
+    TRANSFORM("transformation"),
+
+    // the time the loader spends on a single document until it asks for the next one
+    LOAD("loading");
+
+    /**
+     * The name of the phase in the harvest log.
+     */
+    @Getter
+    private final String displayName;
+}
@@ -0,0 +1,85 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.soep.metrics;
+
+import java.util.Iterator;
+
+/**
+ * This {@linkplain Iterator} passes on the transformed documents to the loader,
+ * and measures how long the loader takes for each document. The duration
+ * of the {@linkplain HarvestPhase#LOAD} phase starts when a document is
+ * returned, and ends when the loader asks for the next document.
+ *
+ * @param <T> the type of the loaded documents
+ *
+ * @author Robin Weiss
+ */
+public class LoadTimingIterator<T> implements Iterator<T>
+{
+    private final Iterator<T> source;
+    private final HarvestMetrics harvestMetrics;
+
+    private boolean isLoading;
+    private long loadStartNanos;
+
+
+    /**
+     * Constructor that requires the documents that are to be loaded.
+     *
+     * @param source an iterator of transformed documents
+     * @param harvestMetrics the metrics to which the load durations are added
+     */
+    public LoadTimingIterator(final Iterator<T> source, final HarvestMetrics harvestMetrics)
+    {
+        this.source = source;
+        this.harvestMetrics = harvestMetrics;
+    }
+
+
+    @Override
+    public boolean hasNext()
+    {
+        recordLoad();
+        return source.hasNext();
+    }
+
+
+    @Override
+    public T next()
+    {
+        recordLoad();
+        final T document = source.next();
+
+        this.isLoading = true;
+        this.loadStartNanos = System.nanoTime();
+
+        return document;
+    }
+
+
+    /**
+     * Records the duration of loading the previously returned document,
+     * if there is one.
+     */
+    private void recordLoad()
+    {
+        if (isLoading) {
+            harvestMetrics.record(HarvestPhase.LOAD, loadStartNanos);
+            this.isLoading = false;
+        }
+    }
+}
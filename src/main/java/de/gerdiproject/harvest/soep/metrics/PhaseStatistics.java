@@ -0,0 +1,39 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.soep.metrics;
+
+import lombok.Value;
+
+/**
+ * This value object holds the statistics of a {@linkplain HarvestPhase}
+ * at the time it was created. All durations are in milliseconds, and
+ * percentiles are estimates of a {@linkplain PhaseTimer} histogram.
+ *
+ * @author Robin Weiss
+ */
+@Value
+public class PhaseStatistics
+{
+    private final String phase;
+    private final long count;
+    private final double totalMillis;
+    private final double meanMillis;
+    private final double medianMillis;
+    private final double p90Millis;
+    private final double p99Millis;
+    private final double maxMillis;
+}
@@ -0,0 +1,184 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.soep.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class measures the durations of a {@linkplain HarvestPhase}. Besides
+ * the number, total and maximum of the durations, it keeps a histogram
+ * with power-of-two buckets of microseconds, from which percentiles
+ * can be estimated. It can be accessed by multiple threads without locking.
+ *
+ * @author Robin Weiss
+ */
+public class PhaseTimer
+{
+    // bucket i counts durations of less than 2^i microseconds, the last bucket counts all longer durations
+    private static final int BUCKET_COUNT = 40;
+
+    private final HarvestPhase phase;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+
+    /**
+     * Constructor that requires the measured phase.
+     *
+     * @param phase the phase of which the durations are measured
+     */
+    public PhaseTimer(final HarvestPhase phase)
+    {
+        this.phase = phase;
+    }
+
+
+    /**
+     * Records the duration of a phase that started at a specified time
+     * and ends now.
+     *
+     * @param startNanos the value of {@linkplain System#nanoTime()} when the phase started
+     */
+    public void record(final long startNanos)
+    {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+
+
+    /**
+     * Records the duration of a phase.
+     *
+     * @param durationNanos the duration in nanoseconds
+     */
+    public void recordNanos(final long durationNanos)
+    {
+        final long duration = Math.max(durationNanos, 0);
+        final long micros = TimeUnit.NANOSECONDS.toMicros(duration);
+        final int bucket = Math.min(Long.SIZE - Long.numberOfLeadingZeros(micros), BUCKET_COUNT - 1);
+
+        count.increment();
+        totalNanos.add(duration);
+        maxNanos.accumulate(duration);
+        buckets.incrementAndGet(bucket);
+    }
+
+
+    /**
+     * Removes all recorded durations.
+     */
+    public void reset()
+    {
+        count.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+
+        for (int i = 0; i < BUCKET_COUNT; i++)
+            buckets.set(i, 0);
+    }
+
+
+    /**
+     * Returns the number of recorded durations.
+     *
+     * @return the number of times the phase was measured
+     */
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+
+    /**
+     * Estimates a percentile of the recorded durations. The estimate is the
+     * upper bound of the histogram bucket that contains the percentile,
+     * but never more than the maximum duration.
+     *
+     * @param percentile a percentile between 0 and 100
+     *
+     * @return the estimated percentile in milliseconds, or 0 if nothing was recorded
+     */
+    public double getPercentileMillis(final double percentile)
+    {
+        long total = 0;
+        final long[] counts = new long[BUCKET_COUNT];
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+
+        if (total == 0)
+            return 0;
+
+        final long rank = Math.max((long) Math.ceil(total * percentile / 100), 1);
+        long cumulativeCount = 0;
+        int bucket = 0;
+
+        for (; bucket < BUCKET_COUNT - 1; bucket++) {
+            cumulativeCount += counts[bucket];
+
+            if (cumulativeCount >= rank)
+                break;
+        }
+
+        final long upperBoundNanos = bucket == BUCKET_COUNT - 1
+                                     ? Long.MAX_VALUE
+                                     : TimeUnit.MICROSECONDS.toNanos(1L << bucket);
+
+        return toMillis(Math.min(upperBoundNanos, maxNanos.get()));
+    }
+
+
+    /**
+     * Creates an immutable snapshot of the recorded durations.
+     *
+     * @return the statistics of the phase
+     */
+    public PhaseStatistics getStatistics()
+    {
+        final long phaseCount = count.sum();
+        final long phaseNanos = totalNanos.sum();
+
+        return new PhaseStatistics(
+                   phase.getDisplayName(),
+                   phaseCount,
+                   toMillis(phaseNanos),
+                   phaseCount == 0 ? 0 : toMillis(phaseNanos) / phaseCount,
+                   getPercentileMillis(50),
+                   getPercentileMillis(90),
+                   getPercentileMillis(99),
+                   toMillis(maxNanos.get()));
+    }
+
+
+    /**
+     * Converts nanoseconds to fractional milliseconds.
+     *
+     * @param nanos a duration in nanoseconds
+     *
+     * @return the duration in milliseconds
+     */
+    private static double toMillis(final long nanos)
+    {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.soep.store;
+
+import java.util.Objects;
+
+import com.google.gson.annotations.JsonAdapter;
+
+import de.gerdiproject.harvest.soep.csv.ConceptMetadata;
+
+/**
+ * This class is a lightweight view of the variables of a single SOEP dataset,
+ * which occupy a consecutive range of rows in a {@linkplain VariableStore}.
+ *
+ * @author Robin Weiss
+ */
+@JsonAdapter(DatasetVariablesAdapterFactory.class)
+public class DatasetVariables
+{
+    private final VariableStore store;
+    private final int startRow;
+    private final int endRow;
+
+
+    /**
+     * Constructor that requires the range of rows of the dataset.
+     *
+     * @param store the store that contains the variables
+     * @param startRow the first row of the dataset
+     * @param endRow the row after the last row of the dataset
+     */
+    DatasetVariables(final VariableStore store, final int startRow, final int endRow)
+    {
+        this.store = store;
+        this.startRow = startRow;
+        this.endRow = endRow;
+    }
+
+
+    /**
+     * Returns the number of variables of the dataset.
+     *
+     * @return the number of variables of the dataset
+     */
+    public int size()
+    {
+        return endRow - startRow;
+    }
+
+
+    /**
+     * Returns a view of a consecutive range of the variables of the dataset.
+     *
+     * @param fromIndex the index of the first variable of the range
+     * @param toIndex the index after the last variable of the range
+     *
+     * @throws IndexOutOfBoundsException if the range is not within the dataset
+     *
+     * @return a view of the range of variables
+     */
+    public DatasetVariables slice(final int fromIndex, final int toIndex)
+    {
+        if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex)
+            throw new IndexOutOfBoundsException(fromIndex + ", " + toIndex);
+
+        return new DatasetVariables(store, startRow + fromIndex, startRow + toIndex);
+    }
+
+
+    /**
+     * Returns the name of a variable.
+     *
+     * @param index the zero-based index of the variable within the dataset
+     *
+     * @return the name of the variable
+     */
+    public String getVariableName(final int index)
+    {
+        return store.getVariableName(getRow(index));
+    }
+
+
+    /**
+     * Returns the concept name of a variable.
+     *
+     * @param index the zero-based index of the variable within the dataset
+     *
+     * @return the concept name of the variable, or an empty string
+     */
+    public String getConceptName(final int index)
+    {
+        return store.getConceptName(getRow(index));
+    }
+
+
+    /**
+     * Returns the concept metadata of a variable, which is joined
+     * when the variables are loaded.
+     *
+     * @param index the zero-based index of the variable within the dataset
+     *
+     * @return the concept metadata of the variable, or null if the variable has no known concept
+     */
+    public ConceptMetadata getConcept(final int index)
+    {
+        return store.getConcept(getRow(index));
+    }
+
+
+    /**
+     * Returns the source of a variable.
+     *
+     * @param index the zero-based index of the variable within the dataset
+     *
+     * @return the source of the variable
+     */
+    public String getSource(final int index)
+    {
+        return store.getSource(getRow(index));
+    }
+
+
+    /**
+     * Converts an index within the dataset to a row of the store.
+     *
+     * @param index the zero-based index of a variable within the dataset
+     *
+     * @return the row of the variable in the store
+     */
+    private int getRow(final int index)
+    {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+
+        return startRow + index;
+    }
+
+
+    @Override
+    public boolean equals(final Object other)
+    {
+        if (this == other)
+            return true;
+
+        if (!(other instanceof DatasetVariables))
+            return false;
+
+        final DatasetVariables otherVariables = (DatasetVariables) other;
+        final int size = size();
+
+        if (size != otherVariables.size())
+            return false;
+
+        for (int i = 0; i < size; i++) {
+            if (!getVariableName(i).equals(otherVariables.getVariableName(i))
+                || !getConceptName(i).equals(otherVariables.getConceptName(i))
+                || !getSource(i).equals(otherVariables.getSource(i))
+                || !Objects.equals(getConcept(i), otherVariables.getConcept(i)))
+                return false;
+        }
+
+        return true;
+    }
+
+
+    @Override
+    public int hashCode()
+    {
+        int hash = 1;
+
+        for (int i = 0; i < size(); i++) {
+            hash = 31 * hash + getVariableName(i).hashCode();
+            hash = 31 * hash + getConceptName(i).hashCode();
+            hash = 31 * hash + getSource(i).hashCode();
+            hash = 31 * hash + Objects.hashCode(getConcept(i));
+        }
+
+        return hash;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.soep.store;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import de.gerdiproject.harvest.soep.csv.ConceptMetadata;
+
+/**
+ * This factory creates an adapter that (de-)serializes {@linkplain DatasetVariables}
+ * as a JSON array of variable objects, instead of serializing the whole
+ * {@linkplain VariableStore} that is referenced by the view.
+ * Each variable object contains the metadata of its joined concept.
+ *
+ * @author Robin Weiss
+ */
+public class DatasetVariablesAdapterFactory implements TypeAdapterFactory
+{
+    private static final String VARIABLE_NAME_KEY = "variableName";
+    private static final String CONCEPT_NAME_KEY = "conceptName";
+    private static final String SOURCE_KEY = "source";
+    private static final String CONCEPT_KEY = "concept";
+
+    // deserialized variables are stored in a dedicated store with a single dataset
+    private static final String DESERIALIZED_DATASET_NAME = "";
+
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> TypeAdapter<T> create(final Gson gson, final TypeToken<T> type)
+    {
+        if (!DatasetVariables.class.isAssignableFrom(type.getRawType()))
+            return null;
+
+        return (TypeAdapter<T>) new DatasetVariablesAdapter(gson.getAdapter(ConceptMetadata.class));
+    }
+
+
+    /**
+     * This adapter (de-)serializes {@linkplain DatasetVariables}.
+     *
+     * @author Robin Weiss
+     */
+    private static class DatasetVariablesAdapter extends TypeAdapter<DatasetVariables>
+    {
+        private final TypeAdapter<ConceptMetadata> conceptAdapter;
+
+
+        /**
+         * Constructor that requires an adapter for concept metadata.
+         *
+         * @param conceptAdapter an adapter that (de-)serializes {@linkplain ConceptMetadata}
+         */
+        DatasetVariablesAdapter(final TypeAdapter<ConceptMetadata> conceptAdapter)
+        {
+            this.conceptAdapter = conceptAdapter;
+        }
+
+
+        @Override
+        public void write(final JsonWriter out, final DatasetVariables variables) throws IOException
+        {
+            if (variables == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginArray();
+
+            for (int i = 0; i < variables.size(); i++) {
+                out.beginObject();
+                out.name(VARIABLE_NAME_KEY).value(variables.getVariableName(i));
+                out.name(CONCEPT_NAME_KEY).value(variables.getConceptName(i));
+                out.name(SOURCE_KEY).value(variables.getSource(i));
+
+                final ConceptMetadata concept = variables.getConcept(i);
+
+                if (concept != null) {
+                    out.name(CONCEPT_KEY);
+                    conceptAdapter.write(out, concept);
+                }
+
+                out.endObject();
+            }
+
+            out.endArray();
+        }
+
+
+        @Override
+        public DatasetVariables read(final JsonReader in) throws IOException
+        {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            final VariableStore store = new VariableStore();
+            final Map<String, ConceptMetadata> concepts = new HashMap<>();
+            in.beginArray();
+
+            while (in.hasNext()) {
+                String variableName = "";
+                String conceptName = "";
+                String source = "";
+
+                in.beginObject();
+
+                while (in.hasNext()) {
+                    final String key = in.nextName();
+
+                    if (VARIABLE_NAME_KEY.equals(key))
+                        variableName = in.nextString();
+                    else if (CONCEPT_NAME_KEY.equals(key))
+                        conceptName = in.nextString();
+                    else if (SOURCE_KEY.equals(key))
+                        source = in.nextString();
+                    else if (CONCEPT_KEY.equals(key)) {
+                        final ConceptMetadata concept = conceptAdapter.read(in);
+
+                        if (concept != null)
+                            concepts.put(concept.getConceptName(), concept);
+                    } else
+                        in.skipValue();
+                }
+
+                in.endObject();
+                store.add(DESERIALIZED_DATASET_NAME, variableName, conceptName, source);
+            }
+
+            in.endArray();
+            store.finish();
+            store.joinConcepts(concepts);
+
+            return store.getDatasetVariables(DESERIALIZED_DATASET_NAME);
+        }
+    }
+}
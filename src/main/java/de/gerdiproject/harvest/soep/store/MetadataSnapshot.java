@@ -0,0 +1,274 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.soep.store;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import de.gerdiproject.harvest.soep.constants.SoepLoggingConstants;
+import de.gerdiproject.harvest.soep.csv.DatasetMetadata;
+import de.gerdiproject.harvest.utils.csv.ArrayCsvRow;
+import lombok.Value;
+
+/**
+ * This class represents a binary snapshot of the parsed SOEP metadata, which
+ * consists of the dataset metadata and a finished {@linkplain VariableStore}
+ * with joined concepts. Snapshots belong to a specific commit of the SOEP
+ * repository, and can be read from a single memory-mapped file instead of
+ * downloading and parsing the CSV files.
+ * <br>
+ * The file starts with a header of a magic number, the format version, the
+ * commit hash, the length of the body, and a CRC32 checksum of the body.
+ * Snapshots with a different format version or commit hash are out of date,
+ * and snapshots with a wrong length or checksum are corrupt.
+ *
+ * @author Robin Weiss
+ */
+@Value
+public class MetadataSnapshot
+{
+    // "SOEPSNAP" in ASCII
+    private static final long MAGIC_NUMBER = 0x534F4550534E4150L;
+    private static final int FORMAT_VERSION = 1;
+    private static final int BUFFER_SIZE = 65536;
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    private final Map<String, DatasetMetadata> datasets;
+    private final VariableStore variableStore;
+
+
+    /**
+     * Writes a snapshot of the SOEP metadata to a file.
+     * The file is replaced only after the whole snapshot was written.
+     *
+     * @param file the file to which the snapshot is written
+     * @param commitHash the hash of the commit from which the metadata was parsed
+     * @param datasets the metadata of all datasets, mapped by dataset name
+     * @param variableStore a finished variable store with joined concepts
+     *
+     * @throws IOException if the snapshot could not be written
+     */
+    public static void write(final File file, final String commitHash, final Map<String, DatasetMetadata> datasets, final VariableStore variableStore)
+    throws IOException
+    {
+        final File tempFile = new File(file.getPath() + TEMP_FILE_SUFFIX);
+        final File parentFolder = tempFile.getAbsoluteFile().getParentFile();
+
+        if (!parentFolder.exists() && !parentFolder.mkdirs())
+            throw new IOException(parentFolder.getPath() + SoepLoggingConstants.DIR_NOT_CREATED);
+
+        try
+            (FileChannel channel = FileChannel.open(
+                                       tempFile.toPath(),
+                                       StandardOpenOption.CREATE,
+                                       StandardOpenOption.TRUNCATE_EXISTING,
+                                       StandardOpenOption.WRITE)) {
+            final byte[] commitHashBytes = commitHash.getBytes(StandardCharsets.UTF_8);
+
+            // the body length and checksum are unknown until the body is written
+            final ByteBuffer header = ByteBuffer.allocate(Long.BYTES + 2 * Integer.BYTES + commitHashBytes.length + 2 * Long.BYTES);
+            header.putLong(MAGIC_NUMBER);
+            header.putInt(FORMAT_VERSION);
+            header.putInt(commitHashBytes.length);
+            header.put(commitHashBytes);
+            final int bodyInfoPosition = header.position();
+            header.putLong(0L);
+            header.putLong(0L);
+            header.flip();
+            channel.write(header);
+
+            final CRC32 checksum = new CRC32();
+            final DataOutputStream body = new DataOutputStream(
+                new BufferedOutputStream(
+                    new CheckedOutputStream(Channels.newOutputStream(channel), checksum),
+                    BUFFER_SIZE));
+
+            writeDatasets(body, datasets);
+            variableStore.write(body);
+            body.flush();
+
+            final ByteBuffer bodyInfo = ByteBuffer.allocate(2 * Long.BYTES);
+            bodyInfo.putLong(channel.position() - header.limit());
+            bodyInfo.putLong(checksum.getValue());
+            bodyInfo.flip();
+            channel.write(bodyInfo, bodyInfoPosition);
+        }
+
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+
+    /**
+     * Reads a snapshot of the SOEP metadata from a memory-mapped file.
+     *
+     * @param file the file of the snapshot
+     * @param commitHash the hash of the commit of which the metadata is required
+     *
+     * @throws IOException if the snapshot could not be read, or if it
+     * is corrupt or out of date
+     *
+     * @return the metadata of the snapshot
+     */
+    public static MetadataSnapshot read(final File file, final String commitHash) throws IOException
+    {
+        try
+            (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            try {
+                if (buffer.getLong() != MAGIC_NUMBER || buffer.getInt() != FORMAT_VERSION)
+                    throw new IOException(String.format(SoepLoggingConstants.SNAPSHOT_OUTDATED_ERROR, file.getPath()));
+
+                if (!commitHash.equals(readString(buffer)))
+                    throw new IOException(String.format(SoepLoggingConstants.SNAPSHOT_OUTDATED_ERROR, file.getPath()));
+
+                final long bodyLength = buffer.getLong();
+                final long expectedChecksum = buffer.getLong();
+
+                if (bodyLength != buffer.remaining())
+                    throw new IOException(String.format(SoepLoggingConstants.SNAPSHOT_CORRUPT_ERROR, file.getPath()));
+
+                final CRC32 checksum = new CRC32();
+                checksum.update(buffer.slice());
+
+                if (checksum.getValue() != expectedChecksum)
+                    throw new IOException(String.format(SoepLoggingConstants.SNAPSHOT_CORRUPT_ERROR, file.getPath()));
+
+                final Map<String, DatasetMetadata> datasets = readDatasets(buffer);
+                final VariableStore variableStore = VariableStore.read(buffer);
+
+                return new MetadataSnapshot(datasets, variableStore);
+
+            } catch (final BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new IOException(String.format(SoepLoggingConstants.SNAPSHOT_CORRUPT_ERROR, file.getPath()), e);
+            }
+        }
+    }
+
+
+    /**
+     * Writes a string that may be null.
+     *
+     * @param output the output to which the string is written
+     * @param value the string to be written, or null
+     *
+     * @throws IOException if the string could not be written
+     */
+    static void writeString(final DataOutput output, final String value) throws IOException
+    {
+        if (value == null)
+            output.writeInt(-1);
+        else {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+
+    /**
+     * Reads a string that was written via {@linkplain #writeString(DataOutput, String)}.
+     *
+     * @param input the buffer from which the string is read
+     *
+     * @return the string, or null
+     */
+    static String readString(final ByteBuffer input)
+    {
+        final int length = input.getInt();
+
+        if (length == -1)
+            return null;
+
+        final byte[] bytes = new byte[length];
+        input.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Writes the metadata of all datasets.
+     *
+     * @param output the output to which the metadata is written
+     * @param datasets the metadata of all datasets
+     *
+     * @throws IOException if the metadata could not be written
+     */
+    private static void writeDatasets(final DataOutput output, final Map<String, DatasetMetadata> datasets) throws IOException
+    {
+        output.writeInt(datasets.size());
+
+        for (final DatasetMetadata dataset : datasets.values()) {
+            writeString(output, dataset.getStudyName());
+            writeString(output, dataset.getDatasetName());
+            writeString(output, dataset.getPeriodName());
+            writeString(output, dataset.getAnalysisUnitName());
+            writeString(output, dataset.getConceptualDatasetName());
+            writeString(output, dataset.getLabel());
+            writeString(output, dataset.getDescription());
+        }
+    }
+
+
+    /**
+     * Reads the metadata of all datasets.
+     *
+     * @param input the buffer from which the metadata is read
+     *
+     * @return the metadata of all datasets, mapped by dataset name
+     */
+    private static Map<String, DatasetMetadata> readDatasets(final ByteBuffer input)
+    {
+        final int datasetCount = input.getInt();
+        final Map<String, DatasetMetadata> datasets = new HashMap<>();
+
+        for (int i = 0; i < datasetCount; i++) {
+            final DatasetMetadata dataset = new DatasetMetadata(new ArrayCsvRow(
+                                                                    readString(input),
+                                                                    readString(input),
+                                                                    readString(input),
+                                                                    readString(input),
+                                                                    readString(input),
+                                                                    readString(input),
+                                                                    readString(input)));
+            datasets.put(dataset.getDatasetName(), dataset);
+        }
+
+        return datasets;
+    }
+}
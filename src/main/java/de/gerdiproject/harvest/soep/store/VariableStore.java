@@ -0,0 +1,439 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.soep.store;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import de.gerdiproject.harvest.soep.csv.ConceptMetadata;
+import de.gerdiproject.harvest.utils.StringDictionary;
+import de.gerdiproject.harvest.utils.csv.ArrayCsvRow;
+
+/**
+ * This class stores the variables of all SOEP datasets in a columnar layout.
+ * The dataset, concept, and source of each variable are dictionary-encoded
+ * as integer columns. Variable names are mostly unique, and are therefore
+ * stored as they are. After all variables were added, {@linkplain #finish()} sorts
+ * the variables by dataset, so that the variables of each dataset occupy a
+ * consecutive range of rows that can be retrieved as {@linkplain DatasetVariables}.
+ * <br>
+ * The concepts of all variables are joined once via {@linkplain #joinConcepts(Map)},
+ * which maps the concept IDs of the concept column to {@linkplain ConceptMetadata}.
+ *
+ * @author Robin Weiss
+ */
+public class VariableStore
+{
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final StringDictionary datasetNames = new StringDictionary();
+    private final StringDictionary conceptNames = new StringDictionary();
+    private final StringDictionary sources = new StringDictionary();
+
+    private int[] datasetColumn = new int[INITIAL_CAPACITY];
+    private String[] variableColumn = new String[INITIAL_CAPACITY];
+    private int[] conceptColumn = new int[INITIAL_CAPACITY];
+    private int[] sourceColumn = new int[INITIAL_CAPACITY];
+    private int size;
+
+    // the first row of each dataset, followed by the total number of rows
+    private int[] datasetOffsets;
+
+    // the concept metadata of each concept ID
+    private ConceptMetadata[] concepts = new ConceptMetadata[0];
+
+
+    /**
+     * Adds a variable to the store.
+     *
+     * @param datasetName the name of the dataset that contains the variable
+     * @param variableName the name of the variable
+     * @param conceptName the name of the concept of the variable, or an empty string
+     * @param source the source of the variable
+     *
+     * @throws IllegalStateException if the store is already finished
+     */
+    public void add(final String datasetName, final String variableName, final String conceptName, final String source)
+    {
+        if (datasetOffsets != null)
+            throw new IllegalStateException();
+
+        if (size == datasetColumn.length) {
+            final int newCapacity = size * 2;
+            datasetColumn = Arrays.copyOf(datasetColumn, newCapacity);
+            variableColumn = Arrays.copyOf(variableColumn, newCapacity);
+            conceptColumn = Arrays.copyOf(conceptColumn, newCapacity);
+            sourceColumn = Arrays.copyOf(sourceColumn, newCapacity);
+        }
+
+        datasetColumn[size] = datasetNames.getId(datasetName);
+        variableColumn[size] = variableName;
+        conceptColumn[size] = conceptNames.getId(conceptName);
+        sourceColumn[size] = sources.getId(source);
+        size++;
+    }
+
+
+    /**
+     * Groups all variables by dataset, preserving the order in which the variables
+     * of each dataset were added. No variables can be added afterwards.
+     */
+    public void finish()
+    {
+        if (datasetOffsets != null)
+            return;
+
+        final int datasetCount = datasetNames.size();
+
+        // count the variables of each dataset
+        final int[] offsets = new int[datasetCount + 1];
+
+        for (int row = 0; row < size; row++)
+            offsets[datasetColumn[row] + 1]++;
+
+        for (int dataset = 0; dataset < datasetCount; dataset++)
+            offsets[dataset + 1] += offsets[dataset];
+
+        // copy the rows to their sorted positions
+        final int[] nextRows = Arrays.copyOf(offsets, datasetCount);
+        final String[] sortedVariables = new String[size];
+        final int[] sortedConcepts = new int[size];
+        final int[] sortedSources = new int[size];
+
+        for (int row = 0; row < size; row++) {
+            final int sortedRow = nextRows[datasetColumn[row]]++;
+            sortedVariables[sortedRow] = variableColumn[row];
+            sortedConcepts[sortedRow] = conceptColumn[row];
+            sortedSources[sortedRow] = sourceColumn[row];
+        }
+
+        // the dataset of each row is defined by the offsets from now on
+        this.datasetColumn = null;
+        this.variableColumn = sortedVariables;
+        this.conceptColumn = sortedConcepts;
+        this.sourceColumn = sortedSources;
+        this.datasetOffsets = offsets;
+    }
+
+
+    /**
+     * Resolves the concepts of all variables by mapping each concept ID
+     * to its metadata. Concepts that are unknown or empty remain unresolved.
+     *
+     * @param conceptMap a map of concept names to concept metadata
+     */
+    public void joinConcepts(final Map<String, ConceptMetadata> conceptMap)
+    {
+        final ConceptMetadata[] joinedConcepts = new ConceptMetadata[conceptNames.size()];
+
+        for (int conceptId = 0; conceptId < joinedConcepts.length; conceptId++) {
+            final String conceptName = conceptNames.getValue(conceptId);
+
+            if (!conceptName.isEmpty())
+                joinedConcepts[conceptId] = conceptMap.get(conceptName);
+        }
+
+        this.concepts = joinedConcepts;
+    }
+
+
+    /**
+     * Retrieves a view of all variables of a dataset.
+     *
+     * @param datasetName the name of the dataset
+     *
+     * @throws IllegalStateException if the store is not finished yet
+     *
+     * @return the variables of the dataset, which are empty if the dataset is unknown
+     */
+    public DatasetVariables getDatasetVariables(final String datasetName)
+    {
+        if (datasetOffsets == null)
+            throw new IllegalStateException();
+
+        final int dataset = datasetNames.findId(datasetName);
+
+        // unknown datasets have no variables
+        if (dataset == -1)
+            return new DatasetVariables(this, 0, 0);
+
+        return new DatasetVariables(this, datasetOffsets[dataset], datasetOffsets[dataset + 1]);
+    }
+
+
+    /**
+     * Retrieves the names of all datasets that have at least one variable
+     * of the specified concepts.
+     *
+     * @param searchedConcepts the names of the concepts
+     *
+     * @throws IllegalStateException if the store is not finished yet
+     *
+     * @return the names of the datasets that use the concepts
+     */
+    public Set<String> getDatasetsOfConcepts(final Collection<String> searchedConcepts)
+    {
+        if (datasetOffsets == null)
+            throw new IllegalStateException();
+
+        final boolean[] isSearched = new boolean[conceptNames.size()];
+
+        for (final String conceptName : searchedConcepts) {
+            final int conceptId = conceptNames.findId(conceptName);
+
+            if (conceptId != -1)
+                isSearched[conceptId] = true;
+        }
+
+        final Set<String> datasets = new HashSet<>();
+        final int datasetCount = datasetOffsets.length - 1;
+
+        for (int dataset = 0; dataset < datasetCount; dataset++) {
+            for (int row = datasetOffsets[dataset]; row < datasetOffsets[dataset + 1]; row++) {
+                if (isSearched[conceptColumn[row]]) {
+                    datasets.add(datasetNames.getValue(dataset));
+                    break;
+                }
+            }
+        }
+
+        return datasets;
+    }
+
+
+    /**
+     * Checks if the store contains variables of a dataset.
+     *
+     * @param datasetName the name of the dataset
+     *
+     * @return true if at least one variable belongs to the dataset
+     */
+    public boolean containsDataset(final String datasetName)
+    {
+        return datasetNames.findId(datasetName) != -1;
+    }
+
+
+    /**
+     * Checks if the store contains variables of a concept.
+     *
+     * @param conceptName the name of the concept
+     *
+     * @return true if at least one variable belongs to the concept
+     */
+    public boolean containsConcept(final String conceptName)
+    {
+        return conceptNames.findId(conceptName) != -1;
+    }
+
+
+    /**
+     * Returns the total number of variables in the store.
+     *
+     * @return the total number of variables
+     */
+    public int size()
+    {
+        return size;
+    }
+
+
+    /**
+     * Returns the name of the variable in a specified row.
+     *
+     * @param row the row of the variable
+     *
+     * @return the name of the variable
+     */
+    String getVariableName(final int row)
+    {
+        return variableColumn[row];
+    }
+
+
+    /**
+     * Returns the concept name of the variable in a specified row.
+     *
+     * @param row the row of the variable
+     *
+     * @return the concept name of the variable, or an empty string
+     */
+    String getConceptName(final int row)
+    {
+        return conceptNames.getValue(conceptColumn[row]);
+    }
+
+
+    /**
+     * Returns the concept metadata of the variable in a specified row.
+     *
+     * @param row the row of the variable
+     *
+     * @return the concept metadata of the variable, or null if the concept
+     * is not joined or unknown
+     */
+    ConceptMetadata getConcept(final int row)
+    {
+        final int conceptId = conceptColumn[row];
+        return conceptId < concepts.length ? concepts[conceptId] : null;
+    }
+
+
+    /**
+     * Returns the source of the variable in a specified row.
+     *
+     * @param row the row of the variable
+     *
+     * @return the source of the variable
+     */
+    String getSource(final int row)
+    {
+        return sources.getValue(sourceColumn[row]);
+    }
+
+
+    /**
+     * Writes the finished store, including its joined concepts, to a snapshot.
+     *
+     * @param output the output to which the store is written
+     *
+     * @throws IOException if the store could not be written
+     * @throws IllegalStateException if the store is not finished yet
+     */
+    void write(final DataOutput output) throws IOException
+    {
+        if (datasetOffsets == null)
+            throw new IllegalStateException();
+
+        writeDictionary(output, datasetNames);
+        writeDictionary(output, conceptNames);
+        writeDictionary(output, sources);
+
+        output.writeInt(size);
+
+        for (int row = 0; row < size; row++) {
+            MetadataSnapshot.writeString(output, variableColumn[row]);
+            output.writeInt(conceptColumn[row]);
+            output.writeInt(sourceColumn[row]);
+        }
+
+        output.writeInt(datasetOffsets.length);
+
+        for (final int offset : datasetOffsets)
+            output.writeInt(offset);
+
+        output.writeInt(concepts.length);
+
+        for (final ConceptMetadata concept : concepts) {
+            output.writeBoolean(concept != null);
+
+            if (concept != null) {
+                MetadataSnapshot.writeString(output, concept.getConceptName());
+                MetadataSnapshot.writeString(output, concept.getTopic());
+                MetadataSnapshot.writeString(output, concept.getTopicName());
+                MetadataSnapshot.writeString(output, concept.getLabelDE());
+                MetadataSnapshot.writeString(output, concept.getLabel());
+            }
+        }
+    }
+
+
+    /**
+     * Reads a finished store that was written via {@linkplain #write(DataOutput)}.
+     *
+     * @param input the buffer from which the store is read
+     *
+     * @return a finished store with joined concepts
+     */
+    static VariableStore read(final ByteBuffer input)
+    {
+        final VariableStore store = new VariableStore();
+        readDictionary(input, store.datasetNames);
+        readDictionary(input, store.conceptNames);
+        readDictionary(input, store.sources);
+
+        final int size = input.getInt();
+        store.size = size;
+        store.datasetColumn = null;
+        store.variableColumn = new String[size];
+        store.conceptColumn = new int[size];
+        store.sourceColumn = new int[size];
+
+        for (int row = 0; row < size; row++) {
+            store.variableColumn[row] = MetadataSnapshot.readString(input);
+            store.conceptColumn[row] = input.getInt();
+            store.sourceColumn[row] = input.getInt();
+        }
+
+        store.datasetOffsets = new int[input.getInt()];
+
+        for (int i = 0; i < store.datasetOffsets.length; i++)
+            store.datasetOffsets[i] = input.getInt();
+
+        store.concepts = new ConceptMetadata[input.getInt()];
+
+        for (int i = 0; i < store.concepts.length; i++) {
+            if (input.get() != 0)
+                store.concepts[i] = new ConceptMetadata(new ArrayCsvRow(
+                                                            MetadataSnapshot.readString(input),
+                                                            MetadataSnapshot.readString(input),
+                                                            MetadataSnapshot.readString(input),
+                                                            MetadataSnapshot.readString(input),
+                                                            MetadataSnapshot.readString(input)));
+        }
+
+        return store;
+    }
+
+
+    /**
+     * Writes all strings of a dictionary in the order of their IDs.
+     *
+     * @param output the output to which the dictionary is written
+     * @param dictionary the dictionary to be written
+     *
+     * @throws IOException if the dictionary could not be written
+     */
+    private static void writeDictionary(final DataOutput output, final StringDictionary dictionary) throws IOException
+    {
+        output.writeInt(dictionary.size());
+
+        for (int id = 0; id < dictionary.size(); id++)
+            MetadataSnapshot.writeString(output, dictionary.getValue(id));
+    }
+
+
+    /**
+     * Reads all strings of a dictionary, restoring their IDs.
+     *
+     * @param input the buffer from which the dictionary is read
+     * @param dictionary an empty dictionary that is filled
+     */
+    private static void readDictionary(final ByteBuffer input, final StringDictionary dictionary)
+    {
+        final int dictionarySize = input.getInt();
+
+        for (int id = 0; id < dictionarySize; id++)
+            dictionary.getId(MetadataSnapshot.readString(input));
+    }
+}
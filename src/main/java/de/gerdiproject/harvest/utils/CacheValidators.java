@@ -0,0 +1,44 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.utils;
+
+import lombok.Data;
+
+/**
+ * This class represents the HTTP validators of a cached web response,
+ * which are used to send conditional requests.
+ *
+ * @author Robin Weiss
+ */
+@Data
+public class CacheValidators
+{
+    private String eTag;
+    private String lastModified;
+
+
+    /**
+     * Checks if there is at least one validator that can be
+     * used for a conditional request.
+     *
+     * @return true if an ETag or a Last-Modified date is set
+     */
+    public boolean isEmpty()
+    {
+        return eTag == null && lastModified == null;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This {@linkplain InputStream} counts the bytes that are read from
+ * a source stream.
+ *
+ * @author Robin Weiss
+ */
+public class CountingInputStream extends FilterInputStream
+{
+    private long byteCount;
+
+
+    /**
+     * Constructor that requires the stream of which the bytes are counted.
+     *
+     * @param source the stream from which bytes are read
+     */
+    public CountingInputStream(final InputStream source)
+    {
+        super(source);
+    }
+
+
+    @Override
+    public int read() throws IOException
+    {
+        final int b = super.read();
+
+        if (b != -1)
+            byteCount++;
+
+        return b;
+    }
+
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException
+    {
+        final int readBytes = super.read(buffer, offset, length);
+
+        if (readBytes != -1)
+            byteCount += readBytes;
+
+        return readBytes;
+    }
+
+
+    @Override
+    public long skip(final long n) throws IOException
+    {
+        final long skippedBytes = super.skip(n);
+        byteCount += skippedBytes;
+        return skippedBytes;
+    }
+
+
+    @Override
+    public boolean markSupported()
+    {
+        return false;
+    }
+
+
+    /**
+     * Returns the number of bytes that were read or skipped.
+     *
+     * @return the number of bytes that were read or skipped
+     */
+    public long getByteCount()
+    {
+        return byteCount;
+    }
+}
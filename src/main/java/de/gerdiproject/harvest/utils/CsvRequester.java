@@ -17,103 +17,529 @@
 package de.gerdiproject.harvest.utils;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.function.Consumer;
 
 import javax.ws.rs.core.MediaType;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
 
+import de.gerdiproject.harvest.github.GitHubRateLimiter;
+import de.gerdiproject.harvest.soep.metrics.FlightRecorderEvent;
+import de.gerdiproject.harvest.soep.metrics.FlightRecorderEventType;
+import de.gerdiproject.harvest.soep.metrics.HarvestMetrics;
+import de.gerdiproject.harvest.soep.metrics.HarvestPhase;
+import de.gerdiproject.harvest.utils.csv.ArrayCsvRow;
+import de.gerdiproject.harvest.utils.csv.CsvRow;
+import de.gerdiproject.harvest.utils.csv.MappedCsvParser;
 import de.gerdiproject.harvest.utils.data.HttpRequester;
 import de.gerdiproject.harvest.utils.data.HttpRequesterUtils;
-import de.gerdiproject.harvest.utils.data.enums.RestRequestType;
 import de.gerdiproject.harvest.utils.file.FileUtils;
+import de.gerdiproject.harvest.utils.http.HttpTransport;
+import de.gerdiproject.harvest.utils.http.KeepAliveHttpTransport;
+import de.gerdiproject.harvest.utils.http.WebDataRetrieverTransport;
+import de.gerdiproject.json.GsonUtils;
 
 /**
  * This class extends the {@linkplain HttpRequester} by
  * the option to parse a CSV file from web or from disk,
  * depending on the set parameters.
+ * <br>
+ * If web responses are written to disk, their ETag and Last-Modified
+ * headers are stored next to the cached files, and subsequent requests
+ * are sent conditionally. If the server responds that a file was
+ * not modified, the cached file is read instead.
+ * <br>
+ * Requests to the GitHub API are sent via a {@linkplain GitHubRateLimiter}.
+ * The durations of requests and parsed CSV files, as well as the number of
+ * parsed rows and bytes, are recorded by {@linkplain HarvestMetrics}, and
+ * downloads emit {@linkplain FlightRecorderEventType#CSV_DOWNLOAD} events.
+ * <br>
+ * All requests are sent via a {@linkplain HttpTransport}, which is either the
+ * {@linkplain WebDataRetrieverTransport} of the harvester library, or a
+ * {@linkplain KeepAliveHttpTransport} that reuses connections.
  *
  * @author Robin Weiss
  */
 public class CsvRequester extends HttpRequester
 {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CsvRequester.class);
+    private static final int CSV_HEADER_ROWS = 1;
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final String VALIDATORS_FILE_SUFFIX = ".validators";
+
+    private static final String ETAG_HEADER = "ETag";
+    private static final String LAST_MODIFIED_HEADER = "Last-Modified";
+    private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+    private static final String IF_MODIFIED_SINCE_HEADER = "If-Modified-Since";
+
+    private static final String NOT_MODIFIED_INFO = "%s was not modified, reading cached response.";
+    private static final String REVALIDATION_FAILED_ERROR = "Could not revalidate cached response of %s: %s";
+    private static final String REQUEST_FAILED_ERROR = "Could not retrieve %s: %s";
+
+    private final MappedCsvParser mappedCsvParser = new MappedCsvParser();
+    private final GitHubRateLimiter rateLimiter = new GitHubRateLimiter();
+    private final Gson gson = GsonUtils.createGerdiDocumentGsonBuilder().create();
+    private boolean isMappingCachedFiles;
+    private HarvestMetrics harvestMetrics = new HarvestMetrics();
+    private HttpTransport httpTransport = new WebDataRetrieverTransport(webDataRetriever);
+
+
+    /**
+     * Changes whether CSV files that are read from the disk cache are parsed
+     * by a {@linkplain MappedCsvParser} instead of a {@linkplain CSVReader}.
+     *
+     * @param isMappingCachedFiles if true, cached CSV files are memory-mapped
+     */
+    public void setMappingCachedFiles(final boolean isMappingCachedFiles)
+    {
+        this.isMappingCachedFiles = isMappingCachedFiles;
+    }
+
+
+    /**
+     * Changes the metrics to which the durations of requests
+     * and the sizes of parsed CSV files are added, and which
+     * publish the GitHub API quota.
+     *
+     * @param harvestMetrics the metrics of the current harvest
+     */
+    public void setHarvestMetrics(final HarvestMetrics harvestMetrics)
+    {
+        this.harvestMetrics = harvestMetrics;
+        harvestMetrics.setRateLimiter(rateLimiter);
+    }
+
+
+    /**
+     * Changes the transport via which all requests are sent.
+     *
+     * @param httpTransport the transport of all subsequent requests,
+     * or null if they are to be sent via the harvester library
+     */
+    public void setHttpTransport(final HttpTransport httpTransport)
+    {
+        this.httpTransport = httpTransport == null
+                             ? new WebDataRetrieverTransport(webDataRetriever)
+                             : httpTransport;
+    }
+
+
+    /**
+     * Returns the rate limiter of all GitHub API requests, which
+     * provides the remaining request quota.
+     *
+     * @return the rate limiter of all GitHub API requests
+     */
+    public GitHubRateLimiter getRateLimiter()
+    {
+        return rateLimiter;
+    }
+
+
+    @Override
+    public <T> T getObjectFromUrl(final String url, final Type targetType)
+    {
+        final long startNanos = System.nanoTime();
+
+        try {
+            return getCachedObjectFromUrl(url, targetType);
+        } finally {
+            harvestMetrics.record(HarvestPhase.GITHUB_API, startNanos);
+        }
+    }
+
+
+    /**
+     * Retrieves and parses a JSON response, which is read from or written to
+     * the disk cache, depending on the set parameters.
+     *
+     * @param url the URL of the request
+     * @param targetType the type of the parsed response
+     * @param <T> the type of the parsed response
+     *
+     * @return the parsed response, or null if the request failed
+     */
+    private <T> T getCachedObjectFromUrl(final String url, final Type targetType)
+    {
+        if (isReadingFromDisk())
+            return super.getObjectFromUrl(url, targetType);
+
+        if (!isWritingToDisk())
+            return rateLimiter.isRateLimited(url)
+                   ? getRateLimitedObject(url, targetType)
+                   : super.getObjectFromUrl(url, targetType);
+
+        final File cacheFile = HttpRequesterUtils.urlToFilePath(url, getCacheFolder());
+
+        try {
+            final HttpURLConnection connection = sendConditionalRequest(url, cacheFile, MediaType.APPLICATION_JSON);
+
+            if (isNotModified(connection, url))
+                httpTransport.release(connection);
+            else {
+                final InputStream jsonStream = httpTransport.getInputStream(connection);
+                final TeeInputStream teeStream = cacheResponse(jsonStream, cacheFile);
+                boolean isRead = false;
+
+                try {
+                    final byte[] buffer = new byte[BUFFER_SIZE];
+
+                    while (teeStream.read(buffer) != -1) {
+                        // the stream copies the response to the cache file while it is read
+                    }
+
+                    isRead = true;
+                } finally {
+                    teeStream.close();
+                    commitCachedResponse(teeStream, isRead, connection, cacheFile);
+                }
+            }
+
+            return diskIO.getObject(cacheFile, targetType);
+
+        } catch (final IOException e) {
+            LOGGER.warn(String.format(REVALIDATION_FAILED_ERROR, url, e.getMessage()));
+            return super.getObjectFromUrl(url, targetType);
+        }
+    }
+
+
+    /**
+     * Sends an uncached request to the GitHub API and parses the JSON response.
+     *
+     * @param url the URL of the request
+     * @param targetType the type of the parsed response
+     * @param <T> the type of the parsed response
+     *
+     * @return the parsed response, or null if the request failed
+     */
+    private <T> T getRateLimitedObject(final String url, final Type targetType)
+    {
+        try {
+            final HttpURLConnection connection = sendGetRequest(url, null, MediaType.APPLICATION_JSON);
+
+            try
+                (InputStreamReader reader = new InputStreamReader(httpTransport.getInputStream(connection), StandardCharsets.UTF_8)) {
+                return gson.fromJson(reader, targetType);
+            }
+
+        } catch (final IOException | JsonParseException e) {
+            LOGGER.warn(String.format(REQUEST_FAILED_ERROR, url, e.getMessage()));
+            return null;
+        }
+    }
+
+
     /**
      * Iterates through the rows of a CSV file that is loaded from a specified URL.
+     * If the response is to be cached on disk, it is written to the cache
+     * while it is being parsed, so the file is downloaded only once.
+     * Cached CSV files are memory-mapped if {@linkplain #setMappingCachedFiles(boolean)}
+     * is enabled.
+     *
+     * @param url a URL that points to a CSV file
+     * @param iterFunction a consumer function that accepts each row of the CSV file
+     *
+     * @throws IOException if there is an error reading the CSV file
+     */
+    public void parseCsv(final String url, final Consumer<CsvRow> iterFunction) throws IOException
+    {
+        parseCsv(url, url, iterFunction);
+    }
+
+
+    /**
+     * Iterates through the rows of a CSV file that is loaded from a specified URL,
+     * and cached in the cache file of another URL. This allows versions of the
+     * same file to share a cache file and its validators.
      *
      * @param url a URL that points to a CSV file
+     * @param cacheUrl the URL that identifies the cache file of the CSV file
      * @param iterFunction a consumer function that accepts each row of the CSV file
      *
      * @throws IOException if there is an error reading the CSV file
      */
-    public void parseCsv(final String url, final Consumer<String[]> iterFunction) throws IOException
+    public void parseCsv(final String url, final String cacheUrl, final Consumer<CsvRow> iterFunction) throws IOException
     {
-        // open a stream to a CSV file
-        final InputStream csvStream;
+        final File csvFile = HttpRequesterUtils.urlToFilePath(cacheUrl, getCacheFolder());
 
         // is the response read from the disk cache?
-        if (isReadingFromDisk()) {
-            final File csvFile = HttpRequesterUtils.urlToFilePath(url, getCacheFolder());
-            csvStream = Files.newInputStream(csvFile.toPath());
+        if (isReadingFromDisk())
+            parseCachedCsv(csvFile, iterFunction);
+
+        else if (isWritingToDisk()) {
+            final FlightRecorderEvent downloadEvent = FlightRecorderEventType.CSV_DOWNLOAD.begin();
+            final long requestStartNanos = System.nanoTime();
+            final HttpURLConnection csvConnection = sendConditionalRequest(url, csvFile, MediaType.TEXT_PLAIN);
+            harvestMetrics.record(HarvestPhase.CSV_REQUEST, requestStartNanos);
+
+            if (isNotModified(csvConnection, url)) {
+                httpTransport.release(csvConnection);
+                downloadEvent.commit(url, 0L);
+                parseCachedCsv(csvFile, iterFunction);
+            } else
+                downloadEvent.commit(url, parseAndCacheCsvStream(csvConnection, csvFile, iterFunction));
 
         } else {
-            if (isWritingToDisk())
-                cacheCsvStream(url);
-
-            final HttpURLConnection csvConnection =
-                webDataRetriever.sendWebRequest(
-                    RestRequestType.GET,
-                    url,
-                    null, null, MediaType.TEXT_PLAIN, 0);
-            csvStream = webDataRetriever.getInputStream(csvConnection);
+            final FlightRecorderEvent downloadEvent = FlightRecorderEventType.CSV_DOWNLOAD.begin();
+            final long requestStartNanos = System.nanoTime();
+            final HttpURLConnection csvConnection = sendGetRequest(url, null, MediaType.TEXT_PLAIN);
+            harvestMetrics.record(HarvestPhase.CSV_REQUEST, requestStartNanos);
+            downloadEvent.commit(url, readCsvStream(httpTransport.getInputStream(csvConnection), iterFunction));
         }
+    }
+
+
+    /**
+     * Iterates through the rows of a CSV file that was cached on disk.
+     *
+     * @param csvFile the cached CSV file
+     * @param iterFunction a consumer function that accepts each row of the CSV file
+     *
+     * @throws IOException if there is an error reading the CSV file
+     */
+    private void parseCachedCsv(final File csvFile, final Consumer<CsvRow> iterFunction) throws IOException
+    {
+        if (isMappingCachedFiles) {
+            final long startNanos = System.nanoTime();
+            final long[] rowCount = {0};
+
+            mappedCsvParser.parse(csvFile, CSV_HEADER_ROWS, (final CsvRow row) -> {
+                rowCount[0]++;
+                iterFunction.accept(row);
+            });
 
-        parseCsvStream(csvStream, iterFunction);
+            harvestMetrics.addRowsParsed(rowCount[0]);
+            harvestMetrics.addBytesRead(csvFile.length());
+            harvestMetrics.record(HarvestPhase.CSV_PARSE, startNanos);
+        } else
+            parseCsvStream(Files.newInputStream(csvFile.toPath()), iterFunction);
     }
 
 
     /**
-     * Caches a CSV file response on disk.
-     * @param url the URL of the CSV file
+     * Iterates through the rows of a CSV web response while copying the response
+     * to a temporary file. The temporary file replaces the cache file only if
+     * the whole response was parsed successfully.
+     *
+     * @param csvConnection a connection to the CSV file
+     * @param csvFile the file to which the CSV file is cached
+     * @param iterFunction a consumer function that accepts each row of the CSV file
+     *
      * @throws IOException if there is an error reading or writing the CSV file
+     *
+     * @return the number of bytes that were read from the response
      */
-    private void cacheCsvStream(final String url) throws IOException
+    private long parseAndCacheCsvStream(final HttpURLConnection csvConnection, final File csvFile, final Consumer<CsvRow> iterFunction) throws IOException
     {
-        // oipen connection to the web
-        final HttpURLConnection csvConnection =
-            webDataRetriever.sendWebRequest(
-                RestRequestType.GET,
-                url,
-                null, null, MediaType.TEXT_PLAIN, 0);
+        final InputStream csvInput = httpTransport.getInputStream(csvConnection);
+        final TeeInputStream teeStream = cacheResponse(csvInput, csvFile);
+        boolean isParsed = false;
 
-        // open stream to the cache file
-        final File csvFile = HttpRequesterUtils.urlToFilePath(url, getCacheFolder());
-        FileUtils.createEmptyFile(csvFile);
+        try {
+            final long byteCount = readCsvStream(teeStream, iterFunction);
+            isParsed = true;
+            return byteCount;
+        } finally {
+            commitCachedResponse(teeStream, isParsed, csvConnection, csvFile);
+        }
+    }
 
-        try
-            (InputStream csvInput = webDataRetriever.getInputStream(csvConnection);
-             InputStreamReader inputStreamReader = new InputStreamReader(csvInput, StandardCharsets.UTF_8);
-             BufferedReader webReader = new BufferedReader(inputStreamReader);
-             BufferedWriter diskWriter = FileUtils.getWriter(csvFile, diskIO.getCharset())) {
 
-            boolean hasContent = false;
+    /**
+     * Sends a GET request that contains the validators of a previously cached
+     * response, if there are any.
+     *
+     * @param url the URL of the request
+     * @param cacheFile the file to which the response is cached
+     * @param contentType the content type of the request
+     *
+     * @return a connection to the requested URL
+     *
+     * @throws IOException if the request could not be sent
+     */
+    private HttpURLConnection sendConditionalRequest(final String url, final File cacheFile, final String contentType) throws IOException
+    {
+        final Map<String, String> requestProperties = new HashMap<>();
+
+        if (cacheFile.exists()) {
+            final CacheValidators validators = diskIO.getObject(getValidatorsFile(cacheFile), CacheValidators.class);
 
-            while (webReader.ready()) {
-                if (hasContent)
-                    diskWriter.newLine();
+            if (validators != null) {
+                if (validators.getETag() != null)
+                    requestProperties.put(IF_NONE_MATCH_HEADER, validators.getETag());
 
-                diskWriter.append(webReader.readLine());
-                hasContent = true;
+                if (validators.getLastModified() != null)
+                    requestProperties.put(IF_MODIFIED_SINCE_HEADER, validators.getLastModified());
             }
         }
+
+        return sendGetRequest(url, requestProperties.isEmpty() ? null : requestProperties, contentType);
+    }
+
+
+    /**
+     * Sends a GET request, which is delayed or retried if it is subject
+     * to the GitHub API rate limits.
+     *
+     * @param url the URL of the request
+     * @param requestProperties additional request headers, or null
+     * @param contentType the content type of the request
+     *
+     * @return a connection to the requested URL
+     *
+     * @throws IOException if the request could not be sent
+     */
+    private HttpURLConnection sendGetRequest(final String url, final Map<String, String> requestProperties, final String contentType) throws IOException
+    {
+        final GitHubRateLimiter.RequestSender sender =
+            () -> httpTransport.sendGetRequest(url, requestProperties, contentType);
+
+        return rateLimiter.isRateLimited(url) ? rateLimiter.sendRequest(sender) : sender.send();
+    }
+
+
+    /**
+     * Checks if a the response of a conditional request signifies that
+     * the cached response is still valid.
+     *
+     * @param connection the connection of a conditional request
+     * @param url the URL of the request
+     *
+     * @return true if the server responded with "304 Not Modified"
+     *
+     * @throws IOException if the response code could not be retrieved
+     */
+    private boolean isNotModified(final HttpURLConnection connection, final String url) throws IOException
+    {
+        final boolean isNotModified = connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED;
+
+        if (isNotModified)
+            LOGGER.info(String.format(NOT_MODIFIED_INFO, url));
+
+        return isNotModified;
+    }
+
+
+    /**
+     * Wraps a web response in a {@linkplain TeeInputStream} that copies
+     * the response to a temporary file next to the cache file.
+     *
+     * @param responseStream the body of a web response
+     * @param cacheFile the file to which the response is cached
+     *
+     * @return a stream that caches everything that is read from the response
+     *
+     * @throws IOException if the temporary file could not be opened
+     */
+    private TeeInputStream cacheResponse(final InputStream responseStream, final File cacheFile) throws IOException
+    {
+        final File tempFile = getTempFile(cacheFile);
+        FileUtils.createEmptyFile(tempFile);
+
+        return new TeeInputStream(responseStream, Files.newOutputStream(tempFile.toPath()));
+    }
+
+
+    /**
+     * Replaces a cache file with the temporary file that was written by a
+     * {@linkplain TeeInputStream}, and stores the validators of the response,
+     * if the response was read completely and successfully. Otherwise, the
+     * temporary file is discarded.
+     *
+     * @param teeStream the stream that wrote the temporary file
+     * @param isSuccessful true if the response was processed without errors
+     * @param connection the connection of the cached response
+     * @param cacheFile the file to which the response is cached
+     *
+     * @throws IOException if the cache file could not be written
+     */
+    private void commitCachedResponse(final TeeInputStream teeStream, final boolean isSuccessful, final HttpURLConnection connection, final File cacheFile) throws IOException
+    {
+        final File tempFile = getTempFile(cacheFile);
+
+        if (isSuccessful && teeStream.isComplete()) {
+            moveFile(tempFile, cacheFile);
+
+            final CacheValidators validators = new CacheValidators();
+            validators.setETag(connection.getHeaderField(ETAG_HEADER));
+            validators.setLastModified(connection.getHeaderField(LAST_MODIFIED_HEADER));
+
+            final File validatorsFile = getValidatorsFile(cacheFile);
+
+            if (validators.isEmpty())
+                Files.deleteIfExists(validatorsFile.toPath());
+            else
+                diskIO.writeObjectToFile(validatorsFile, validators);
+        } else
+            Files.deleteIfExists(tempFile.toPath());
+    }
+
+
+    /**
+     * Returns the temporary file to which a response is written
+     * before it replaces a cache file.
+     *
+     * @param cacheFile the file to which the response is cached
+     *
+     * @return the temporary file of the cache file
+     */
+    private static File getTempFile(final File cacheFile)
+    {
+        return new File(cacheFile.getPath() + TEMP_FILE_SUFFIX);
+    }
+
+
+    /**
+     * Returns the file that stores the {@linkplain CacheValidators}
+     * of a cached response.
+     *
+     * @param cacheFile the file to which the response is cached
+     *
+     * @return the file that stores the validators of the cache file
+     */
+    private static File getValidatorsFile(final File cacheFile)
+    {
+        return new File(cacheFile.getPath() + VALIDATORS_FILE_SUFFIX);
+    }
+
+
+    /**
+     * Moves a file to a target path, replacing the target file if it exists.
+     * The move is atomic if the file system supports it.
+     *
+     * @param source the file that is to be moved
+     * @param target the new path of the file
+     *
+     * @throws IOException if the file could not be moved
+     */
+    private static void moveFile(final File source, final File target) throws IOException
+    {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
     }
 
 
@@ -125,21 +551,53 @@ public class CsvRequester extends HttpRequester
      *
      * @throws IOException if there is an error reading the CSV file
      */
-    private void parseCsvStream(final InputStream csvInput, final Consumer<String[]> iterFunction) throws IOException
+    public void parseCsvStream(final InputStream csvInput, final Consumer<CsvRow> iterFunction) throws IOException
+    {
+        readCsvStream(csvInput, iterFunction);
+    }
+
+
+    /**
+     * Iterates through the rows of a CSV file that is parsed from a specified {@linkplain InputStream},
+     * and counts the bytes that were read.
+     *
+     * @param csvInput an {@linkplain InputStream} of the CSV file that is to be parsed
+     * @param iterFunction a consumer function that accepts each row of the CSV file
+     *
+     * @throws IOException if there is an error reading the CSV file
+     *
+     * @return the number of bytes that were read from the stream
+     */
+    private long readCsvStream(final InputStream csvInput, final Consumer<CsvRow> iterFunction) throws IOException
     {
+        final long startNanos = System.nanoTime();
+        final CountingInputStream countingInput = new CountingInputStream(csvInput);
+        long rowCount = 0;
+
         try
-            (InputStreamReader inputStreamReader = new InputStreamReader(csvInput, StandardCharsets.UTF_8);
+            (InputStreamReader inputStreamReader = new InputStreamReader(countingInput, StandardCharsets.UTF_8);
              BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
-             CSVReader csvReader = new CSVReaderBuilder(bufferedReader).withSkipLines(1).build()) {
+             CSVReader csvReader = new CSVReaderBuilder(bufferedReader).withSkipLines(CSV_HEADER_ROWS).build()) {
+
+            final ArrayCsvRow csvRow = new ArrayCsvRow();
 
             while (true) {
                 final String[] row = csvReader.readNext();
 
                 if (row == null)
                     break;
-                else
-                    iterFunction.accept(row);
+                else {
+                    csvRow.setFields(row);
+                    iterFunction.accept(csvRow);
+                    rowCount++;
+                }
             }
+        } finally {
+            harvestMetrics.addRowsParsed(rowCount);
+            harvestMetrics.addBytesRead(countingInput.getByteCount());
+            harvestMetrics.record(HarvestPhase.CSV_PARSE, startNanos);
         }
+
+        return countingInput.getByteCount();
     }
 }
@@ -0,0 +1,105 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This dictionary encodes strings as consecutive integer IDs, storing
+ * each distinct string only once. It is not thread-safe.
+ *
+ * @author Robin Weiss
+ */
+public class StringDictionary
+{
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+
+    /**
+     * Returns the ID of a string. If the dictionary does not contain an
+     * equal string yet, the string is added to it.
+     *
+     * @param value the string that is to be encoded
+     *
+     * @return the ID of the string
+     */
+    public int getId(final String value)
+    {
+        final Integer existingId = ids.get(value);
+
+        if (existingId != null)
+            return existingId;
+
+        final int newId = values.size();
+        ids.put(value, newId);
+        values.add(value);
+
+        return newId;
+    }
+
+
+    /**
+     * Looks up the ID of a string without adding it to the dictionary.
+     *
+     * @param value the string of which the ID is retrieved
+     *
+     * @return the ID of the string, or -1 if the dictionary does not contain it
+     */
+    public int findId(final String value)
+    {
+        final Integer existingId = ids.get(value);
+        return existingId == null ? -1 : existingId;
+    }
+
+
+    /**
+     * Returns the string that is encoded by a specified ID.
+     *
+     * @param id the ID of the string
+     *
+     * @return the string that is encoded by the ID
+     */
+    public String getValue(final int id)
+    {
+        return values.get(id);
+    }
+
+
+    /**
+     * Returns the number of distinct strings in the dictionary.
+     *
+     * @return the number of distinct strings in the dictionary
+     */
+    public int size()
+    {
+        return values.size();
+    }
+
+
+    /**
+     * Removes all strings from the dictionary.
+     */
+    public void clear()
+    {
+        ids.clear();
+        values.clear();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * This {@linkplain InputStream} copies every byte that is read from
+ * a source stream to an {@linkplain OutputStream}, allowing a single
+ * web response to be parsed and cached at the same time.
+ *
+ * @author Robin Weiss
+ */
+public class TeeInputStream extends FilterInputStream
+{
+    private final OutputStream sink;
+    private boolean isComplete;
+
+
+    /**
+     * Constructor that requires the streams that are to be connected.
+     *
+     * @param source the stream from which bytes are read
+     * @param sink the stream to which all read bytes are copied
+     */
+    public TeeInputStream(final InputStream source, final OutputStream sink)
+    {
+        super(source);
+        this.sink = sink;
+    }
+
+
+    @Override
+    public int read() throws IOException
+    {
+        final int b = super.read();
+
+        if (b == -1)
+            isComplete = true;
+        else
+            sink.write(b);
+
+        return b;
+    }
+
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException
+    {
+        final int readBytes = super.read(buffer, offset, length);
+
+        if (readBytes == -1)
+            isComplete = true;
+        else
+            sink.write(buffer, offset, readBytes);
+
+        return readBytes;
+    }
+
+
+    @Override
+    public long skip(final long n) throws IOException
+    {
+        // skipped bytes must be copied as well, so they are read instead
+        final byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        final int readBytes = read(buffer, 0, buffer.length);
+        return readBytes == -1 ? 0 : readBytes;
+    }
+
+
+    @Override
+    public boolean markSupported()
+    {
+        return false;
+    }
+
+
+    @Override
+    public void close() throws IOException
+    {
+        try {
+            super.close();
+        } finally {
+            sink.close();
+        }
+    }
+
+
+    /**
+     * Checks if the end of the source stream was reached, meaning
+     * that the sink received a complete copy of the source.
+     *
+     * @return true if all bytes of the source stream were copied
+     */
+    public boolean isComplete()
+    {
+        return isComplete;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.utils.csv;
+
+/**
+ * This {@linkplain CsvRow} wraps the fields of a row that were
+ * already parsed to an array of strings.
+ *
+ * @author Robin Weiss
+ */
+public class ArrayCsvRow implements CsvRow
+{
+    private String[] fields;
+
+
+    /**
+     * Constructor that requires the fields of the row.
+     *
+     * @param fields the fields of the row
+     */
+    public ArrayCsvRow(final String... fields)
+    {
+        this.fields = fields;
+    }
+
+
+    /**
+     * Changes the fields of the row, allowing the row to be re-used.
+     *
+     * @param fields the new fields of the row
+     */
+    public void setFields(final String... fields)
+    {
+        this.fields = fields;
+    }
+
+
+    @Override
+    public int size()
+    {
+        return fields.length;
+    }
+
+
+    @Override
+    public String get(final int column)
+    {
+        return fields[column];
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.utils.csv;
+
+/**
+ * This interface represents a single row of a CSV file.
+ * Rows are only valid while they are passed to a consumer function,
+ * because parsers may re-use them for subsequent rows.
+ *
+ * @author Robin Weiss
+ */
+public interface CsvRow
+{
+    /**
+     * Returns the number of fields of the row.
+     *
+     * @return the number of fields of the row
+     */
+    int size();
+
+
+    /**
+     * Returns the value of a field of the row.
+     *
+     * @param column the zero-based index of the field
+     *
+     * @return the value of the field
+     *
+     * @throws IndexOutOfBoundsException if the row has no field at the specified index
+     */
+    String get(int column);
+}
@@ -0,0 +1,339 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.utils.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * This parser memory-maps a UTF-8 encoded CSV file and tokenizes its
+ * rows according to RFC 4180, directly on the mapped bytes.
+ * Instead of creating strings for all fields of a row, it only stores the
+ * positions of the fields, and creates strings for the fields that are retrieved
+ * via {@linkplain CsvRow#get(int)}.
+ * <br>
+ * Unlike the default {@linkplain com.opencsv.CSVReader} of opencsv, the parser
+ * does not treat backslashes as escape characters, because RFC 4180 only escapes
+ * quotes by doubling them. Blank lines are skipped instead of being returned
+ * as rows with a single empty field, since no SOEP CSV row can be read from them.
+ * Both only make a difference for malformed SOEP CSV files or for labels that
+ * contain backslashes, which opencsv would drop.
+ *
+ * @author Robin Weiss
+ */
+public class MappedCsvParser
+{
+    private static final byte QUOTE = '"';
+    private static final byte SEPARATOR = ',';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final byte LINE_FEED = '\n';
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private static final String FILE_TOO_LARGE_ERROR = "Cannot map CSV file '%s', because it is larger than 2 GB!";
+
+
+    /**
+     * Iterates through the rows of a CSV file.
+     *
+     * @param csvFile the CSV file that is to be parsed
+     * @param skippedRows the number of leading rows that are skipped, e.g. headers
+     * @param iterFunction a consumer function that accepts each row of the CSV file
+     *
+     * @throws IOException if the CSV file could not be mapped
+     */
+    public void parse(final File csvFile, final int skippedRows, final Consumer<CsvRow> iterFunction) throws IOException
+    {
+        try
+            (FileChannel channel = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+
+            if (fileSize > Integer.MAX_VALUE)
+                throw new IOException(String.format(FILE_TOO_LARGE_ERROR, csvFile.getPath()));
+
+            parse(channel.map(MapMode.READ_ONLY, 0, fileSize), skippedRows, iterFunction);
+        }
+    }
+
+
+    /**
+     * Iterates through the rows of CSV content.
+     *
+     * @param csvBytes the UTF-8 encoded content of a CSV file
+     * @param skippedRows the number of leading rows that are skipped, e.g. headers
+     * @param iterFunction a consumer function that accepts each row of the CSV file
+     */
+    public void parse(final ByteBuffer csvBytes, final int skippedRows, final Consumer<CsvRow> iterFunction)
+    {
+        final MappedCsvRow row = new MappedCsvRow(csvBytes);
+        final int limit = csvBytes.limit();
+
+        int position = hasByteOrderMark(csvBytes) ? UTF8_BOM.length : 0;
+        int rowIndex = 0;
+
+        while (position < limit) {
+            position = row.tokenize(position);
+
+            // skip headers and empty lines
+            if (rowIndex++ >= skippedRows && !row.isBlank())
+                iterFunction.accept(row);
+        }
+    }
+
+
+    /**
+     * Checks if CSV content starts with a UTF-8 byte order mark.
+     *
+     * @param csvBytes the UTF-8 encoded content of a CSV file
+     *
+     * @return true if the content starts with a byte order mark
+     */
+    private static boolean hasByteOrderMark(final ByteBuffer csvBytes)
+    {
+        if (csvBytes.limit() < UTF8_BOM.length)
+            return false;
+
+        for (int i = 0; i < UTF8_BOM.length; i++) {
+            if (csvBytes.get(i) != UTF8_BOM[i])
+                return false;
+        }
+
+        return true;
+    }
+
+
+    /**
+     * This {@linkplain CsvRow} stores the positions of the fields of a single
+     * row within a {@linkplain ByteBuffer}, and is re-used for every row.
+     *
+     * @author Robin Weiss
+     */
+    private static class MappedCsvRow implements CsvRow
+    {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final ByteBuffer bytes;
+        private int[] fieldStarts = new int[INITIAL_CAPACITY];
+        private int[] fieldEnds = new int[INITIAL_CAPACITY];
+        private boolean[] hasEscapedQuotes = new boolean[INITIAL_CAPACITY];
+        private int fieldCount;
+        private byte[] decodingBuffer = new byte[INITIAL_CAPACITY * INITIAL_CAPACITY];
+
+
+        /**
+         * Constructor that requires the content of the CSV file.
+         *
+         * @param bytes the UTF-8 encoded content of a CSV file
+         */
+        MappedCsvRow(final ByteBuffer bytes)
+        {
+            this.bytes = bytes;
+        }
+
+
+        /**
+         * Determines the positions of all fields of a row.
+         *
+         * @param rowStart the position of the first byte of the row
+         *
+         * @return the position of the first byte of the next row
+         */
+        int tokenize(final int rowStart)
+        {
+            final int limit = bytes.limit();
+            int position = rowStart;
+            fieldCount = 0;
+
+            while (true) {
+                if (position < limit && bytes.get(position) == QUOTE)
+                    position = tokenizeQuotedField(position + 1);
+                else
+                    position = tokenizeField(position);
+
+                // is this the end of the file?
+                if (position >= limit)
+                    return limit;
+
+                // continue with the next field of the same row
+                if (bytes.get(position) == SEPARATOR) {
+                    position++;
+                    continue;
+                }
+
+                // skip line break
+                if (bytes.get(position) == CARRIAGE_RETURN)
+                    position++;
+
+                if (position < limit && bytes.get(position) == LINE_FEED)
+                    position++;
+
+                return position;
+            }
+        }
+
+
+        /**
+         * Determines the position of an unquoted field.
+         *
+         * @param fieldStart the position of the first byte of the field
+         *
+         * @return the position of the separator or line break that follows the field
+         */
+        private int tokenizeField(final int fieldStart)
+        {
+            final int limit = bytes.limit();
+            int position = fieldStart;
+
+            while (position < limit && !isDelimiter(bytes.get(position)))
+                position++;
+
+            addField(fieldStart, position, false);
+            return position;
+        }
+
+
+        /**
+         * Determines the position of a quoted field.
+         *
+         * @param fieldStart the position of the first byte after the opening quote
+         *
+         * @return the position of the separator or line break that follows the field
+         */
+        private int tokenizeQuotedField(final int fieldStart)
+        {
+            final int limit = bytes.limit();
+            int position = fieldStart;
+            int fieldEnd = limit;
+            boolean isEscaped = false;
+
+            while (position < limit) {
+                if (bytes.get(position) == QUOTE) {
+                    // two quotes represent a single, escaped quote
+                    if (position + 1 < limit && bytes.get(position + 1) == QUOTE) {
+                        isEscaped = true;
+                        position += 2;
+                        continue;
+                    }
+
+                    fieldEnd = position++;
+                    break;
+                }
+
+                position++;
+            }
+
+            // ignore malformed characters between the closing quote and the next delimiter
+            while (position < limit && !isDelimiter(bytes.get(position)))
+                position++;
+
+            addField(fieldStart, fieldEnd, isEscaped);
+            return position;
+        }
+
+
+        /**
+         * Stores the position of a field.
+         *
+         * @param start the position of the first byte of the field
+         * @param end the position after the last byte of the field
+         * @param isEscaped true if the field contains escaped quotes
+         */
+        private void addField(final int start, final int end, final boolean isEscaped)
+        {
+            if (fieldCount == fieldStarts.length) {
+                final int newCapacity = fieldCount * 2;
+                fieldStarts = Arrays.copyOf(fieldStarts, newCapacity);
+                fieldEnds = Arrays.copyOf(fieldEnds, newCapacity);
+                hasEscapedQuotes = Arrays.copyOf(hasEscapedQuotes, newCapacity);
+            }
+
+            fieldStarts[fieldCount] = start;
+            fieldEnds[fieldCount] = end;
+            hasEscapedQuotes[fieldCount] = isEscaped;
+            fieldCount++;
+        }
+
+
+        /**
+         * Checks if the row consists of a single, empty field,
+         * which is the case for empty lines.
+         *
+         * @return true if the row is empty
+         */
+        boolean isBlank()
+        {
+            return fieldCount == 1 && fieldStarts[0] == fieldEnds[0];
+        }
+
+
+        @Override
+        public int size()
+        {
+            return fieldCount;
+        }
+
+
+        @Override
+        public String get(final int column)
+        {
+            if (column < 0 || column >= fieldCount)
+                throw new IndexOutOfBoundsException(String.valueOf(column));
+
+            final int start = fieldStarts[column];
+            final int length = fieldEnds[column] - start;
+
+            if (length == 0)
+                return "";
+
+            if (decodingBuffer.length < length)
+                decodingBuffer = new byte[Math.max(length, decodingBuffer.length * 2)];
+
+            // copy bytes, replacing escaped double quotes with single quotes
+            final boolean isEscaped = hasEscapedQuotes[column];
+            int decodedLength = 0;
+
+            for (int i = 0; i < length; i++) {
+                final byte b = bytes.get(start + i);
+                decodingBuffer[decodedLength++] = b;
+
+                if (isEscaped && b == QUOTE)
+                    i++;
+            }
+
+            return new String(decodingBuffer, 0, decodedLength, StandardCharsets.UTF_8);
+        }
+
+
+        /**
+         * Checks if a byte marks the end of a field.
+         *
+         * @param b the byte that is to be checked
+         *
+         * @return true if the byte is a separator or a line break
+         */
+        private static boolean isDelimiter(final byte b)
+        {
+            return b == SEPARATOR || b == LINE_FEED || b == CARRIAGE_RETURN;
+        }
+    }
+}
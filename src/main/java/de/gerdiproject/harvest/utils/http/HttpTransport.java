@@ -0,0 +1,65 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.utils.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.Map;
+
+/**
+ * This interface represents a way of sending HTTP GET requests
+ * and of reading their responses.
+ *
+ * @author Robin Weiss
+ */
+public interface HttpTransport
+{
+    /**
+     * Sends a GET request.
+     *
+     * @param url the URL of the request
+     * @param requestProperties additional request headers, or null
+     * @param contentType the content type of the request
+     *
+     * @return a connection to the requested URL
+     *
+     * @throws IOException if the request could not be sent
+     */
+    HttpURLConnection sendGetRequest(String url, Map<String, String> requestProperties, String contentType) throws IOException;
+
+
+    /**
+     * Returns the decoded body of a response.
+     *
+     * @param connection the connection of a sent request
+     *
+     * @return the body of the response
+     *
+     * @throws IOException if the response could not be read
+     */
+    InputStream getInputStream(HttpURLConnection connection) throws IOException;
+
+
+    /**
+     * Releases a connection whose response body is not going to be read,
+     * such as the response of a conditional request that was not modified.
+     *
+     * @param connection the connection of a sent request
+     */
+    void release(HttpURLConnection connection);
+}
@@ -0,0 +1,150 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.utils.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This transport sends gzip-compressed requests with explicit timeouts,
+ * and keeps the connections alive after their responses were read.
+ * The JDK caches idle keep-alive connections per host and reuses them for
+ * subsequent requests, which saves a TCP and TLS handshake per request.
+ * The number of idle connections per host is limited by the
+ * "http.maxConnections" system property, which defaults to 5.
+ * <br>
+ * A connection is only reused if its response body was read completely and
+ * closed. Connections that are passed to {@linkplain #release(HttpURLConnection)}
+ * are closed gracefully if their remaining body is small, but the JDK does not
+ * reuse connections of bodiless responses, such as "304 Not Modified", unless
+ * they have a Content-Length.
+ * <br>
+ * The content type of a request is sent as both its Accept header, which
+ * tells the server which response is expected, and its Content-Type header,
+ * which is how the {@linkplain WebDataRetrieverTransport} sends it.
+ *
+ * @author Robin Weiss
+ */
+public class KeepAliveHttpTransport implements HttpTransport
+{
+    private static final String ACCEPT_HEADER = "Accept";
+    private static final String CONTENT_TYPE_HEADER = "Content-Type";
+    private static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+    private static final String GZIP_ENCODING = "gzip";
+    private static final int BUFFER_SIZE = 8192;
+
+    // larger bodies are discarded by closing the connection, which is cheaper than downloading them
+    private static final int MAX_DRAINED_BYTES = 64 * 1024;
+
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+
+    /**
+     * Constructor that requires the timeouts of all requests.
+     *
+     * @param connectTimeoutMillis the maximum number of milliseconds
+     * to wait for a connection, or 0 to wait indefinitely
+     * @param readTimeoutMillis the maximum number of milliseconds to wait
+     * for the next bytes of a response, or 0 to wait indefinitely
+     */
+    public KeepAliveHttpTransport(final int connectTimeoutMillis, final int readTimeoutMillis)
+    {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+
+    @Override
+    public HttpURLConnection sendGetRequest(final String url, final Map<String, String> requestProperties, final String contentType) throws IOException
+    {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        connection.setUseCaches(false);
+        connection.setRequestProperty(ACCEPT_HEADER, contentType);
+        connection.setRequestProperty(CONTENT_TYPE_HEADER, contentType);
+        connection.setRequestProperty(ACCEPT_ENCODING_HEADER, GZIP_ENCODING);
+
+        if (requestProperties != null) {
+            for (final Map.Entry<String, String> property : requestProperties.entrySet())
+                connection.setRequestProperty(property.getKey(), property.getValue());
+        }
+
+        connection.connect();
+        return connection;
+    }
+
+
+    @Override
+    public InputStream getInputStream(final HttpURLConnection connection) throws IOException
+    {
+        final InputStream responseStream = connection.getInputStream();
+
+        return GZIP_ENCODING.equalsIgnoreCase(connection.getContentEncoding())
+               ? new GZIPInputStream(responseStream, BUFFER_SIZE)
+               : responseStream;
+    }
+
+
+    @Override
+    public void release(final HttpURLConnection connection)
+    {
+        // the remaining body must be read, so the connection can be reused
+        try
+            (InputStream responseStream = connection.getResponseCode() < HttpURLConnection.HTTP_BAD_REQUEST
+                                          ? connection.getInputStream()
+                                          : connection.getErrorStream()) {
+            if (responseStream != null && !drain(responseStream))
+                connection.disconnect();
+
+        } catch (final IOException e) {
+            connection.disconnect();
+        }
+    }
+
+
+    /**
+     * Reads and discards the remaining body of a response,
+     * unless it is larger than {@value #MAX_DRAINED_BYTES} bytes.
+     *
+     * @param responseStream the body of a response
+     *
+     * @return true if the body was read completely
+     *
+     * @throws IOException if the body could not be read
+     */
+    private static boolean drain(final InputStream responseStream) throws IOException
+    {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        long drainedBytes = 0;
+        int readBytes;
+
+        while ((readBytes = responseStream.read(buffer)) != -1) {
+            drainedBytes += readBytes;
+
+            if (drainedBytes > MAX_DRAINED_BYTES)
+                return false;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.utils.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.Map;
+
+import de.gerdiproject.harvest.utils.data.WebDataRetriever;
+import de.gerdiproject.harvest.utils.data.enums.RestRequestType;
+
+/**
+ * This transport sends requests via the {@linkplain WebDataRetriever} of the
+ * harvester library. It is used if connections are not to be reused.
+ *
+ * @author Robin Weiss
+ */
+public class WebDataRetrieverTransport implements HttpTransport
+{
+    private final WebDataRetriever webDataRetriever;
+
+
+    /**
+     * Constructor that requires the retriever that sends the requests.
+     *
+     * @param webDataRetriever the retriever that sends the requests
+     */
+    public WebDataRetrieverTransport(final WebDataRetriever webDataRetriever)
+    {
+        this.webDataRetriever = webDataRetriever;
+    }
+
+
+    @Override
+    public HttpURLConnection sendGetRequest(final String url, final Map<String, String> requestProperties, final String contentType) throws IOException
+    {
+        return webDataRetriever.sendWebRequest(RestRequestType.GET, url, null, requestProperties, contentType, 0);
+    }
+
+
+    @Override
+    public InputStream getInputStream(final HttpURLConnection connection) throws IOException
+    {
+        return webDataRetriever.getInputStream(connection);
+    }
+
+
+    @Override
+    public void release(final HttpURLConnection connection)
+    {
+        connection.disconnect();
+    }
+}
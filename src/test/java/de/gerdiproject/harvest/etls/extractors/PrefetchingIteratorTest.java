@@ -0,0 +1,100 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.etls.extractors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+/**
+ * This class provides Unit Tests for the {@linkplain PrefetchingIterator}.
+ *
+ * @author Robin Weiss
+ */
+public class PrefetchingIteratorTest
+{
+    private static final String THREAD_NAME = "TestPrefetcher";
+
+
+    /**
+     * Tests if all elements, including null elements, are returned in
+     * the order of the source iterator, even if the queue is smaller
+     * than the number of elements.
+     */
+    @Test
+    public void testOrder()
+    {
+        final List<String> source = Arrays.asList("a", null, "b", "c", "d");
+        final List<String> prefetched = new ArrayList<>();
+
+        try
+            (PrefetchingIterator<String> iter = new PrefetchingIterator<>(source.iterator(), 2, THREAD_NAME)) {
+            iter.forEachRemaining(prefetched::add);
+        }
+
+        assertEquals(source, prefetched);
+    }
+
+
+    /**
+     * Tests if exceptions of the source iterator are re-thrown by the consumer.
+     */
+    @Test(expected = ExtractorException.class)
+    public void testException()
+    {
+        final Iterator<String> failingSource = Stream.of("a", "b").map((final String s) -> {
+            if ("b".equals(s))
+                throw new IllegalStateException("mocked exception");
+
+            return s;
+        }).iterator();
+
+        try
+            (PrefetchingIterator<String> iter = new PrefetchingIterator<>(failingSource, 2, THREAD_NAME)) {
+            assertEquals("a", iter.next());
+            iter.next();
+        }
+    }
+
+
+    /**
+     * Tests if closing the iterator stops the producer thread,
+     * even if the source iterator never ends.
+     *
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void testClose() throws InterruptedException
+    {
+        final Iterator<Integer> endlessSource = Stream.iterate(0, (final Integer i) -> i + 1).iterator();
+        final PrefetchingIterator<Integer> iter = new PrefetchingIterator<>(endlessSource, 2, THREAD_NAME);
+
+        assertEquals(Integer.valueOf(0), iter.next());
+        iter.close();
+
+        assertFalse(iter.hasNext());
+        assertTrue(Thread.getAllStackTraces().keySet().stream().noneMatch((final Thread t) -> THREAD_NAME.equals(t.getName())));
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ *  Copyright © 2018 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.etls.extractors;
+
+import de.gerdiproject.harvest.SoepContextListener;
+import de.gerdiproject.harvest.application.ContextListener;
+import de.gerdiproject.harvest.etls.AbstractIteratorETL;
+import de.gerdiproject.harvest.etls.SoepETL;
+import de.gerdiproject.json.datacite.DataCiteJson;
+
+/**
+ * This class provides Unit Tests for the {@linkplain SoepExtractor},
+ * harvesting incrementally after a commit that only changed "variables.csv".
+ * The datasets folder did not change since the last harvested commit, so the
+ * changes are only found by comparing the latest commit of the metadata folder.
+ *
+ * @author Robin Weiss
+ */
+public class SoepExtractorCsvOnlyCommitTest extends AbstractIteratorExtractorTest<SoepFileVO>
+{
+    @Override
+    protected ContextListener getContextListener()
+    {
+        return new SoepContextListener();
+    }
+
+
+    @Override
+    protected AbstractIteratorETL<SoepFileVO, DataCiteJson> getEtl()
+    {
+        return new SoepETL();
+    }
+}
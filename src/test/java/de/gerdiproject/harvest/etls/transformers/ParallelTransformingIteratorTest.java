@@ -0,0 +1,177 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.etls.transformers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This class provides Unit Tests for the {@linkplain ParallelTransformingIterator}.
+ *
+ * @author Robin Weiss
+ */
+public class ParallelTransformingIteratorTest
+{
+    private static final int THREAD_COUNT = 4;
+    private static final int WINDOW_SIZE = 8;
+    private static final int ELEMENT_COUNT = 100;
+
+    private ExecutorService executor;
+
+
+    /**
+     * Creates the executor that runs the transformations.
+     */
+    @Before
+    public void before()
+    {
+        executor = Executors.newFixedThreadPool(THREAD_COUNT);
+    }
+
+
+    /**
+     * Shuts down the executor.
+     */
+    @After
+    public void after()
+    {
+        executor.shutdownNow();
+    }
+
+
+    /**
+     * Tests if the transformed elements are returned in the order of the source,
+     * even if later elements finish their transformation first.
+     */
+    @Test
+    public void testOrder()
+    {
+        final List<Integer> source = IntStream.range(0, ELEMENT_COUNT).boxed().collect(Collectors.toList());
+        final Iterator<String> iter = new ParallelTransformingIterator<>(
+            source.iterator(),
+            (final Integer i) -> {
+                sleep((ELEMENT_COUNT - i) % 5);
+                return String.valueOf(i);
+            },
+            executor,
+            WINDOW_SIZE);
+
+        final List<String> transformed = new ArrayList<>();
+        iter.forEachRemaining(transformed::add);
+
+        assertEquals(source.stream().map(String::valueOf).collect(Collectors.toList()), transformed);
+    }
+
+
+    /**
+     * Tests if no more than the window size of elements are taken from
+     * the source ahead of the returned elements.
+     */
+    @Test
+    public void testWindowSize()
+    {
+        final AtomicInteger extractedCount = new AtomicInteger();
+        final Iterator<Integer> source = IntStream.range(0, ELEMENT_COUNT)
+                                         .peek((final int i) -> extractedCount.incrementAndGet())
+                                         .boxed()
+                                         .iterator();
+
+        final Iterator<Integer> iter = new ParallelTransformingIterator<>(source, (final Integer i) -> i, executor, WINDOW_SIZE);
+        int returnedCount = 0;
+
+        while (iter.hasNext()) {
+            iter.next();
+            returnedCount++;
+            assertTrue(extractedCount.get() - returnedCount < WINDOW_SIZE);
+        }
+
+        assertEquals(ELEMENT_COUNT, returnedCount);
+    }
+
+
+    /**
+     * Tests if exceptions of a transformation are re-thrown when the
+     * failed element is retrieved.
+     */
+    @Test(expected = TransformerException.class)
+    public void testException()
+    {
+        final Iterator<Integer> iter = new ParallelTransformingIterator<>(
+            IntStream.range(0, ELEMENT_COUNT).boxed().iterator(),
+            (final Integer i) -> {
+                if (i == ELEMENT_COUNT / 2)
+                    throw new TransformerException("mocked exception");
+
+                return i;
+            },
+            executor,
+            WINDOW_SIZE);
+
+        iter.forEachRemaining((final Integer i) -> {});
+    }
+
+
+    /**
+     * Tests if null elements of the source, such as datasets without
+     * metadata, are returned as null in their place without being
+     * passed to the transformation.
+     */
+    @Test
+    public void testNullElements()
+    {
+        final List<Integer> source = Arrays.asList(1, null, 2, null, null, 3);
+        final Iterator<String> iter = new ParallelTransformingIterator<>(
+            source.iterator(),
+            (final Integer i) -> String.valueOf(i.intValue()),
+            executor,
+            WINDOW_SIZE);
+
+        final List<String> transformed = new ArrayList<>();
+        iter.forEachRemaining(transformed::add);
+
+        assertEquals(Arrays.asList("1", null, "2", null, null, "3"), transformed);
+    }
+
+
+    /**
+     * Pauses the current thread to simulate a slow transformation.
+     *
+     * @param millis the number of milliseconds to sleep
+     */
+    private static void sleep(final int millis)
+    {
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.etls.transformers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Set;
+
+import org.junit.Test;
+
+import de.gerdiproject.harvest.soep.csv.ConceptMetadata;
+import de.gerdiproject.harvest.utils.csv.ArrayCsvRow;
+import de.gerdiproject.json.datacite.extension.soep.SoepConcept;
+
+/**
+ * This class provides Unit Tests for the {@linkplain SoepConceptCache}.
+ *
+ * @author Robin Weiss
+ */
+public class SoepConceptCacheTest
+{
+    /**
+     * Tests if variables of the same concept share the same concept set,
+     * and if hits and misses are counted.
+     */
+    @Test
+    public void testSharingConcepts()
+    {
+        final SoepConceptCache cache = new SoepConceptCache();
+        final Set<SoepConcept> first = cache.getConcepts(createConcept("item_42"));
+        final Set<SoepConcept> second = cache.getConcepts(createConcept("item_42"));
+        final Set<SoepConcept> other = cache.getConcepts(createConcept("item_1337"));
+
+        assertSame(first, second);
+        assertNotSame(first, other);
+        assertEquals(2, first.size());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+
+    /**
+     * Tests if variables without a concept do not get a concept set.
+     */
+    @Test
+    public void testMissingConcept()
+    {
+        final SoepConceptCache cache = new SoepConceptCache();
+        assertNull(cache.getConcepts(null));
+        assertEquals(0, cache.getMissCount());
+    }
+
+
+    /**
+     * Tests if clearing the cache forces the concepts to be created anew.
+     */
+    @Test
+    public void testClear()
+    {
+        final SoepConceptCache cache = new SoepConceptCache();
+        final Set<SoepConcept> first = cache.getConcepts(createConcept("item_42"));
+        cache.clear();
+
+        assertEquals(0, cache.getMissCount());
+        assertNotSame(first, cache.getConcepts(createConcept("item_42")));
+        assertEquals(1, cache.getMissCount());
+    }
+
+
+    /**
+     * Creates a mocked concept.
+     *
+     * @param conceptName the name of the concept
+     *
+     * @return a concept with mocked labels
+     */
+    private static ConceptMetadata createConcept(final String conceptName)
+    {
+        return new ConceptMetadata(new ArrayCsvRow(new String[] {
+                                                       conceptName, "topic", "topic name", "label de", "label en"
+                                                   }));
+    }
+}
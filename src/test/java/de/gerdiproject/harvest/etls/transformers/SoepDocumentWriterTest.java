@@ -0,0 +1,245 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.etls.transformers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import de.gerdiproject.harvest.etls.extractors.SoepFileVO;
+import de.gerdiproject.harvest.soep.store.DatasetVariables;
+import de.gerdiproject.harvest.soep.store.VariableStore;
+import de.gerdiproject.json.GsonUtils;
+import de.gerdiproject.json.datacite.DataCiteJson;
+
+/**
+ * This class provides Unit Tests for the {@linkplain SoepDocumentWriter}.
+ *
+ * @author Robin Weiss
+ */
+public class SoepDocumentWriterTest
+{
+    private static final long RANDOM_SEED = 42;
+    private static final String DATASET_NAME = "ap";
+    private static final String TRANSFORMER_INPUT = "SoepTransformerTest/input.json";
+
+    private final Gson gson = GsonUtils.createGerdiDocumentGsonBuilder().create();
+
+
+    /**
+     * Tests if a written document is the same as the serialization
+     * of the transformed document of the transformer test.
+     *
+     * @throws IOException if the document could not be written
+     */
+    @Test
+    public void testWrittenDocument() throws IOException
+    {
+        assertWrittenDocument(readTransformerInput());
+    }
+
+
+    /**
+     * Tests if a written document with enough variables to let a hash set
+     * grow several times, and with duplicate variables, is the same as
+     * the serialization of the transformed document.
+     *
+     * @throws IOException if the document could not be written
+     */
+    @Test
+    public void testLargeWrittenDocumentWithDuplicates() throws IOException
+    {
+        final List<String> names = createElements(500, 30);
+        final VariableStore variableStore = new VariableStore();
+
+        // repeated names are also repeated variables, because the source depends on the name
+        for (final String name : names)
+            variableStore.add(DATASET_NAME, name, "", "v" + name.length());
+
+        variableStore.finish();
+
+        final SoepFileVO fixture = readTransformerInput();
+        final DatasetVariables variables = variableStore.getDatasetVariables(DATASET_NAME);
+
+        assertWrittenDocument(new SoepFileVO(fixture.getContent(), fixture.getDatasetMetadata(), variables, false, 0, 0));
+    }
+
+
+    /**
+     * Tests if the order of variables matches a hash set that is smaller
+     * than its initial capacity.
+     */
+    @Test
+    public void testSmallSetOrder()
+    {
+        assertHashSetOrder(createElements(5, 0));
+    }
+
+
+    /**
+     * Tests if the order of variables matches a hash set whose size is exactly
+     * at the threshold of growing.
+     */
+    @Test
+    public void testThresholdSetOrder()
+    {
+        assertHashSetOrder(createElements(12, 0));
+        assertHashSetOrder(createElements(13, 0));
+        assertHashSetOrder(createElements(96, 0));
+        assertHashSetOrder(createElements(97, 0));
+    }
+
+
+    /**
+     * Tests if the order of variables matches a large hash set that grew
+     * several times and contains duplicates.
+     */
+    @Test
+    public void testLargeSetOrderWithDuplicates()
+    {
+        assertHashSetOrder(createElements(5000, 300));
+    }
+
+
+    /**
+     * Tests if elements with colliding hash codes are kept in the order
+     * in which they were added, unless they are equal.
+     */
+    @Test
+    public void testCollidingHashCodes()
+    {
+        final List<String> elements = new ArrayList<>();
+
+        // "Aa" and "BB" have the same hash code
+        elements.add("AaAa");
+        elements.add("BBBB");
+        elements.add("AaBB");
+        elements.add("BBAa");
+        elements.add("BBBB");
+        elements.add("x");
+
+        assertHashSetOrder(elements);
+    }
+
+
+    /**
+     * Asserts that the document that is written by the transformer is the same
+     * as the serialization of the document that is returned by the transformer.
+     *
+     * @param vo the extracted SOEP dataset
+     *
+     * @throws IOException if the document could not be written
+     */
+    private void assertWrittenDocument(final SoepFileVO vo) throws IOException
+    {
+        final SoepTransformer transformer = new SoepTransformer();
+        final String transformedJson = gson.toJson(transformer.transformElement(vo), DataCiteJson.class);
+
+        final StringWriter writtenJson = new StringWriter();
+
+        try
+            (JsonWriter writer = gson.newJsonWriter(writtenJson)) {
+            transformer.writeElement(vo, gson, writer);
+        }
+
+        assertEquals(transformedJson, writtenJson.toString());
+    }
+
+
+    /**
+     * Reads the extracted SOEP dataset that is transformed by the transformer test.
+     *
+     * @return the input of the transformer test
+     *
+     * @throws IOException if the input could not be read
+     */
+    private SoepFileVO readTransformerInput() throws IOException
+    {
+        try
+            (Reader reader = new InputStreamReader(getClass().getResourceAsStream(TRANSFORMER_INPUT), StandardCharsets.UTF_8)) {
+            return gson.fromJson(reader, SoepFileVO.class);
+        }
+    }
+
+
+    /**
+     * Creates random strings, some of which may be repeated.
+     *
+     * @param count the number of strings
+     * @param duplicateCount the number of strings that repeat a previous string
+     *
+     * @return a list of random strings
+     */
+    private static List<String> createElements(final int count, final int duplicateCount)
+    {
+        final Random random = new Random(RANDOM_SEED);
+        final List<String> elements = new ArrayList<>(count + duplicateCount);
+
+        for (int i = 0; i < count; i++) {
+            elements.add(Long.toString(random.nextLong(), Character.MAX_RADIX));
+
+            if (i > 0 && i % (count / Math.max(duplicateCount, 1) + 1) == 0 && duplicateCount > 0)
+                elements.add(elements.get(random.nextInt(elements.size())));
+        }
+
+        return elements;
+    }
+
+
+    /**
+     * Asserts that the computed order of elements equals the iteration
+     * order of a hash set to which they are added one by one.
+     *
+     * @param elements the elements in the order in which they are added
+     */
+    private static void assertHashSetOrder(final List<String> elements)
+    {
+        final int[] hashCodes = new int[elements.size()];
+
+        for (int i = 0; i < hashCodes.length; i++)
+            hashCodes[i] = elements.get(i).hashCode();
+
+        final int[] order = SoepDocumentWriter.getHashSetOrder(
+                                hashCodes,
+                                (final Integer first, final Integer second) -> elements.get(first).equals(elements.get(second)));
+
+        final Set<String> hashSet = new HashSet<>();
+        hashSet.addAll(elements);
+
+        final List<String> orderedElements = new ArrayList<>();
+
+        for (final int index : order)
+            orderedElements.add(elements.get(index));
+
+        assertArrayEquals(hashSet.toArray(), orderedElements.toArray());
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.github;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import de.gerdiproject.harvest.soep.constants.SoepConstants;
+import de.gerdiproject.harvest.soep.metrics.HarvestMetrics;
+
+/**
+ * This class provides Unit Tests for the {@linkplain GitHubRateLimiter}.
+ * The GitHub API is mocked by a local HTTP server that returns a queue of
+ * prepared responses.
+ *
+ * @author Robin Weiss
+ */
+public class GitHubRateLimiterTest
+{
+    private static final int MAX_RETRIES = 3;
+    private static final long BASE_BACKOFF_MS = 10;
+    private static final long MAX_WAIT_MS = 2000;
+    private static final String MOCKED_PATH = "/repos/paneldata/soep-core/commits";
+
+    private final Queue<MockedResponse> responses = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private HttpServer server;
+    private URL mockedUrl;
+
+
+    /**
+     * Starts the mocked GitHub API.
+     *
+     * @throws IOException if the server could not be started
+     */
+    @Before
+    public void before() throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::respond);
+        server.start();
+
+        mockedUrl = new URL("http", "127.0.0.1", server.getAddress().getPort(), MOCKED_PATH);
+    }
+
+
+    /**
+     * Stops the mocked GitHub API.
+     */
+    @After
+    public void after()
+    {
+        server.stop(0);
+    }
+
+
+    /**
+     * Tests if only GitHub API requests are rate limited.
+     */
+    @Test
+    public void testRateLimitedUrls()
+    {
+        final GitHubRateLimiter limiter = new GitHubRateLimiter();
+        assertTrue(limiter.isRateLimited(SoepConstants.DATASET_COMMITS_URL));
+        assertFalse(limiter.isRateLimited(SoepConstants.VARIABLES_CSV_DOWNLOAD_URL));
+    }
+
+
+    /**
+     * Tests if the remaining quota is read from the response headers.
+     *
+     * @throws IOException if the request failed
+     */
+    @Test
+    public void testQuota() throws IOException
+    {
+        responses.add(new MockedResponse(200).withQuota(60, 42, getEpochSeconds(3600)));
+
+        final GitHubRateLimiter limiter = createLimiter();
+        assertEquals(200, limiter.sendRequest(this::openConnection).getResponseCode());
+
+        assertEquals(60, limiter.getRequestLimit());
+        assertEquals(42, limiter.getRemainingRequests());
+        assertEquals(0, limiter.getThrottledCount());
+    }
+
+
+    /**
+     * Tests if the quota and the number of throttled requests are published
+     * via the {@linkplain HarvestMetrics}.
+     *
+     * @throws IOException if the request failed
+     */
+    @Test
+    public void testQuotaMetrics() throws IOException
+    {
+        responses.add(new MockedResponse(429).withHeader("Retry-After", "0"));
+        responses.add(new MockedResponse(200).withQuota(60, 41, getEpochSeconds(3600)));
+
+        final GitHubRateLimiter limiter = createLimiter();
+        final HarvestMetrics metrics = new HarvestMetrics();
+        metrics.setRateLimiter(limiter);
+
+        assertEquals(-1, metrics.getGitHubRequestsRemaining());
+
+        limiter.sendRequest(this::openConnection);
+
+        assertEquals(60, metrics.getGitHubRequestLimit());
+        assertEquals(41, metrics.getGitHubRequestsRemaining());
+        assertEquals(1, metrics.getGitHubRequestsThrottled());
+    }
+
+
+    /**
+     * Tests if requests that are throttled by a secondary rate limit are retried
+     * after the time that is specified by the "Retry-After" header.
+     *
+     * @throws IOException if the request failed
+     */
+    @Test
+    public void testRetryAfter() throws IOException
+    {
+        responses.add(new MockedResponse(403).withHeader("Retry-After", "0"));
+        responses.add(new MockedResponse(429).withHeader("Retry-After", "0"));
+        responses.add(new MockedResponse(200));
+
+        final GitHubRateLimiter limiter = createLimiter();
+        assertEquals(200, limiter.sendRequest(this::openConnection).getResponseCode());
+
+        assertEquals(3, requestCount.get());
+        assertEquals(2, limiter.getThrottledCount());
+    }
+
+
+    /**
+     * Tests if requests wait for the reset of an exhausted quota.
+     *
+     * @throws IOException if the request failed
+     */
+    @Test
+    public void testExhaustedQuota() throws IOException
+    {
+        responses.add(new MockedResponse(403).withQuota(60, 0, getEpochSeconds(1)));
+        responses.add(new MockedResponse(200).withQuota(60, 59, getEpochSeconds(3600)));
+
+        final GitHubRateLimiter limiter = createLimiter();
+        final long startTime = System.currentTimeMillis();
+        assertEquals(200, limiter.sendRequest(this::openConnection).getResponseCode());
+
+        // the reset time has a precision of seconds
+        assertTrue(System.currentTimeMillis() - startTime <= MAX_WAIT_MS);
+        assertEquals(59, limiter.getRemainingRequests());
+        assertEquals(1, limiter.getThrottledCount());
+    }
+
+
+    /**
+     * Tests if "403 Forbidden" responses that are not caused by
+     * rate limits are not retried.
+     *
+     * @throws IOException if the request failed
+     */
+    @Test
+    public void testForbidden() throws IOException
+    {
+        responses.add(new MockedResponse(403).withQuota(60, 30, getEpochSeconds(3600)));
+        responses.add(new MockedResponse(200));
+
+        final GitHubRateLimiter limiter = createLimiter();
+        assertEquals(403, limiter.sendRequest(this::openConnection).getResponseCode());
+        assertEquals(1, requestCount.get());
+    }
+
+
+    /**
+     * Tests if the last throttled response is returned after all retries failed.
+     *
+     * @throws IOException if the request failed
+     */
+    @Test
+    public void testMaxRetries() throws IOException
+    {
+        for (int i = 0; i <= MAX_RETRIES + 1; i++)
+            responses.add(new MockedResponse(429));
+
+        final GitHubRateLimiter limiter = createLimiter();
+        assertEquals(429, limiter.sendRequest(this::openConnection).getResponseCode());
+        assertEquals(MAX_RETRIES + 1, requestCount.get());
+    }
+
+
+    /**
+     * Creates a rate limiter with short backoffs.
+     *
+     * @return a rate limiter for testing
+     */
+    private static GitHubRateLimiter createLimiter()
+    {
+        return new GitHubRateLimiter(MAX_RETRIES, BASE_BACKOFF_MS, MAX_WAIT_MS);
+    }
+
+
+    /**
+     * Opens a connection to the mocked GitHub API.
+     *
+     * @throws IOException if the connection could not be opened
+     *
+     * @return a connection to the mocked GitHub API
+     */
+    private HttpURLConnection openConnection() throws IOException
+    {
+        return (HttpURLConnection) mockedUrl.openConnection();
+    }
+
+
+    /**
+     * Returns the epoch seconds of a time relative to now.
+     *
+     * @param secondsFromNow the number of seconds from now
+     *
+     * @return the epoch seconds of the time
+     */
+    private static long getEpochSeconds(final long secondsFromNow)
+    {
+        return System.currentTimeMillis() / 1000 + secondsFromNow;
+    }
+
+
+    /**
+     * Sends the next prepared response of the mocked GitHub API.
+     *
+     * @param exchange the HTTP exchange of a request
+     *
+     * @throws IOException if the response could not be sent
+     */
+    private void respond(final HttpExchange exchange) throws IOException
+    {
+        requestCount.incrementAndGet();
+
+        final MockedResponse response = responses.poll();
+        final int status = response == null ? 500 : response.status;
+        final byte[] body = "[]".getBytes();
+
+        if (response != null)
+            response.headers.forEach((final String key, final String value) -> exchange.getResponseHeaders().add(key, value));
+
+        exchange.sendResponseHeaders(status, body.length);
+
+        try
+            (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+
+    /**
+     * This class represents a prepared response of the mocked GitHub API.
+     *
+     * @author Robin Weiss
+     */
+    private static class MockedResponse
+    {
+        private final int status;
+        private final Map<String, String> headers = new TreeMap<>();
+
+
+        /**
+         * Constructor that requires the response code.
+         *
+         * @param status the HTTP response code
+         */
+        MockedResponse(final int status)
+        {
+            this.status = status;
+        }
+
+
+        /**
+         * Adds a header to the response.
+         *
+         * @param key the name of the header
+         * @param value the value of the header
+         *
+         * @return this response
+         */
+        MockedResponse withHeader(final String key, final String value)
+        {
+            headers.put(key, value);
+            return this;
+        }
+
+
+        /**
+         * Adds the rate limit headers to the response.
+         *
+         * @param limit the request limit
+         * @param remaining the remaining requests
+         * @param resetEpochSeconds the reset time in seconds since the epoch
+         *
+         * @return this response
+         */
+        MockedResponse withQuota(final int limit, final int remaining, final long resetEpochSeconds)
+        {
+            return withHeader("X-RateLimit-Limit", String.valueOf(limit))
+                   .withHeader("X-RateLimit-Remaining", String.valueOf(remaining))
+                   .withHeader("X-RateLimit-Reset", String.valueOf(resetEpochSeconds));
+        }
+    }
+}
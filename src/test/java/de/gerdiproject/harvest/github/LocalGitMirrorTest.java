@@ -0,0 +1,221 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.github;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.gerdiproject.harvest.github.json.GitHubTreeEntry;
+import de.gerdiproject.harvest.soep.constants.SoepConstants;
+
+/**
+ * This class provides Unit Tests for the {@linkplain LocalGitMirror}.
+ *
+ * @author Robin Weiss
+ */
+public class LocalGitMirrorTest
+{
+    private static final String DATASET_FILE_CONTENT = "{\"name\" : \"mocked dataset\"}";
+    private static final String VARIABLES_CSV_CONTENT = "study,dataset_name,name,concept_name,source,item_id,id\n";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File repositoryFolder;
+    private String datasetCommitHash;
+    private String headCommitHash;
+
+
+    /**
+     * Creates a git repository with a commit that changes the datasets folder,
+     * followed by a commit that does not.
+     *
+     * @throws IOException if the repository files could not be written
+     * @throws GitAPIException if the repository could not be created
+     */
+    @Before
+    public void before() throws IOException, GitAPIException
+    {
+        repositoryFolder = tempFolder.newFolder("soep-core");
+
+        try
+            (Git git = Git.init().setDirectory(repositoryFolder).call()) {
+            writeFile(SoepConstants.DATASETS_PATH + "ap.json", DATASET_FILE_CONTENT);
+            writeFile(SoepConstants.DATASETS_PATH + "archive/old.json", DATASET_FILE_CONTENT);
+            writeFile(SoepConstants.VARIABLES_CSV_PATH, VARIABLES_CSV_CONTENT);
+            datasetCommitHash = commit(git, "Add datasets").getName();
+
+            writeFile("README.md", "# soep-core");
+            headCommitHash = commit(git, "Add readme").getName();
+        }
+    }
+
+
+    /**
+     * Tests if the latest commit of a folder is found,
+     * ignoring later commits that changed other files.
+     *
+     * @throws IOException if the repository could not be read
+     */
+    @Test
+    public void testLatestCommitHash() throws IOException
+    {
+        try
+            (LocalGitMirror mirror = new LocalGitMirror(repositoryFolder)) {
+            assertEquals(headCommitHash, mirror.getHeadCommitHash());
+            assertEquals(datasetCommitHash, mirror.getLatestCommitHash(SoepConstants.DATASETS_FOLDER));
+        }
+    }
+
+
+    /**
+     * Tests if the files of a folder are listed with their
+     * relative paths and sizes, skipping the files of sub-folders.
+     *
+     * @throws IOException if the repository could not be read
+     */
+    @Test
+    public void testListFiles() throws IOException
+    {
+        try
+            (LocalGitMirror mirror = new LocalGitMirror(repositoryFolder)) {
+            final List<GitHubTreeEntry> entries = mirror.listFiles(SoepConstants.DATASETS_FOLDER);
+
+            assertEquals(1, entries.size());
+            assertEquals("ap.json", entries.get(0).getPath());
+            assertEquals(DATASET_FILE_CONTENT.length(), entries.get(0).getSize());
+        }
+    }
+
+
+    /**
+     * Tests if files can be read from a bare mirror of the repository.
+     *
+     * @throws IOException if the repository could not be read
+     * @throws GitAPIException if the repository could not be mirrored
+     */
+    @Test
+    public void testBareMirror() throws IOException, GitAPIException
+    {
+        final File mirrorFolder = tempFolder.newFolder("soep-core.git");
+
+        Git.cloneRepository()
+        .setURI(repositoryFolder.toURI().toString())
+        .setDirectory(mirrorFolder)
+        .setBare(true)
+        .call()
+        .close();
+
+        try
+            (LocalGitMirror mirror = new LocalGitMirror(mirrorFolder);
+             InputStream csvInput = mirror.openFile(SoepConstants.VARIABLES_CSV_PATH)) {
+            assertEquals(headCommitHash, mirror.getHeadCommitHash());
+            assertEquals(VARIABLES_CSV_CONTENT, new String(readAllBytes(csvInput), StandardCharsets.UTF_8));
+        }
+    }
+
+
+    /**
+     * Tests if missing files cause an exception.
+     *
+     * @throws IOException if the repository could not be read
+     */
+    @Test(expected = FileNotFoundException.class)
+    public void testMissingFile() throws IOException
+    {
+        try
+            (LocalGitMirror mirror = new LocalGitMirror(repositoryFolder)) {
+            mirror.openFile(SoepConstants.CONCEPTS_CSV_PATH);
+        }
+    }
+
+
+    /**
+     * Writes a file to the repository folder.
+     *
+     * @param path the path of the file within the repository
+     * @param content the content of the file
+     *
+     * @throws IOException if the file could not be written
+     */
+    private void writeFile(final String path, final String content) throws IOException
+    {
+        final File file = new File(repositoryFolder, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    /**
+     * Commits all files of the repository folder.
+     *
+     * @param git the repository
+     * @param message the commit message
+     *
+     * @throws GitAPIException if the files could not be committed
+     *
+     * @return the created commit
+     */
+    private static RevCommit commit(final Git git, final String message) throws GitAPIException
+    {
+        git.add().addFilepattern(".").call();
+        return git.commit()
+               .setMessage(message)
+               .setAuthor("Mocked Author", "author@mo.ck")
+               .setCommitter("Mocked Author", "author@mo.ck")
+               .setSign(false)
+               .call();
+    }
+
+
+    /**
+     * Reads all bytes of a stream.
+     *
+     * @param input the stream to be read
+     *
+     * @throws IOException if the stream could not be read
+     *
+     * @return all bytes of the stream
+     */
+    private static byte[] readAllBytes(final InputStream input) throws IOException
+    {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1024];
+        int readBytes;
+
+        while ((readBytes = input.read(buffer)) != -1)
+            output.write(buffer, 0, readBytes);
+
+        return output.toByteArray();
+    }
+}
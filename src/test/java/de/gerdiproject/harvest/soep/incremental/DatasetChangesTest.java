@@ -0,0 +1,194 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.soep.incremental;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.google.gson.Gson;
+
+import de.gerdiproject.harvest.github.json.GitHubComparison;
+
+/**
+ * This class provides Unit Tests for the {@linkplain DatasetChanges}.
+ *
+ * @author Robin Weiss
+ */
+public class DatasetChangesTest
+{
+    private static final String COMPARE_RESPONSE_PATH =
+        "src/test/resources/de/gerdiproject/harvest/soep/incremental/DatasetChangesTest/"
+        + "mockedHttpResponses/api.github.com/repos/paneldata/soep-core/compare/harvestedCommitHash...%s.response";
+
+
+    /**
+     * Tests if changed, renamed, and removed dataset files, as well as changed
+     * CSV rows are mapped to the datasets and concepts they belong to.
+     *
+     * @throws IOException if the mocked response could not be read
+     */
+    @Test
+    public void testChanges() throws IOException
+    {
+        final DatasetChanges changes = DatasetChanges.fromComparison(readComparison("mockedCommitHash"));
+
+        assertEquals(new HashSet<>(Arrays.asList("ap", "cp_new", "ep", "fp")), changes.getChangedDatasets());
+        assertEquals(
+            new HashSet<>(Arrays.asList("ddionrails/datasets/bp.json", "ddionrails/datasets/cp.json")),
+            new HashSet<>(changes.getRemovedDatasetPaths()));
+        assertEquals(new HashSet<>(Arrays.asList("concept_q")), changes.getChangedConcepts());
+        assertEquals(Collections.emptySet(), changes.getRemovedMetadataDatasets());
+    }
+
+
+    /**
+     * Tests if changed CSV records that span multiple lines are mapped to their
+     * datasets and concepts, and if datasets whose "datasets.csv" rows were
+     * removed are collected as removed.
+     *
+     * @throws IOException if the mocked response could not be read
+     */
+    @Test
+    public void testMultiLineRecords() throws IOException
+    {
+        final DatasetChanges changes = DatasetChanges.fromComparison(readComparison("multiLineCommitHash"));
+
+        assertEquals(new HashSet<>(Arrays.asList("ap", "hp")), changes.getChangedDatasets());
+        assertEquals(Collections.singleton("hp"), changes.getRemovedMetadataDatasets());
+        assertEquals(Collections.singleton("concept_q"), changes.getChangedConcepts());
+    }
+
+
+    /**
+     * Tests if a patch that does not consist of complete CSV records
+     * cannot be mapped to datasets.
+     *
+     * @throws IOException if the mocked response could not be read
+     */
+    @Test(expected = IOException.class)
+    public void testSplitRecord() throws IOException
+    {
+        DatasetChanges.fromComparison(readComparison("splitRecordCommitHash"));
+    }
+
+
+    /**
+     * Tests if the names of changed CSV records are checked against the
+     * known datasets and concepts, counting removed dataset files as known.
+     *
+     * @throws IOException if the mocked response could not be read
+     */
+    @Test
+    public void testKnownRecordNames() throws IOException
+    {
+        final DatasetChanges changes = DatasetChanges.fromComparison(readComparison("mockedCommitHash"));
+        final Set<String> knownDatasets = new HashSet<>(Arrays.asList("ep", "fp"));
+        final Set<String> knownConcepts = Collections.singleton("concept_q");
+
+        assertTrue(changes.hasKnownRecordNames(knownDatasets::contains, knownConcepts::contains));
+        assertFalse(changes.hasKnownRecordNames(Collections.singleton("ep")::contains, knownConcepts::contains));
+        assertFalse(changes.hasKnownRecordNames(knownDatasets::contains, Collections.<String>emptySet()::contains));
+    }
+
+
+    /**
+     * Tests if a hunk that starts inside a quoted field, and whose lines contain
+     * no quotes, yields names that are not known as datasets.
+     *
+     * @throws IOException if the mocked response could not be read
+     */
+    @Test
+    public void testQuoteFreeFragment() throws IOException
+    {
+        final DatasetChanges changes = DatasetChanges.fromComparison(readComparison("fragmentCommitHash"));
+        final Set<String> knownDatasets = new HashSet<>(Arrays.asList("ap", "bp"));
+
+        assertFalse(changes.hasKnownRecordNames(knownDatasets::contains, (final String conceptName) -> true));
+    }
+
+
+    /**
+     * Tests if a changed fragment of a quoted field that has too few
+     * columns to contain a name cannot be mapped to datasets.
+     *
+     * @throws IOException if the mocked response could not be read
+     */
+    @Test(expected = IOException.class)
+    public void testNamelessFragment() throws IOException
+    {
+        DatasetChanges.fromComparison(readComparison("namelessFragmentCommitHash"));
+    }
+
+
+    /**
+     * Tests if diverged commits require a full harvest.
+     *
+     * @throws IOException if the mocked response could not be read
+     */
+    @Test
+    public void testDivergedCommits() throws IOException
+    {
+        assertNull(DatasetChanges.fromComparison(readComparison("divergedCommitHash")));
+    }
+
+
+    /**
+     * Tests if CSV files with a diff that is too large to be listed
+     * require a full harvest.
+     *
+     * @throws IOException if the mocked response could not be read
+     */
+    @Test
+    public void testMissingPatch() throws IOException
+    {
+        assertNull(DatasetChanges.fromComparison(readComparison("largeCommitHash")));
+    }
+
+
+    /**
+     * Reads a mocked response of a GitHub compare request.
+     *
+     * @param headCommitHash the hash of the newer commit of the comparison
+     *
+     * @throws IOException if the mocked response could not be read
+     *
+     * @return the parsed comparison
+     */
+    private static GitHubComparison readComparison(final String headCommitHash) throws IOException
+    {
+        final File responseFile = new File(String.format(COMPARE_RESPONSE_PATH, headCommitHash));
+
+        try
+            (Reader reader = Files.newBufferedReader(responseFile.toPath(), StandardCharsets.UTF_8)) {
+            return new Gson().fromJson(reader, GitHubComparison.class);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.soep.incremental;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.gerdiproject.harvest.github.json.GitHubContent;
+import de.gerdiproject.harvest.soep.csv.ConceptMetadata;
+import de.gerdiproject.harvest.soep.csv.DatasetMetadata;
+import de.gerdiproject.harvest.soep.store.VariableStore;
+import de.gerdiproject.harvest.utils.csv.ArrayCsvRow;
+
+/**
+ * This class provides Unit Tests for the {@linkplain DocumentFingerprint}
+ * and the {@linkplain DocumentFingerprintFile}.
+ *
+ * @author Robin Weiss
+ */
+public class DocumentFingerprintTest
+{
+    private static final String DATASET_PATH = "ddionrails/datasets/ap.csv";
+
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+
+
+    /**
+     * Tests if equal inputs result in equal fingerprints.
+     */
+    @Test
+    public void testEqualInputs()
+    {
+        assertEquals(
+            computeFingerprint("sha1", "Personen", "Concept"),
+            computeFingerprint("sha1", "Personen", "Concept"));
+    }
+
+
+    /**
+     * Tests if the fingerprint changes if the dataset file changes.
+     */
+    @Test
+    public void testChangedFile()
+    {
+        assertNotEquals(
+            computeFingerprint("sha1", "Personen", "Concept"),
+            computeFingerprint("sha2", "Personen", "Concept"));
+    }
+
+
+    /**
+     * Tests if the fingerprint changes if the dataset row changes.
+     */
+    @Test
+    public void testChangedDataset()
+    {
+        assertNotEquals(
+            computeFingerprint("sha1", "Personen", "Concept"),
+            computeFingerprint("sha1", "Persons", "Concept"));
+    }
+
+
+    /**
+     * Tests if the fingerprint changes if a concept of a variable changes.
+     */
+    @Test
+    public void testChangedConcept()
+    {
+        assertNotEquals(
+            computeFingerprint("sha1", "Personen", "Concept"),
+            computeFingerprint("sha1", "Personen", "Changed concept"));
+    }
+
+
+    /**
+     * Tests if stored fingerprints can be loaded again.
+     */
+    @Test
+    public void testFileRoundTrip()
+    {
+        final DocumentFingerprintFile fingerprintFile =
+            new DocumentFingerprintFile(new File(testFolder.getRoot(), "fingerprints.txt"));
+        assertTrue(fingerprintFile.load().isEmpty());
+
+        final Map<String, String> fingerprints = new HashMap<>();
+        fingerprints.put(DATASET_PATH, computeFingerprint("sha1", "Personen", "Concept"));
+        fingerprints.put("ddionrails/datasets/file with spaces.csv", computeFingerprint("sha2", "Personen", "Concept"));
+        fingerprintFile.save(fingerprints, Collections.singletonMap(DATASET_PATH, 2));
+
+        assertEquals(fingerprints, fingerprintFile.load());
+        assertEquals(Collections.singletonMap(DATASET_PATH, 2), fingerprintFile.loadPartCounts());
+    }
+
+
+    /**
+     * Tests if the part counts of split datasets are stored, even if
+     * no fingerprints were computed.
+     */
+    @Test
+    public void testPartCountsWithoutFingerprints()
+    {
+        final DocumentFingerprintFile fingerprintFile =
+            new DocumentFingerprintFile(new File(testFolder.getRoot(), "fingerprints.txt"));
+
+        final Map<String, Integer> partCounts = new HashMap<>();
+        partCounts.put(DATASET_PATH, 4);
+        partCounts.put("ddionrails/datasets/file with spaces.csv", 1);
+        fingerprintFile.save(null, partCounts);
+
+        assertTrue(fingerprintFile.load().isEmpty());
+        assertEquals(partCounts, fingerprintFile.loadPartCounts());
+    }
+
+
+    /**
+     * Tests if files that were written before part counts were stored can still be read.
+     *
+     * @throws IOException if the file could not be written
+     */
+    @Test
+    public void testFileWithoutPartCounts() throws IOException
+    {
+        final File file = new File(testFolder.getRoot(), "fingerprints.txt");
+        Files.write(file.toPath(), Collections.singletonList("abc123 ddionrails/datasets/file with spaces.csv"), StandardCharsets.UTF_8);
+
+        final DocumentFingerprintFile fingerprintFile = new DocumentFingerprintFile(file);
+
+        assertEquals(Collections.singletonMap("ddionrails/datasets/file with spaces.csv", "abc123"), fingerprintFile.load());
+        assertTrue(fingerprintFile.loadPartCounts().isEmpty());
+    }
+
+
+    /**
+     * Computes the fingerprint of a dataset with a single variable.
+     *
+     * @param fileSha the Git hash of the dataset file
+     * @param datasetLabel the label of the dataset
+     * @param conceptLabel the label of the concept of the variable
+     *
+     * @return the fingerprint of the dataset
+     */
+    private static String computeFingerprint(final String fileSha, final String datasetLabel, final String conceptLabel)
+    {
+        final GitHubContent content = new GitHubContent();
+        content.setPath(DATASET_PATH);
+        content.setName("ap.csv");
+        content.setSha(fileSha);
+
+        final DatasetMetadata dataset = new DatasetMetadata(
+            new ArrayCsvRow("soep-core", "ap", "1984", "p", "p", datasetLabel, null));
+
+        final VariableStore variableStore = new VariableStore();
+        variableStore.add("ap", "ap01", "concept_a", "source_1");
+        variableStore.finish();
+        variableStore.joinConcepts(Collections.singletonMap(
+                                       "concept_a",
+                                       new ConceptMetadata(new ArrayCsvRow("concept_a", "t", "topic", "Konzept", conceptLabel))));
+
+        return DocumentFingerprint.compute(content, dataset, variableStore.getDatasetVariables("ap"), 0);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.soep.incremental;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * This class provides Unit Tests for the {@linkplain HarvestCheckpoint}.
+ *
+ * @author Robin Weiss
+ */
+public class HarvestCheckpointTest
+{
+    private static final String COMMIT_HASH = "mockedCommitHash";
+    private static final Map<String, String> FINGERPRINTS =
+        Collections.singletonMap("ddionrails/datasets/ap.csv", "mockedFingerprint");
+    private static final Map<String, Integer> PART_COUNTS =
+        Collections.singletonMap("ddionrails/datasets/ap.csv", 3);
+
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+
+    private HarvestedCommitFile harvestedCommitFile;
+    private DocumentFingerprintFile fingerprintFile;
+    private HarvestCheckpoint checkpoint;
+
+
+    /**
+     * Creates a checkpoint that stores its state in a temporary folder.
+     */
+    @Before
+    public void before()
+    {
+        harvestedCommitFile = new HarvestedCommitFile(new File(testFolder.getRoot(), "harvestedCommit.txt"));
+        fingerprintFile = new DocumentFingerprintFile(new File(testFolder.getRoot(), "fingerprints.txt"));
+        checkpoint = new HarvestCheckpoint(harvestedCommitFile, fingerprintFile);
+    }
+
+
+    /**
+     * Tests if nothing is stored if all datasets were extracted,
+     * but the loader failed.
+     */
+    @Test
+    public void testFailedLoad()
+    {
+        checkpoint.begin(COMMIT_HASH, FINGERPRINTS, PART_COUNTS);
+        checkpoint.markExtracted();
+
+        assertNull(harvestedCommitFile.load());
+        assertTrue(fingerprintFile.load().isEmpty());
+    }
+
+
+    /**
+     * Tests if nothing is stored if the documents were loaded,
+     * but not all datasets were extracted.
+     */
+    @Test
+    public void testIncompleteExtraction()
+    {
+        checkpoint.begin(COMMIT_HASH, FINGERPRINTS, PART_COUNTS);
+        checkpoint.markLoaded();
+
+        assertNull(harvestedCommitFile.load());
+        assertTrue(fingerprintFile.load().isEmpty());
+    }
+
+
+    /**
+     * Tests if the commit hash and the fingerprints are stored
+     * once all documents were extracted and loaded, regardless of
+     * which of both finishes last.
+     */
+    @Test
+    public void testCompletedHarvest()
+    {
+        checkpoint.begin(COMMIT_HASH, FINGERPRINTS, PART_COUNTS);
+        checkpoint.markLoaded();
+        checkpoint.markExtracted();
+
+        assertEquals(COMMIT_HASH, harvestedCommitFile.load());
+        assertEquals(FINGERPRINTS, fingerprintFile.load());
+        assertEquals(PART_COUNTS, fingerprintFile.loadPartCounts());
+    }
+
+
+    /**
+     * Tests if the state of a harvest whose loader failed is not stored
+     * when the next harvest completes.
+     */
+    @Test
+    public void testFailedLoadIsDiscarded()
+    {
+        checkpoint.begin(COMMIT_HASH, FINGERPRINTS, PART_COUNTS);
+        checkpoint.markExtracted();
+
+        checkpoint.begin(null, null, null);
+        checkpoint.markExtracted();
+        checkpoint.markLoaded();
+
+        assertNull(harvestedCommitFile.load());
+        assertTrue(fingerprintFile.load().isEmpty());
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.soep.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * This class provides Unit Tests for the {@linkplain FlightRecorderEvent}s.
+ * Since the harvester is compiled for Java 8, recordings are started and
+ * read via reflection.
+ *
+ * @author Robin Weiss
+ */
+public class FlightRecorderEventTest
+{
+    private static final String CSV_PARSE_EVENT_NAME = "de.gerdiproject.soep.CsvParse";
+
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+
+
+    /**
+     * Tests if events are disabled if no recording is running.
+     */
+    @Test
+    public void testDisabledWithoutRecording()
+    {
+        final FlightRecorderEvent event = FlightRecorderEventType.CSV_PARSE.begin();
+
+        assertFalse(event.isRecording());
+        assertFalse(event.shouldCommit());
+
+        // committing a disabled event must not fail
+        event.commit("variables.csv", 1L);
+    }
+
+
+    /**
+     * Tests if committed events and their fields are written to a recording.
+     *
+     * @throws ReflectiveOperationException thrown when the Flight Recorder API could not be called
+     */
+    @Test
+    public void testRecordedEvent() throws ReflectiveOperationException
+    {
+        assumeTrue(isFlightRecorderAvailable());
+
+        final Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+        final Object recording = recordingClass.getConstructor().newInstance();
+        final Path recordingFile = new File(testFolder.getRoot(), "test.jfr").toPath();
+
+        try {
+            recordingClass.getMethod("enable", String.class).invoke(recording, CSV_PARSE_EVENT_NAME);
+            recordingClass.getMethod("start").invoke(recording);
+
+            final FlightRecorderEvent event = FlightRecorderEventType.CSV_PARSE.begin();
+            assertTrue(event.isRecording());
+            event.commit("variables.csv", 42L);
+
+            recordingClass.getMethod("stop").invoke(recording);
+            recordingClass.getMethod("dump", Path.class).invoke(recording, recordingFile);
+        } finally {
+            recordingClass.getMethod("close").invoke(recording);
+        }
+
+        final List<?> recordedEvents = (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile")
+                                       .getMethod("readAllEvents", Path.class)
+                                       .invoke(null, recordingFile);
+        int eventCount = 0;
+
+        for (final Object recordedEvent : recordedEvents) {
+            final Object eventType = recordedEvent.getClass().getMethod("getEventType").invoke(recordedEvent);
+
+            if (CSV_PARSE_EVENT_NAME.equals(eventType.getClass().getMethod("getName").invoke(eventType))) {
+                final Method getValue = recordedEvent.getClass().getMethod("getValue", String.class);
+                assertEquals("variables.csv", getValue.invoke(recordedEvent, "file"));
+                assertEquals(42L, getValue.invoke(recordedEvent, "rows"));
+                eventCount++;
+            }
+        }
+
+        assertEquals(1, eventCount);
+    }
+
+
+    /**
+     * Checks if the JVM of the test provides the Flight Recorder API.
+     *
+     * @return true if the Flight Recorder API is available
+     */
+    private static boolean isFlightRecorderAvailable()
+    {
+        try {
+            Class.forName("jdk.jfr.EventFactory");
+            return true;
+        } catch (final ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
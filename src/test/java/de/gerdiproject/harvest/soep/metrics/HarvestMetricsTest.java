@@ -0,0 +1,244 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.soep.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import de.gerdiproject.harvest.etls.extractors.PrefetchingIterator;
+import de.gerdiproject.harvest.soep.constants.SoepConstants;
+import de.gerdiproject.harvest.utils.CsvRequester;
+
+/**
+ * This class provides Unit Tests for the {@linkplain HarvestMetrics}
+ * and the {@linkplain PhaseTimer}.
+ *
+ * @author Robin Weiss
+ */
+public class HarvestMetricsTest
+{
+    private static final double DELTA = 0.0001;
+
+
+    /**
+     * Tests if the count, total and maximum of recorded durations are correct.
+     */
+    @Test
+    public void testPhaseStatistics()
+    {
+        final PhaseTimer timer = new PhaseTimer(HarvestPhase.TRANSFORM);
+        timer.recordNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        timer.recordNanos(TimeUnit.MILLISECONDS.toNanos(3));
+
+        final PhaseStatistics statistics = timer.getStatistics();
+
+        assertEquals(HarvestPhase.TRANSFORM.getDisplayName(), statistics.getPhase());
+        assertEquals(2, statistics.getCount());
+        assertEquals(4, statistics.getTotalMillis(), DELTA);
+        assertEquals(2, statistics.getMeanMillis(), DELTA);
+        assertEquals(3, statistics.getMaxMillis(), DELTA);
+    }
+
+
+    /**
+     * Tests if percentiles are estimated by the upper bound of their
+     * histogram bucket, and never exceed the maximum duration.
+     */
+    @Test
+    public void testPercentiles()
+    {
+        final PhaseTimer timer = new PhaseTimer(HarvestPhase.EXTRACT);
+
+        // 99 durations of 100 microseconds, which are counted by the bucket of less than 128 microseconds
+        for (int i = 0; i < 99; i++)
+            timer.recordNanos(TimeUnit.MICROSECONDS.toNanos(100));
+
+        timer.recordNanos(TimeUnit.SECONDS.toNanos(1));
+
+        assertEquals(0.128, timer.getPercentileMillis(50), DELTA);
+        assertEquals(0.128, timer.getPercentileMillis(99), DELTA);
+        assertEquals(1000, timer.getPercentileMillis(100), DELTA);
+    }
+
+
+    /**
+     * Tests if the percentiles of a timer without durations are 0.
+     */
+    @Test
+    public void testEmptyPercentiles()
+    {
+        assertEquals(0, new PhaseTimer(HarvestPhase.CSV_PARSE).getPercentileMillis(50), DELTA);
+    }
+
+
+    /**
+     * Tests if starting a harvest removes the metrics of the previous harvest.
+     */
+    @Test
+    public void testStartResetsMetrics()
+    {
+        final HarvestMetrics metrics = new HarvestMetrics();
+        metrics.start();
+        metrics.addRowsParsed(10);
+        metrics.addBytesRead(100);
+        metrics.getTimer(HarvestPhase.TRANSFORM).recordNanos(1);
+        metrics.finish();
+
+        assertEquals(1, metrics.getDocumentsTransformed());
+
+        metrics.start();
+
+        assertEquals(0, metrics.getRowsParsed());
+        assertEquals(0, metrics.getBytesRead());
+        assertEquals(0, metrics.getDocumentsTransformed());
+    }
+
+
+    /**
+     * Tests if the rows and bytes of a parsed CSV file are counted.
+     *
+     * @throws IOException thrown when the CSV file could not be parsed
+     */
+    @Test
+    public void testCsvMetrics() throws IOException
+    {
+        final byte[] csv = "name,label\na,Label A\nb,\"Label, B\"\n".getBytes(StandardCharsets.UTF_8);
+        final HarvestMetrics metrics = new HarvestMetrics();
+        metrics.start();
+
+        final CsvRequester csvRequester = new CsvRequester();
+        csvRequester.setHarvestMetrics(metrics);
+        csvRequester.parseCsvStream(new ByteArrayInputStream(csv), row -> { });
+
+        assertEquals(2, metrics.getRowsParsed());
+        assertEquals(csv.length, metrics.getBytesRead());
+        assertEquals(1, metrics.getTimer(HarvestPhase.CSV_PARSE).getCount());
+    }
+
+
+    /**
+     * Tests if the time between retrieving a document and asking for the next
+     * one is recorded as the loading of the document.
+     *
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void testLoadMetrics() throws InterruptedException
+    {
+        final HarvestMetrics metrics = new HarvestMetrics();
+        metrics.start();
+
+        final Iterator<String> iter = new LoadTimingIterator<>(Arrays.asList("a", "b").iterator(), metrics);
+
+        while (iter.hasNext()) {
+            iter.next();
+            Thread.sleep(5);
+        }
+
+        assertEquals(2, metrics.getDocumentsLoaded());
+        assertTrue(metrics.getTimer(HarvestPhase.LOAD).getStatistics().getTotalMillis() >= 10);
+    }
+
+
+    /**
+     * Tests if the numbers of changed and skipped documents are published,
+     * and removed when the next harvest starts.
+     */
+    @Test
+    public void testDocumentCounts()
+    {
+        final HarvestMetrics metrics = new HarvestMetrics();
+        metrics.start();
+        metrics.setDocumentCounts(3, 7);
+
+        assertEquals(3, metrics.getDocumentsChanged());
+        assertEquals(7, metrics.getDocumentsSkipped());
+
+        metrics.start();
+
+        assertEquals(0, metrics.getDocumentsSkipped());
+    }
+
+
+    /**
+     * Tests if the queue of the prefetching iterator is published,
+     * and removed when the next harvest starts.
+     */
+    @Test
+    public void testPrefetchMetrics()
+    {
+        final HarvestMetrics metrics = new HarvestMetrics();
+        metrics.start();
+
+        assertEquals(0, metrics.getPrefetchCapacity());
+
+        try
+            (PrefetchingIterator<String> iter = new PrefetchingIterator<>(Arrays.asList("a", "b", "c").iterator(), 2, "TestPrefetcher")) {
+            metrics.setPrefetchingIterator(iter);
+            iter.forEachRemaining((final String s) -> { });
+
+            assertEquals(2, metrics.getPrefetchCapacity());
+            assertEquals(0, metrics.getPrefetchQueueDepth());
+            assertEquals(iter.getConsumerStallMillis(), metrics.getPrefetchConsumerStallMillis());
+        }
+
+        metrics.start();
+
+        assertEquals(0, metrics.getPrefetchCapacity());
+    }
+
+
+    /**
+     * Tests if the metrics are published via JMX, replacing previously published metrics.
+     *
+     * @throws JMException thrown when the MBean could not be found
+     */
+    @Test
+    public void testRegisterMBean() throws JMException
+    {
+        final ObjectName objectName = new ObjectName(String.format(SoepConstants.METRICS_MBEAN_NAME, "metricsTest"));
+        new HarvestMetrics().registerMBean("metricsTest");
+
+        final HarvestMetrics metrics = new HarvestMetrics();
+        metrics.start();
+        metrics.addRowsParsed(42);
+        metrics.registerMBean("metricsTest");
+
+        try {
+            assertEquals(42L, ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "RowsParsed"));
+            assertEquals(
+                HarvestPhase.values().length,
+                ((Object[]) ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "Phases")).length);
+            assertTrue(metrics.getSummary().contains("42 CSV rows"));
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        }
+    }
+}
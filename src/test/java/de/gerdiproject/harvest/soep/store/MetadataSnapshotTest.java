@@ -0,0 +1,154 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.soep.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.gerdiproject.harvest.soep.csv.ConceptMetadata;
+import de.gerdiproject.harvest.soep.csv.DatasetMetadata;
+import de.gerdiproject.harvest.utils.csv.ArrayCsvRow;
+
+/**
+ * This class provides Unit Tests for the {@linkplain MetadataSnapshot}.
+ *
+ * @author Robin Weiss
+ */
+public class MetadataSnapshotTest
+{
+    private static final String COMMIT_HASH = "0123456789abcdef0123456789abcdef01234567";
+    private static final String OTHER_COMMIT_HASH = "fedcba9876543210fedcba9876543210fedcba98";
+
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+
+    private File snapshotFile;
+    private Map<String, DatasetMetadata> datasets;
+    private VariableStore variableStore;
+
+
+    /**
+     * Creates the metadata of two datasets and writes them to a snapshot.
+     *
+     * @throws IOException if the snapshot could not be written
+     */
+    @Before
+    public void before() throws IOException
+    {
+        final DatasetMetadata dataset = new DatasetMetadata(
+            new ArrayCsvRow("soep-core", "ap", "1984", "p", "p", "Personen", null));
+        datasets = Collections.singletonMap(dataset.getDatasetName(), dataset);
+
+        variableStore = new VariableStore();
+        variableStore.add("ap", "ap01", "concept_a", "source_1");
+        variableStore.add("bp", "bp01", "", "source_2");
+        variableStore.add("ap", "ap02", "concept_ä", "source_1");
+        variableStore.finish();
+        variableStore.joinConcepts(Collections.singletonMap(
+                                       "concept_a",
+                                       new ConceptMetadata(new ArrayCsvRow("concept_a", "t", "topic", "Konzept", "Concept"))));
+
+        snapshotFile = new File(testFolder.getRoot(), COMMIT_HASH);
+        MetadataSnapshot.write(snapshotFile, COMMIT_HASH, datasets, variableStore);
+    }
+
+
+    /**
+     * Tests if a snapshot restores the datasets and variables that were written to it.
+     *
+     * @throws IOException if the snapshot could not be read
+     */
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        final MetadataSnapshot snapshot = MetadataSnapshot.read(snapshotFile, COMMIT_HASH);
+
+        assertEquals(datasets, snapshot.getDatasets());
+        assertEquals(variableStore.size(), snapshot.getVariableStore().size());
+
+        for (final String datasetName : new String[] {"ap", "bp", "zz"}) {
+            assertEquals(
+                variableStore.getDatasetVariables(datasetName),
+                snapshot.getVariableStore().getDatasetVariables(datasetName));
+        }
+
+        final DatasetVariables apVariables = snapshot.getVariableStore().getDatasetVariables("ap");
+        assertEquals("Concept", apVariables.getConcept(0).getLabel());
+        assertNull(apVariables.getConcept(1));
+    }
+
+
+    /**
+     * Tests if snapshots of a different commit are rejected.
+     *
+     * @throws IOException if the snapshot is out of date
+     */
+    @Test(expected = IOException.class)
+    public void testOutdatedSnapshot() throws IOException
+    {
+        MetadataSnapshot.read(snapshotFile, OTHER_COMMIT_HASH);
+    }
+
+
+    /**
+     * Tests if snapshots with a modified body are rejected.
+     *
+     * @throws IOException if the snapshot is corrupt
+     */
+    @Test(expected = IOException.class)
+    public void testCorruptSnapshot() throws IOException
+    {
+        try
+            (RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw")) {
+            final long lastBytePosition = file.length() - 1;
+            file.seek(lastBytePosition);
+            final int lastByte = file.read();
+            file.seek(lastBytePosition);
+            file.write(lastByte ^ 0xFF);
+        }
+
+        MetadataSnapshot.read(snapshotFile, COMMIT_HASH);
+    }
+
+
+    /**
+     * Tests if truncated snapshots are rejected.
+     *
+     * @throws IOException if the snapshot is corrupt
+     */
+    @Test(expected = IOException.class)
+    public void testTruncatedSnapshot() throws IOException
+    {
+        try
+            (RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw")) {
+            file.setLength(file.length() / 2);
+        }
+
+        MetadataSnapshot.read(snapshotFile, COMMIT_HASH);
+    }
+}
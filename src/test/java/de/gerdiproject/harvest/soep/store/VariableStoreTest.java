@@ -0,0 +1,156 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.soep.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+/**
+ * This class provides Unit Tests for the {@linkplain VariableStore}.
+ *
+ * @author Robin Weiss
+ */
+public class VariableStoreTest
+{
+    /**
+     * Tests if the variables of each dataset can be retrieved in the order
+     * in which they were added, even if the datasets were interleaved.
+     */
+    @Test
+    public void testGroupingByDataset()
+    {
+        final VariableStore store = new VariableStore();
+        store.add("ap", "ap01", "concept_a", "source_1");
+        store.add("bp", "bp01", "", "source_2");
+        store.add("ap", "ap02", "concept_b", "source_1");
+        store.finish();
+
+        final DatasetVariables apVariables = store.getDatasetVariables("ap");
+        assertEquals(2, apVariables.size());
+        assertEquals("ap01", apVariables.getVariableName(0));
+        assertEquals("ap02", apVariables.getVariableName(1));
+        assertEquals("concept_b", apVariables.getConceptName(1));
+        assertEquals("source_1", apVariables.getSource(1));
+
+        final DatasetVariables bpVariables = store.getDatasetVariables("bp");
+        assertEquals(1, bpVariables.size());
+        assertEquals("", bpVariables.getConceptName(0));
+    }
+
+
+    /**
+     * Tests if datasets without variables yield an empty view.
+     */
+    @Test
+    public void testUnknownDataset()
+    {
+        final VariableStore store = new VariableStore();
+        store.add("ap", "ap01", "concept_a", "source_1");
+        store.finish();
+
+        assertEquals(0, store.getDatasetVariables("zz").size());
+    }
+
+
+    /**
+     * Tests if variables cannot be added after the store was finished.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testAddingAfterFinish()
+    {
+        final VariableStore store = new VariableStore();
+        store.finish();
+        store.add("ap", "ap01", "concept_a", "source_1");
+    }
+
+
+    /**
+     * Tests if a range of the variables of a dataset can be viewed,
+     * as required for splitting datasets into several documents.
+     */
+    @Test
+    public void testSlice()
+    {
+        final VariableStore store = new VariableStore();
+        store.add("ap", "ap01", "concept_a", "source_1");
+        store.add("ap", "ap02", "concept_b", "source_1");
+        store.add("ap", "ap03", "concept_c", "source_2");
+        store.finish();
+
+        final DatasetVariables slice = store.getDatasetVariables("ap").slice(1, 3);
+        assertEquals(2, slice.size());
+        assertEquals("ap02", slice.getVariableName(0));
+        assertEquals("source_2", slice.getSource(1));
+
+        assertEquals(0, store.getDatasetVariables("ap").slice(0, 0).size());
+    }
+
+
+    /**
+     * Tests if slices cannot exceed the variables of a dataset.
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testSliceOutOfBounds()
+    {
+        final VariableStore store = new VariableStore();
+        store.add("ap", "ap01", "concept_a", "source_1");
+        store.finish();
+
+        store.getDatasetVariables("ap").slice(0, 2);
+    }
+
+
+    /**
+     * Tests if the datasets that use a concept can be retrieved.
+     */
+    @Test
+    public void testDatasetsOfConcepts()
+    {
+        final VariableStore store = new VariableStore();
+        store.add("ap", "ap01", "concept_a", "source_1");
+        store.add("bp", "bp01", "concept_b", "source_2");
+        store.add("cp", "cp01", "concept_a", "source_1");
+        store.finish();
+
+        assertEquals(
+            new HashSet<>(Arrays.asList("ap", "cp")),
+            store.getDatasetsOfConcepts(Arrays.asList("concept_a", "unknown_concept")));
+    }
+
+
+    /**
+     * Tests if the datasets and concepts of the variables are known.
+     */
+    @Test
+    public void testContains()
+    {
+        final VariableStore store = new VariableStore();
+        store.add("ap", "ap01", "concept_a", "source_1");
+        store.finish();
+
+        assertTrue(store.containsDataset("ap"));
+        assertFalse(store.containsDataset("bp"));
+        assertTrue(store.containsConcept("concept_a"));
+        assertFalse(store.containsConcept("concept_b"));
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import de.gerdiproject.harvest.github.json.GitHubTree;
+import de.gerdiproject.harvest.utils.csv.CsvRow;
+import de.gerdiproject.harvest.utils.data.HttpRequesterUtils;
+import de.gerdiproject.harvest.utils.http.KeepAliveHttpTransport;
+
+/**
+ * This class provides Unit Tests for the disk cache of the {@linkplain CsvRequester}.
+ * GitHub is mocked by a local HTTP server that answers conditional requests
+ * with "304 Not Modified" if the ETag of its current response was sent.
+ *
+ * @author Robin Weiss
+ */
+public class CsvRequesterTest
+{
+    private static final int TIMEOUT_MS = 2000;
+    private static final String CSV_PATH = "/ddionrails/variables.csv";
+    private static final String JSON_PATH = "/repos/paneldata/soep-core/git/trees/master";
+    private static final String CSV_BODY = "study,dataset,name\nsoep-core,ap,ap01\nsoep-core,ap,ap02\n";
+    private static final String CHANGED_CSV_BODY = "study,dataset,name\nsoep-core,bp,bp01\n";
+    private static final String JSON_BODY = "{\"sha\" : \"9000DEF\", \"truncated\" : false}";
+    private static final String ETAG = "\"v1\"";
+    private static final String CHANGED_ETAG = "\"v2\"";
+    private static final String LAST_MODIFIED = "Wed, 21 Oct 2015 07:28:00 GMT";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    // the validators of all received requests, which are null if they were not sent
+    private final List<String> receivedETags = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> receivedDates = Collections.synchronizedList(new ArrayList<>());
+    private volatile String responseBody;
+    private volatile String responseETag;
+    private HttpServer server;
+    private String baseUrl;
+    private CsvRequester requester;
+
+
+    /**
+     * Starts the mocked server and creates a requester that
+     * writes all responses to a temporary cache folder.
+     *
+     * @throws IOException if the server could not be started
+     */
+    @Before
+    public void before() throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::respond);
+        server.start();
+
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        responseBody = CSV_BODY;
+        responseETag = ETAG;
+
+        final String cacheFolder = tempFolder.newFolder("cache").getPath() + File.separator;
+
+        // the cache parameters are fixed, so the test does not depend on the configuration
+        requester = new CsvRequester() {
+            @Override
+            public boolean isReadingFromDisk()
+            {
+                return false;
+            }
+
+
+            @Override
+            public boolean isWritingToDisk()
+            {
+                return true;
+            }
+
+
+            @Override
+            public String getCacheFolder()
+            {
+                return cacheFolder;
+            }
+        };
+        requester.setHttpTransport(new KeepAliveHttpTransport(TIMEOUT_MS, TIMEOUT_MS));
+    }
+
+
+    /**
+     * Stops the mocked server.
+     */
+    @After
+    public void after()
+    {
+        server.stop(0);
+    }
+
+
+    /**
+     * Tests if a CSV file is parsed and cached with a single request,
+     * and if its validators are stored next to the cache file.
+     *
+     * @throws IOException if the CSV file could not be parsed or cached
+     */
+    @Test
+    public void testCachedDownload() throws IOException
+    {
+        final String url = baseUrl + CSV_PATH;
+
+        assertEquals(Arrays.asList("ap01", "ap02"), parseNames(url));
+        assertEquals(1, receivedETags.size());
+        assertNull(receivedETags.get(0));
+
+        final File cacheFile = getCacheFile(url);
+        assertEquals(CSV_BODY, readFile(cacheFile));
+        assertFalse(new File(cacheFile.getPath() + ".tmp").exists());
+
+        final CacheValidators validators = readValidators(cacheFile);
+        assertEquals(ETAG, validators.getETag());
+        assertEquals(LAST_MODIFIED, validators.getLastModified());
+    }
+
+
+    /**
+     * Tests if the validators of a cached CSV file are sent, and if
+     * the cached file is parsed if the server responds that it was not modified.
+     *
+     * @throws IOException if the CSV file could not be parsed or cached
+     */
+    @Test
+    public void testNotModified() throws IOException
+    {
+        final String url = baseUrl + CSV_PATH;
+        parseNames(url);
+
+        // the server would respond with another body, if the ETag did not match
+        responseBody = CHANGED_CSV_BODY;
+
+        assertEquals(Arrays.asList("ap01", "ap02"), parseNames(url));
+        assertEquals(Arrays.asList(null, ETAG), receivedETags);
+        assertEquals(LAST_MODIFIED, receivedDates.get(1));
+        assertEquals(CSV_BODY, readFile(getCacheFile(url)));
+    }
+
+
+    /**
+     * Tests if a modified CSV file replaces the cache file and its validators.
+     *
+     * @throws IOException if the CSV file could not be parsed or cached
+     */
+    @Test
+    public void testModified() throws IOException
+    {
+        final String url = baseUrl + CSV_PATH;
+        parseNames(url);
+
+        responseBody = CHANGED_CSV_BODY;
+        responseETag = CHANGED_ETAG;
+
+        assertEquals(Arrays.asList("bp01"), parseNames(url));
+        assertEquals(CHANGED_CSV_BODY, readFile(getCacheFile(url)));
+        assertEquals(CHANGED_ETAG, readValidators(getCacheFile(url)).getETag());
+    }
+
+
+    /**
+     * Tests if a CSV file that could not be parsed completely does not
+     * replace the previous cache file and its validators.
+     *
+     * @throws IOException if the CSV file could not be parsed or cached
+     */
+    @Test
+    public void testAbortedDownload() throws IOException
+    {
+        final String url = baseUrl + CSV_PATH;
+        parseNames(url);
+
+        responseBody = CHANGED_CSV_BODY;
+        responseETag = CHANGED_ETAG;
+
+        try {
+            requester.parseCsv(url, (final CsvRow row) -> {
+                throw new IllegalStateException(row.get(2));
+            });
+            fail();
+        } catch (final IllegalStateException e) {
+            assertEquals("bp01", e.getMessage());
+        }
+
+        final File cacheFile = getCacheFile(url);
+        assertEquals(CSV_BODY, readFile(cacheFile));
+        assertFalse(new File(cacheFile.getPath() + ".tmp").exists());
+        assertEquals(ETAG, readValidators(cacheFile).getETag());
+    }
+
+
+    /**
+     * Tests if a JSON response is cached, and if the cached response is
+     * parsed if the server responds that it was not modified.
+     *
+     * @throws IOException if the cache file could not be read
+     */
+    @Test
+    public void testJsonNotModified() throws IOException
+    {
+        final String url = baseUrl + JSON_PATH;
+        responseBody = JSON_BODY;
+
+        assertEquals("9000DEF", requester.<GitHubTree>getObjectFromUrl(url, GitHubTree.class).getSha());
+
+        responseBody = "{\"sha\" : \"changed\"}";
+
+        assertEquals("9000DEF", requester.<GitHubTree>getObjectFromUrl(url, GitHubTree.class).getSha());
+        assertEquals(Arrays.asList(null, ETAG), receivedETags);
+        assertEquals(JSON_BODY, readFile(getCacheFile(url)));
+    }
+
+
+    /**
+     * Parses a CSV file via the requester and returns the values of its "name" column.
+     *
+     * @param url the URL of the CSV file
+     *
+     * @return the names of all rows of the CSV file
+     *
+     * @throws IOException if the CSV file could not be parsed or cached
+     */
+    private List<String> parseNames(final String url) throws IOException
+    {
+        final List<String> names = new ArrayList<>();
+        requester.parseCsv(url, (final CsvRow row) -> names.add(row.get(2)));
+        return names;
+    }
+
+
+    /**
+     * Returns the file to which the response of a URL is cached.
+     *
+     * @param url the URL of the cached response
+     *
+     * @return the cache file of the URL
+     */
+    private File getCacheFile(final String url)
+    {
+        return HttpRequesterUtils.urlToFilePath(url, requester.getCacheFolder());
+    }
+
+
+    /**
+     * Reads the validators that are stored next to a cache file.
+     *
+     * @param cacheFile the file to which a response is cached
+     *
+     * @return the validators of the cached response
+     *
+     * @throws IOException if the validators could not be read
+     */
+    private static CacheValidators readValidators(final File cacheFile) throws IOException
+    {
+        return new Gson().fromJson(readFile(new File(cacheFile.getPath() + ".validators")), CacheValidators.class);
+    }
+
+
+    /**
+     * Reads a UTF-8 encoded file.
+     *
+     * @param file the file that is to be read
+     *
+     * @return the content of the file
+     *
+     * @throws IOException if the file could not be read
+     */
+    private static String readFile(final File file) throws IOException
+    {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Responds to a request of the mocked server with the current body,
+     * or with "304 Not Modified" if the current ETag was sent.
+     *
+     * @param exchange the request and its response
+     *
+     * @throws IOException if the response could not be sent
+     */
+    private void respond(final HttpExchange exchange) throws IOException
+    {
+        final String eTag = exchange.getRequestHeaders().getFirst("If-None-Match");
+        receivedETags.add(eTag);
+        receivedDates.add(exchange.getRequestHeaders().getFirst("If-Modified-Since"));
+
+        try {
+            exchange.getResponseHeaders().set("ETag", responseETag);
+            exchange.getResponseHeaders().set("Last-Modified", LAST_MODIFIED);
+
+            if (responseETag.equals(eTag))
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+            else {
+                final byte[] body = responseBody.getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.length);
+                exchange.getResponseBody().write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.utils.csv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.opencsv.CSVReader;
+
+/**
+ * This class provides Unit Tests for the {@linkplain MappedCsvParser}.
+ *
+ * @author Robin Weiss
+ */
+public class MappedCsvParserTest
+{
+    private static final String HEADER = "study_name,dataset_name,variable_name\n";
+
+
+    /**
+     * Tests if unquoted fields are parsed and the header row is skipped.
+     */
+    @Test
+    public void testUnquotedFields()
+    {
+        final List<String[]> rows = parse(HEADER + "soep-core,ap,ap01\nsoep-core,ap,ap02\n");
+
+        assertEquals(2, rows.size());
+        assertArrayEquals(new String[] {"soep-core", "ap", "ap01"}, rows.get(0));
+        assertArrayEquals(new String[] {"soep-core", "ap", "ap02"}, rows.get(1));
+    }
+
+
+    /**
+     * Tests if quoted fields may contain separators, line breaks and escaped quotes.
+     */
+    @Test
+    public void testQuotedFields()
+    {
+        final List<String[]> rows = parse(HEADER + "\"a,b\",\"line\r\nbreak\",\"say \"\"hi\"\"\"\n");
+
+        assertEquals(1, rows.size());
+        assertArrayEquals(new String[] {"a,b", "line\r\nbreak", "say \"hi\""}, rows.get(0));
+    }
+
+
+    /**
+     * Tests if empty fields, CRLF line breaks and a missing final line break are handled.
+     */
+    @Test
+    public void testEmptyFieldsAndLineBreaks()
+    {
+        final List<String[]> rows = parse(HEADER + ",,\r\n\r\nx,,\"\"");
+
+        assertEquals(2, rows.size());
+        assertArrayEquals(new String[] {"", "", ""}, rows.get(0));
+        assertArrayEquals(new String[] {"x", "", ""}, rows.get(1));
+    }
+
+
+    /**
+     * Tests if backslashes are kept as they are, in quoted and unquoted fields,
+     * instead of escaping the following character like the default opencsv parser.
+     */
+    @Test
+    public void testBackslashes()
+    {
+        final List<String[]> rows = parse(HEADER + "a\\b,\"C:\\soep\\\",\"\\\"\"quoted\\\"\"\"\n");
+
+        assertEquals(1, rows.size());
+        assertArrayEquals(new String[] {"a\\b", "C:\\soep\\", "\\\"quoted\\\""}, rows.get(0));
+    }
+
+
+    /**
+     * Tests if blank lines are skipped instead of being returned as rows
+     * with a single empty field, like the default opencsv parser does.
+     */
+    @Test
+    public void testBlankLines()
+    {
+        final List<String[]> rows = parse(HEADER + "\nsoep-core,ap,ap01\n\n\r\nsoep-core,ap,ap02\n\n");
+
+        assertEquals(2, rows.size());
+        assertArrayEquals(new String[] {"soep-core", "ap", "ap01"}, rows.get(0));
+        assertArrayEquals(new String[] {"soep-core", "ap", "ap02"}, rows.get(1));
+    }
+
+
+    /**
+     * Tests if a byte order mark is skipped and multi-byte characters are decoded.
+     */
+    @Test
+    public void testUtf8()
+    {
+        final List<String[]> rows = parse("\uFEFF" + HEADER + "Größe,Änderung,€\n");
+
+        assertArrayEquals(new String[] {"Größe", "Änderung", "€"}, rows.get(0));
+    }
+
+
+    /**
+     * Tests if the parser yields the same rows as opencsv for regular SOEP CSV content,
+     * which contains neither backslashes nor blank lines.
+     *
+     * @throws IOException thrown if opencsv fails to parse the CSV
+     */
+    @Test
+    public void testEqualityWithOpenCsv() throws IOException
+    {
+        final String csv = HEADER
+                           + "soep-core,bap,\"bap87, \"\"Zufriedenheit\"\"\"\n"
+                           + "soep-core,\"b\nap\",bap9001\n"
+                           + "soep-core,,\n";
+
+        final List<String[]> expectedRows = new ArrayList<>();
+
+        try
+            (CSVReader reader = new CSVReader(new StringReader(csv))) {
+            reader.readNext();
+            String[] row;
+
+            while ((row = reader.readNext()) != null)
+                expectedRows.add(row);
+        }
+
+        final List<String[]> actualRows = parse(csv);
+        assertEquals(expectedRows.size(), actualRows.size());
+
+        for (int i = 0; i < expectedRows.size(); i++)
+            assertArrayEquals(expectedRows.get(i), actualRows.get(i));
+    }
+
+
+    /**
+     * Parses CSV content and returns all rows as string arrays.
+     *
+     * @param csv the CSV content, including a header row
+     *
+     * @return a list of parsed rows
+     */
+    private static List<String[]> parse(final String csv)
+    {
+        final List<String[]> rows = new ArrayList<>();
+        final ByteBuffer csvBytes = ByteBuffer.wrap(csv.getBytes(StandardCharsets.UTF_8));
+
+        new MappedCsvParser().parse(csvBytes, 1, (final CsvRow row) -> {
+            final String[] fields = new String[row.size()];
+
+            for (int i = 0; i < fields.length; i++)
+                fields[i] = row.get(i);
+
+            rows.add(fields);
+        });
+
+        return rows;
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ *  Copyright © 2019 Robin Weiss (http://www.gerdi-project.de/)
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package de.gerdiproject.harvest.utils.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This class provides Unit Tests for the {@linkplain KeepAliveHttpTransport}.
+ * GitHub is mocked by a local HTTP server that records the client ports of
+ * all requests, which reveal whether connections were reused.
+ *
+ * @author Robin Weiss
+ */
+public class KeepAliveHttpTransportTest
+{
+    private static final int TIMEOUT_MS = 2000;
+    private static final String CSV_CONTENT_TYPE = "text/plain";
+    private static final String CSV_PATH = "/variables.csv";
+    private static final String SLOW_PATH = "/slow.csv";
+    private static final String LARGE_PATH = "/large.csv";
+    private static final int LARGE_BODY_SIZE = 1024 * 1024;
+    private static final byte[] CSV_BODY =
+        "study,dataset,name,concept,source\nsoep-core,ap,ap01,concept_1,v1\n".getBytes(StandardCharsets.UTF_8);
+
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private volatile Headers requestHeaders;
+    private HttpServer server;
+    private String baseUrl;
+
+
+    /**
+     * Starts the mocked server.
+     *
+     * @throws IOException if the server could not be started
+     */
+    @Before
+    public void before() throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::respond);
+        server.start();
+
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+
+    /**
+     * Stops the mocked server.
+     */
+    @After
+    public void after()
+    {
+        server.stop(0);
+    }
+
+
+    /**
+     * Tests if gzip-compressed responses are decompressed.
+     *
+     * @throws IOException if the request failed
+     */
+    @Test
+    public void testCompressedResponse() throws IOException
+    {
+        final HttpTransport transport = new KeepAliveHttpTransport(TIMEOUT_MS, TIMEOUT_MS);
+        final HttpURLConnection connection = transport.sendGetRequest(baseUrl + CSV_PATH, null, CSV_CONTENT_TYPE);
+
+        assertEquals("gzip", connection.getContentEncoding());
+        assertArrayEquals(CSV_BODY, readFully(transport, connection));
+    }
+
+
+    /**
+     * Tests if the connection of a completely read response is reused.
+     *
+     * @throws IOException if a request failed
+     */
+    @Test
+    public void testConnectionReuse() throws IOException
+    {
+        final HttpTransport transport = new KeepAliveHttpTransport(TIMEOUT_MS, TIMEOUT_MS);
+
+        for (int i = 0; i < 3; i++)
+            readFully(transport, transport.sendGetRequest(baseUrl + CSV_PATH, null, CSV_CONTENT_TYPE));
+
+        assertEquals(1, clientPorts.size());
+    }
+
+
+    /**
+     * Tests if the content type is sent as both the Accept and
+     * the Content-Type header, and if gzip-compressed responses are accepted.
+     *
+     * @throws IOException if the request failed
+     */
+    @Test
+    public void testRequestHeaders() throws IOException
+    {
+        final HttpTransport transport = new KeepAliveHttpTransport(TIMEOUT_MS, TIMEOUT_MS);
+        readFully(transport, transport.sendGetRequest(baseUrl + CSV_PATH, null, CSV_CONTENT_TYPE));
+
+        assertEquals(CSV_CONTENT_TYPE, requestHeaders.getFirst("Accept"));
+        assertEquals(CSV_CONTENT_TYPE, requestHeaders.getFirst("Content-Type"));
+        assertEquals("gzip", requestHeaders.getFirst("Accept-Encoding"));
+    }
+
+
+    /**
+     * Tests if the connection of a released response with a small body is reused.
+     *
+     * @throws IOException if a request failed
+     */
+    @Test
+    public void testReleaseSmallBody() throws IOException
+    {
+        final HttpTransport transport = new KeepAliveHttpTransport(TIMEOUT_MS, TIMEOUT_MS);
+
+        transport.release(transport.sendGetRequest(baseUrl + CSV_PATH, null, CSV_CONTENT_TYPE));
+        readFully(transport, transport.sendGetRequest(baseUrl + CSV_PATH, null, CSV_CONTENT_TYPE));
+
+        assertEquals(1, clientPorts.size());
+    }
+
+
+    /**
+     * Tests if the connection of a released response with a large body
+     * is closed instead of reading the whole body.
+     *
+     * @throws IOException if a request failed
+     */
+    @Test
+    public void testReleaseLargeBody() throws IOException
+    {
+        final HttpTransport transport = new KeepAliveHttpTransport(TIMEOUT_MS, TIMEOUT_MS);
+
+        transport.release(transport.sendGetRequest(baseUrl + LARGE_PATH, null, CSV_CONTENT_TYPE));
+        readFully(transport, transport.sendGetRequest(baseUrl + CSV_PATH, null, CSV_CONTENT_TYPE));
+
+        assertEquals(2, clientPorts.size());
+    }
+
+
+    /**
+     * Tests if a response that takes longer than the read timeout fails.
+     *
+     * @throws IOException if the request could not be sent
+     */
+    @Test(expected = SocketTimeoutException.class)
+    public void testReadTimeout() throws IOException
+    {
+        final HttpTransport transport = new KeepAliveHttpTransport(TIMEOUT_MS, 100);
+        transport.sendGetRequest(baseUrl + SLOW_PATH, null, CSV_CONTENT_TYPE).getResponseCode();
+    }
+
+
+    /**
+     * Reads the complete body of a response.
+     *
+     * @param transport the transport that sent the request
+     * @param connection the connection of the request
+     *
+     * @return the decoded response body
+     *
+     * @throws IOException if the response could not be read
+     */
+    private static byte[] readFully(final HttpTransport transport, final HttpURLConnection connection) throws IOException
+    {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        try
+            (InputStream responseStream = transport.getInputStream(connection)) {
+            final byte[] buffer = new byte[1024];
+            int readBytes;
+
+            while ((readBytes = responseStream.read(buffer)) != -1)
+                body.write(buffer, 0, readBytes);
+        }
+
+        return body.toByteArray();
+    }
+
+
+    /**
+     * Responds to a request of the mocked server, depending on its path.
+     *
+     * @param exchange the request and its response
+     *
+     * @throws IOException if the response could not be sent
+     */
+    private void respond(final HttpExchange exchange) throws IOException
+    {
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        requestHeaders = exchange.getRequestHeaders();
+
+        try {
+            if (SLOW_PATH.equals(exchange.getRequestURI().getPath())) {
+                Thread.sleep(1000);
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, -1);
+            } else if (LARGE_PATH.equals(exchange.getRequestURI().getPath())) {
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, LARGE_BODY_SIZE);
+                exchange.getResponseBody().write(new byte[LARGE_BODY_SIZE]);
+            } else {
+                final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+                try
+                    (OutputStream gzipStream = new GZIPOutputStream(compressed)) {
+                    gzipStream.write(CSV_BODY);
+                }
+
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, compressed.size());
+                exchange.getResponseBody().write(compressed.toByteArray());
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+}